@@ -0,0 +1,303 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.eclipse.lsp4j.jsonrpc.CancelChecker;
+
+/**
+ * Collects changed files until no new changes have arrived for a quiet
+ * period, and then compiles all of them together on a dedicated worker
+ * thread. Requests that need an AST wait only if their own file has changes
+ * that haven't been compiled yet, and those changes are compiled immediately.
+ * If a file changes again while it is being compiled, the compiler may abort
+ * by calling checkCanceled(), and the files are compiled again together with
+ * the new changes.
+ */
+public class CompilationScheduler {
+	public static final long DEFAULT_QUIET_PERIOD = 250;
+	private static final long CANCEL_CHECK_INTERVAL = 50;
+
+	private Consumer<Set<URI>> compiler;
+	private ScheduledExecutorService worker;
+	private Set<URI> pendingURIs = new LinkedHashSet<>();
+	private CompletableFuture<Void> pendingResult = new CompletableFuture<>();
+	private ScheduledFuture<?> pendingCompile;
+	private Set<URI> compilingURIs = Collections.emptySet();
+	private CompletableFuture<Void> compilingResult = CompletableFuture.completedFuture(null);
+	private boolean isCompileSuperseded = false;
+	private boolean isPendingResultAwaited = false;
+	private boolean isCompilingResultAwaited = false;
+	private long quietPeriod = DEFAULT_QUIET_PERIOD;
+
+	public CompilationScheduler(Consumer<Set<URI>> compiler) {
+		this.compiler = compiler;
+		worker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "groovyls-compile");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	public long getQuietPeriod() {
+		return quietPeriod;
+	}
+
+	/**
+	 * The number of milliseconds to wait after the most recent change before
+	 * compiling. A value of 0 compiles as soon as possible.
+	 */
+	public void setQuietPeriod(long quietPeriod) {
+		this.quietPeriod = Math.max(0, quietPeriod);
+	}
+
+	public synchronized void schedule(URI uri) {
+		pendingURIs.add(uri);
+		if (compilingURIs.contains(uri)) {
+			isCompileSuperseded = true;
+		}
+		schedulePendingCompile(quietPeriod);
+	}
+
+	/**
+	 * Called by the compiler between phases. Throws a CancellationException
+	 * if one of the files being compiled has changed again since the compile
+	 * started.
+	 */
+	public synchronized void checkCanceled() {
+		if (isCompileSuperseded) {
+			throw new CancellationException();
+		}
+	}
+
+	public synchronized boolean isPending(URI uri) {
+		return pendingURIs.contains(uri);
+	}
+
+	/**
+	 * Returns a future that completes when the AST for the current version of
+	 * the specified file has been published. If the file has pending changes,
+	 * they are compiled without waiting for the quiet period.
+	 */
+	public synchronized CompletableFuture<Void> whenCompiled(URI uri) {
+		if (pendingURIs.contains(uri)) {
+			isPendingResultAwaited = true;
+			schedulePendingCompile(0);
+			return pendingResult;
+		}
+		if (compilingURIs.contains(uri)) {
+			isCompilingResultAwaited = true;
+			return compilingResult;
+		}
+		return CompletableFuture.completedFuture(null);
+	}
+
+	/**
+	 * Blocks until the AST for the current version of the specified file has
+	 * been published.
+	 */
+	public void awaitAST(URI uri) {
+		whenCompiled(uri).join();
+	}
+
+	/**
+	 * Blocks until the AST for the current version of the specified file has
+	 * been published, or until the request is canceled.
+	 */
+	public void awaitAST(URI uri, CancelChecker cancelChecker) {
+		await(whenCompiled(uri), cancelChecker);
+	}
+
+	/**
+	 * Blocks until a future completes, or until the request is canceled. If
+	 * the future completes exceptionally, returns null.
+	 */
+	public static <T> T await(CompletableFuture<T> future, CancelChecker cancelChecker) {
+		while (true) {
+			cancelChecker.checkCanceled();
+			try {
+				// the cancel checker can't notify us, so check it regularly
+				return future.get(CANCEL_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+			} catch (TimeoutException e) {
+				// keep waiting
+			} catch (ExecutionException e) {
+				return null;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new CancellationException();
+			}
+		}
+	}
+
+	/**
+	 * Compiles all pending changes without waiting for the quiet period.
+	 */
+	public synchronized CompletableFuture<Void> flush() {
+		if (pendingURIs.isEmpty()) {
+			isCompilingResultAwaited = true;
+			return compilingResult;
+		}
+		isPendingResultAwaited = true;
+		schedulePendingCompile(0);
+		return pendingResult;
+	}
+
+	/**
+	 * Runs a task that modifies the compilation unit on the worker thread.
+	 * Pending changes are compiled first.
+	 */
+	public CompletableFuture<Void> runExclusive(Runnable task) {
+		return supplyExclusive(() -> {
+			task.run();
+			return null;
+		});
+	}
+
+	/**
+	 * Runs a task that uses the compilation unit on the worker thread, and
+	 * returns its result. Pending changes are compiled first. If the task
+	 * throws, the result is null.
+	 */
+	public <T> CompletableFuture<T> supplyExclusive(Supplier<T> task) {
+		CompletableFuture<T> result = new CompletableFuture<>();
+		worker.execute(() -> {
+			T value = null;
+			try {
+				compilePending();
+				value = task.get();
+			} catch (Exception e) {
+				System.err.println("Unexpected exception in language server when compiling Groovy.");
+				e.printStackTrace(System.err);
+			} finally {
+				result.complete(value);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Runs a low priority task on the worker thread after the specified
+	 * number of milliseconds, but only if no changes are pending by then.
+	 * Otherwise, the task waits for the same delay again, so that it doesn't
+	 * hold up the files that are being edited.
+	 */
+	public CompletableFuture<Void> runWhenIdle(Runnable task, long delay) {
+		CompletableFuture<Void> result = new CompletableFuture<>();
+		scheduleWhenIdle(task, delay, result);
+		return result;
+	}
+
+	private void scheduleWhenIdle(Runnable task, long delay, CompletableFuture<Void> result) {
+		worker.schedule(() -> {
+			synchronized (this) {
+				if (!pendingURIs.isEmpty()) {
+					scheduleWhenIdle(task, delay, result);
+					return;
+				}
+			}
+			try {
+				task.run();
+			} catch (Exception e) {
+				System.err.println("Unexpected exception in language server when compiling Groovy.");
+				e.printStackTrace(System.err);
+			} finally {
+				result.complete(null);
+			}
+		}, delay, TimeUnit.MILLISECONDS);
+	}
+
+	private void schedulePendingCompile(long delay) {
+		if (pendingCompile != null) {
+			pendingCompile.cancel(false);
+		}
+		pendingCompile = worker.schedule(this::compilePending, delay, TimeUnit.MILLISECONDS);
+	}
+
+	private void compilePending() {
+		Set<URI> uris = null;
+		CompletableFuture<Void> result = null;
+		synchronized (this) {
+			if (pendingURIs.isEmpty()) {
+				// an earlier compile already included these changes, so
+				// there's nothing left to do
+				return;
+			}
+			uris = pendingURIs;
+			result = pendingResult;
+			pendingURIs = new LinkedHashSet<>();
+			pendingResult = new CompletableFuture<>();
+			if (pendingCompile != null) {
+				pendingCompile.cancel(false);
+				pendingCompile = null;
+			}
+			compilingURIs = uris;
+			compilingResult = result;
+			isCompileSuperseded = false;
+			isCompilingResultAwaited = isPendingResultAwaited;
+			isPendingResultAwaited = false;
+		}
+		boolean isAborted = false;
+		try {
+			compiler.accept(uris);
+		} catch (CancellationException e) {
+			isAborted = true;
+		} catch (Exception e) {
+			System.err.println("Unexpected exception in language server when compiling Groovy.");
+			e.printStackTrace(System.err);
+		} finally {
+			synchronized (this) {
+				compilingURIs = Collections.emptySet();
+				isCompileSuperseded = false;
+				if (isAborted) {
+					// compile these files again with the newer changes, and
+					// anyone waiting for them keeps waiting until then
+					pendingURIs.addAll(uris);
+					CompletableFuture<Void> abortedResult = result;
+					pendingResult.thenRun(() -> abortedResult.complete(null));
+					if (isCompilingResultAwaited) {
+						// a request is waiting, so don't wait for the quiet
+						// period again
+						isPendingResultAwaited = true;
+						schedulePendingCompile(0);
+					} else if (pendingCompile == null) {
+						schedulePendingCompile(quietPeriod);
+					}
+				}
+			}
+			if (!isAborted) {
+				result.complete(null);
+			}
+		}
+	}
+}
@@ -28,12 +28,16 @@ import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.concurrent.CompletableFuture;
 
+import org.eclipse.lsp4j.ClientCapabilities;
 import org.eclipse.lsp4j.CompletionOptions;
 import org.eclipse.lsp4j.InitializeParams;
 import org.eclipse.lsp4j.InitializeResult;
+import org.eclipse.lsp4j.InitializedParams;
+import org.eclipse.lsp4j.ReferenceOptions;
 import org.eclipse.lsp4j.ServerCapabilities;
 import org.eclipse.lsp4j.SignatureHelpOptions;
 import org.eclipse.lsp4j.TextDocumentSyncKind;
+import org.eclipse.lsp4j.WorkspaceSymbolOptions;
 import org.eclipse.lsp4j.jsonrpc.Launcher;
 import org.eclipse.lsp4j.services.LanguageClient;
 import org.eclipse.lsp4j.services.LanguageClientAware;
@@ -59,6 +63,7 @@ public class GroovyLanguageServer implements LanguageServer, LanguageClientAware
     }
 
     private GroovyServices groovyServices;
+    private boolean watchedFilesRegistrationSupported = false;
 
     public GroovyLanguageServer() {
         this(new CompilationUnitFactory());
@@ -70,6 +75,17 @@ public class GroovyLanguageServer implements LanguageServer, LanguageClientAware
 
     @Override
     public CompletableFuture<InitializeResult> initialize(InitializeParams params) {
+        ClientCapabilities clientCapabilities = params.getCapabilities();
+        if (clientCapabilities != null && clientCapabilities.getWindow() != null) {
+            groovyServices.setWorkDoneProgressSupported(
+                    Boolean.TRUE.equals(clientCapabilities.getWindow().getWorkDoneProgress()));
+        }
+        if (clientCapabilities != null && clientCapabilities.getWorkspace() != null
+                && clientCapabilities.getWorkspace().getDidChangeWatchedFiles() != null) {
+            watchedFilesRegistrationSupported = Boolean.TRUE
+                    .equals(clientCapabilities.getWorkspace().getDidChangeWatchedFiles().getDynamicRegistration());
+        }
+
         String rootUriString = params.getRootUri();
         if (rootUriString != null) {
             URI uri = URI.create(params.getRootUri());
@@ -80,11 +96,15 @@ public class GroovyLanguageServer implements LanguageServer, LanguageClientAware
         CompletionOptions completionOptions = new CompletionOptions(false, Arrays.asList("."));
         ServerCapabilities serverCapabilities = new ServerCapabilities();
         serverCapabilities.setCompletionProvider(completionOptions);
-        serverCapabilities.setTextDocumentSync(TextDocumentSyncKind.Full);
+        serverCapabilities.setTextDocumentSync(TextDocumentSyncKind.Incremental);
         serverCapabilities.setDocumentSymbolProvider(true);
-        serverCapabilities.setWorkspaceSymbolProvider(true);
+        WorkspaceSymbolOptions workspaceSymbolOptions = new WorkspaceSymbolOptions();
+        workspaceSymbolOptions.setWorkDoneProgress(true);
+        serverCapabilities.setWorkspaceSymbolProvider(workspaceSymbolOptions);
         serverCapabilities.setDocumentSymbolProvider(true);
-        serverCapabilities.setReferencesProvider(true);
+        ReferenceOptions referenceOptions = new ReferenceOptions();
+        referenceOptions.setWorkDoneProgress(true);
+        serverCapabilities.setReferencesProvider(referenceOptions);
         serverCapabilities.setDefinitionProvider(true);
         serverCapabilities.setTypeDefinitionProvider(true);
         serverCapabilities.setHoverProvider(true);
@@ -97,6 +117,16 @@ public class GroovyLanguageServer implements LanguageServer, LanguageClientAware
         return CompletableFuture.completedFuture(initializeResult);
     }
 
+    @Override
+    public void initialized(InitializedParams params) {
+        // watchers may be registered only after initialization
+        if (watchedFilesRegistrationSupported) {
+            groovyServices.registerFileWatchers();
+        } else {
+            groovyServices.startSourceRescans();
+        }
+    }
+
     @Override
     public CompletableFuture<Object> shutdown() {
         return CompletableFuture.completedFuture(new Object());
@@ -19,20 +19,36 @@
 ////////////////////////////////////////////////////////////////////////////////
 package net.prominic.groovyls;
 
-import java.io.File;
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.Reader;
 import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -43,8 +59,11 @@ import com.google.gson.JsonObject;
 import org.codehaus.groovy.GroovyBugError;
 import org.codehaus.groovy.ast.ASTNode;
 import org.codehaus.groovy.control.CompilationFailedException;
+import org.codehaus.groovy.control.CompilerConfiguration;
 import org.codehaus.groovy.control.ErrorCollector;
 import org.codehaus.groovy.control.Phases;
+import org.codehaus.groovy.control.SourceUnit;
+import org.codehaus.groovy.control.io.ReaderSource;
 import org.codehaus.groovy.control.messages.Message;
 import org.codehaus.groovy.control.messages.SyntaxErrorMessage;
 import org.codehaus.groovy.syntax.SyntaxException;
@@ -57,11 +76,13 @@ import org.eclipse.lsp4j.DiagnosticSeverity;
 import org.eclipse.lsp4j.DidChangeConfigurationParams;
 import org.eclipse.lsp4j.DidChangeTextDocumentParams;
 import org.eclipse.lsp4j.DidChangeWatchedFilesParams;
+import org.eclipse.lsp4j.DidChangeWatchedFilesRegistrationOptions;
 import org.eclipse.lsp4j.DidCloseTextDocumentParams;
 import org.eclipse.lsp4j.DidOpenTextDocumentParams;
 import org.eclipse.lsp4j.DidSaveTextDocumentParams;
 import org.eclipse.lsp4j.DocumentSymbol;
 import org.eclipse.lsp4j.DocumentSymbolParams;
+import org.eclipse.lsp4j.FileSystemWatcher;
 import org.eclipse.lsp4j.Hover;
 import org.eclipse.lsp4j.HoverParams;
 import org.eclipse.lsp4j.Location;
@@ -70,16 +91,19 @@ import org.eclipse.lsp4j.Position;
 import org.eclipse.lsp4j.PublishDiagnosticsParams;
 import org.eclipse.lsp4j.Range;
 import org.eclipse.lsp4j.ReferenceParams;
+import org.eclipse.lsp4j.Registration;
+import org.eclipse.lsp4j.RegistrationParams;
 import org.eclipse.lsp4j.RenameParams;
 import org.eclipse.lsp4j.SignatureHelp;
 import org.eclipse.lsp4j.SignatureHelpParams;
 import org.eclipse.lsp4j.SymbolInformation;
-import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
 import org.eclipse.lsp4j.TextDocumentIdentifier;
 import org.eclipse.lsp4j.TypeDefinitionParams;
-import org.eclipse.lsp4j.VersionedTextDocumentIdentifier;
+import org.eclipse.lsp4j.WorkDoneProgressCreateParams;
 import org.eclipse.lsp4j.WorkspaceEdit;
 import org.eclipse.lsp4j.WorkspaceSymbolParams;
+import org.eclipse.lsp4j.jsonrpc.CancelChecker;
+import org.eclipse.lsp4j.jsonrpc.CompletableFutures;
 import org.eclipse.lsp4j.jsonrpc.messages.Either;
 import org.eclipse.lsp4j.services.LanguageClient;
 import org.eclipse.lsp4j.services.LanguageClientAware;
@@ -87,12 +111,19 @@ import org.eclipse.lsp4j.services.TextDocumentService;
 import org.eclipse.lsp4j.services.WorkspaceService;
 
 import groovy.lang.GroovyClassLoader;
-import io.github.classgraph.ClassGraph;
 import io.github.classgraph.ClassGraphException;
-import io.github.classgraph.ScanResult;
+import net.prominic.groovyls.classpath.ClasspathIndex;
+import net.prominic.groovyls.classpath.ClasspathIndexer;
 import net.prominic.groovyls.compiler.ast.ASTNodeVisitor;
+import net.prominic.groovyls.compiler.ast.ASTRetentionPolicy;
+import net.prominic.groovyls.compiler.ast.FileSummary;
+import net.prominic.groovyls.compiler.ast.FileSummaryCache;
+import net.prominic.groovyls.compiler.ast.SymbolIndex;
+import net.prominic.groovyls.compiler.ast.SourceDependencyGraph;
 import net.prominic.groovyls.compiler.control.GroovyLSCompilationUnit;
+import net.prominic.groovyls.compiler.control.io.StringReaderSourceWithURI;
 import net.prominic.groovyls.config.ICompilationUnitFactory;
+import net.prominic.groovyls.providers.CompletionCache;
 import net.prominic.groovyls.providers.CompletionProvider;
 import net.prominic.groovyls.providers.DefinitionProvider;
 import net.prominic.groovyls.providers.DocumentSymbolProvider;
@@ -104,30 +135,177 @@ import net.prominic.groovyls.providers.TypeDefinitionProvider;
 import net.prominic.groovyls.providers.WorkspaceSymbolProvider;
 import net.prominic.groovyls.util.FileContentsTracker;
 import net.prominic.groovyls.util.GroovyLanguageServerUtils;
-import net.prominic.lsp.utils.Positions;
+import net.prominic.groovyls.util.HashUtils;
+import net.prominic.groovyls.util.ProgressReporter;
+import net.prominic.lsp.utils.LineIndex;
 
 public class GroovyServices implements TextDocumentService, WorkspaceService, LanguageClientAware {
 	private static final Pattern PATTERN_CONSTRUCTOR_CALL = Pattern.compile(".*new \\w*$");
+	private static final String PROPERTY_CACHE_DIRECTORY = "groovyls.cacheDirectory";
+	private static final CancelChecker NO_CANCEL = () -> {
+	};
+	private static final int REQUEST_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors());
+	private static final Pattern PATTERN_IDENTIFIER = Pattern.compile("[A-Za-z_$][\\w$]*");
+	private static final String FILE_EXTENSION_GROOVY = ".groovy";
+	private static final int WORKSPACE_INDEX_BATCH_SIZE = 100;
+	private static final long DEFERRED_INDEX_DELAY = 2000;
+	private static final long SOURCE_RESCAN_INTERVAL = 5000;
+	private static final String WATCHED_FILES_PATTERN = "**/*" + FILE_EXTENSION_GROOVY;
 
 	private LanguageClient languageClient;
 
 	private Path workspaceRoot;
 	private ICompilationUnitFactory compilationUnitFactory;
 	private GroovyLSCompilationUnit compilationUnit;
-	private ASTNodeVisitor astVisitor;
-	private Map<URI, List<Diagnostic>> prevDiagnosticsByFile;
+	private volatile ASTNodeVisitor astVisitor;
+	private SourceDependencyGraph dependencyGraph = new SourceDependencyGraph();
+	private Map<URI, List<Diagnostic>> prevDiagnosticsByFile = new HashMap<>();
 	private FileContentsTracker fileContentsTracker = new FileContentsTracker();
-	private ScanResult classGraphScanResult = null;
+	private volatile ClasspathIndex classpathIndex = null;
+	private volatile CompletableFuture<ClasspathIndex> classpathIndexResult = CompletableFuture.completedFuture(null);
+	private Path cacheDirectory;
+	private ClasspathIndexer classpathIndexer;
+	private ExecutorService classpathExecutor = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "groovyls-classpath");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private volatile FileSummaryCache fileSummaryCache = null;
+	private volatile CompletableFuture<FileSummaries> fileSummariesResult = CompletableFuture.completedFuture(null);
+	private volatile CompletableFuture<Void> fileSummariesWritten = CompletableFuture.completedFuture(null);
+	private ExecutorService summaryExecutor = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "groovyls-summary");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private WorkspaceIndexing workspaceIndexing = null;
+	private volatile CompletableFuture<Void> workspaceIndexedResult = CompletableFuture.completedFuture(null);
+	private volatile boolean workDoneProgressSupported = false;
+	private ScheduledExecutorService sourceRescanExecutor = null;
 	private GroovyClassLoader classLoader = null;
-	private URI previousContext = null;
+	private volatile URI previousContext = null;
+	private CompletionCache completionCache = new CompletionCache();
+	private ASTRetentionPolicy astRetentionPolicy = new ASTRetentionPolicy();
+	private ReadWriteLock astLock = new ReentrantReadWriteLock();
+	private CompilationScheduler compilationScheduler = new CompilationScheduler(
+			uris -> runWithWriteLock(() -> compileAndVisitAST(uris)));
+	private AtomicInteger requestThreadCount = new AtomicInteger();
+	private ExecutorService requestExecutor = Executors.newFixedThreadPool(REQUEST_THREADS, runnable -> {
+		Thread thread = new Thread(runnable, "groovyls-request-" + requestThreadCount.incrementAndGet());
+		thread.setDaemon(true);
+		return thread;
+	});
 
 	public GroovyServices(ICompilationUnitFactory factory) {
+		this(factory, getCacheDirectory());
+	}
+
+	/**
+	 * Saves the data that is expensive to compute in the specified directory
+	 * instead of the default one.
+	 */
+	GroovyServices(ICompilationUnitFactory factory, Path cacheDirectory) {
+		this(factory, cacheDirectory, new ClasspathIndexer(cacheDirectory.resolve("classpath")));
+	}
+
+	/**
+	 * Indexes the classpath with the specified indexer.
+	 */
+	GroovyServices(ICompilationUnitFactory factory, Path cacheDirectory, ClasspathIndexer classpathIndexer) {
 		compilationUnitFactory = factory;
+		this.cacheDirectory = cacheDirectory;
+		this.classpathIndexer = classpathIndexer;
+		fileContentsTracker.setChangeListener(completionCache);
 	}
 
 	public void setWorkspaceRoot(Path workspaceRoot) {
 		this.workspaceRoot = workspaceRoot;
-		createOrUpdateCompilationUnit();
+		if (workspaceRoot == null) {
+			fileSummaryCache = null;
+			fileSummariesResult = CompletableFuture.completedFuture(null);
+			runExclusive(() -> {
+				startWorkspaceIndexing(Collections.emptySet());
+				createOrUpdateCompilationUnit();
+			});
+			return;
+		}
+		Path summaryDirectory = cacheDirectory.resolve("sources")
+				.resolve(HashUtils.sha1(workspaceRoot.toUri().toString()));
+		FileSummaryCache cache = new FileSummaryCache(summaryDirectory);
+		CompletableFuture<FileSummaries> summariesResult = new CompletableFuture<>();
+		fileSummaryCache = cache;
+		fileSummariesResult = summariesResult;
+		runExclusive(() -> {
+			Set<URI> sourceURIs = compilationUnitFactory.getSourceFiles(workspaceRoot).getURIs();
+			CompletableFuture.supplyAsync(() -> loadFileSummaries(sourceURIs, cache), summaryExecutor)
+					.whenComplete((summaries, e) -> summariesResult.complete(summaries));
+			startWorkspaceIndexing(sourceURIs);
+			createOrUpdateCompilationUnit();
+		});
+	}
+
+	/**
+	 * If true, the server may create its own work done progress, such as
+	 * when it indexes the workspace in the background.
+	 */
+	public void setWorkDoneProgressSupported(boolean workDoneProgressSupported) {
+		this.workDoneProgressSupported = workDoneProgressSupported;
+	}
+
+	/**
+	 * Asks the client to report changes to source files, including changes
+	 * made outside of the editor. If the client refuses, the workspace is
+	 * rescanned periodically instead.
+	 */
+	public CompletableFuture<Void> registerFileWatchers() {
+		DidChangeWatchedFilesRegistrationOptions options = new DidChangeWatchedFilesRegistrationOptions(
+				Collections.singletonList(new FileSystemWatcher(WATCHED_FILES_PATTERN)));
+		Registration registration = new Registration(UUID.randomUUID().toString(), "workspace/didChangeWatchedFiles",
+				options);
+		return languageClient.registerCapability(new RegistrationParams(Collections.singletonList(registration)))
+				.handle((result, e) -> {
+					if (e != null) {
+						System.err.println("Failed to register file watchers: " + e.getMessage());
+						startSourceRescans();
+					}
+					return null;
+				});
+	}
+
+	/**
+	 * Without file watchers, files that change outside of the editor are
+	 * found by checking the modification times of the workspace's files. The
+	 * scan runs on its own timer, so that compiling an open file never waits
+	 * for it.
+	 */
+	public synchronized void startSourceRescans() {
+		if (sourceRescanExecutor != null) {
+			return;
+		}
+		sourceRescanExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "groovyls-rescan");
+			thread.setDaemon(true);
+			return thread;
+		});
+		// waiting for each scan keeps them from piling up behind a long compile
+		sourceRescanExecutor.scheduleWithFixedDelay(() -> rescanSourceFiles().join(), SOURCE_RESCAN_INTERVAL,
+				SOURCE_RESCAN_INTERVAL, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Compiles the source files that were created, modified or deleted on
+	 * disk since the last scan.
+	 */
+	CompletableFuture<Void> rescanSourceFiles() {
+		return runExclusive(() -> {
+			Set<URI> changedSourceURIs = compilationUnitFactory.rescanSourceFiles();
+			if (changedSourceURIs.isEmpty()) {
+				return;
+			}
+			forceChangedSourceFiles(changedSourceURIs);
+			compileAndVisit(changedSourceURIs, workspaceIndexing);
+			scheduleWorkspaceIndexing();
+		});
 	}
 
 	@Override
@@ -135,27 +313,69 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 		languageClient = client;
 	}
 
+	/**
+	 * Returns a future that completes when the classpath of the current
+	 * compilation unit has been indexed.
+	 */
+	CompletableFuture<Void> whenClasspathIndexed() {
+		return compilationScheduler.supplyExclusive(() -> classpathIndexResult).thenCompose(result -> result)
+				.thenAccept(index -> {
+				});
+	}
+
+	/**
+	 * Returns a future that completes when every file in the workspace has
+	 * been compiled at least once.
+	 */
+	CompletableFuture<Void> whenWorkspaceIndexed() {
+		return compilationScheduler.supplyExclusive(() -> {
+			includeDeferredFiles();
+			scheduleWorkspaceIndexing();
+			return workspaceIndexedResult;
+		}).thenCompose(result -> result);
+	}
+
+	/**
+	 * Returns a future that completes when the file summaries saved in a
+	 * previous session have been loaded.
+	 */
+	CompletableFuture<Void> whenFileSummariesLoaded() {
+		return fileSummariesResult.thenAccept(summaries -> {
+		});
+	}
+
+	/**
+	 * Returns a future that completes when the summaries of the files that
+	 * have been compiled so far are saved.
+	 */
+	CompletableFuture<Void> whenFileSummariesWritten() {
+		return compilationScheduler.supplyExclusive(() -> fileSummariesWritten).thenCompose(result -> result);
+	}
+
 	// --- NOTIFICATIONS
 
 	@Override
 	public void didOpen(DidOpenTextDocumentParams params) {
 		fileContentsTracker.didOpen(params);
 		URI uri = URI.create(params.getTextDocument().getUri());
-		compileAndVisitAST(uri);
+		completionCache.clear();
+		compilationScheduler.schedule(uri);
 	}
 
 	@Override
 	public void didChange(DidChangeTextDocumentParams params) {
+		// the completion cache is notified of each change
 		fileContentsTracker.didChange(params);
 		URI uri = URI.create(params.getTextDocument().getUri());
-		compileAndVisitAST(uri);
+		compilationScheduler.schedule(uri);
 	}
 
 	@Override
 	public void didClose(DidCloseTextDocumentParams params) {
 		fileContentsTracker.didClose(params);
 		URI uri = URI.create(params.getTextDocument().getUri());
-		compileAndVisitAST(uri);
+		completionCache.clear();
+		compilationScheduler.schedule(uri);
 	}
 
 	@Override
@@ -165,15 +385,31 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 
 	@Override
 	public void didChangeWatchedFiles(DidChangeWatchedFilesParams params) {
-		boolean isSameUnit = createOrUpdateCompilationUnit();
 		Set<URI> urisWithChanges = params.getChanges().stream().map(fileEvent -> URI.create(fileEvent.getUri()))
 				.collect(Collectors.toSet());
-		compile();
-		if (isSameUnit) {
-			visitAST(urisWithChanges);
-		} else {
-			visitAST();
-		}
+		boolean hasJarChanges = urisWithChanges.stream()
+				.anyMatch(uri -> uri.getPath() != null && uri.getPath().endsWith(".jar"));
+		completionCache.clear();
+		runExclusive(() -> {
+			if (hasJarChanges) {
+				// the class loader must be replaced to load the modified classes,
+				// but only the modified .jar files will be indexed again
+				compilationUnitFactory.invalidateCompilationUnit();
+			}
+			// files that changed outside of the editor must be read again
+			Set<URI> changedSourceURIs = compilationUnitFactory.updateSourceFiles(urisWithChanges);
+			forceChangedSourceFiles(changedSourceURIs);
+			boolean isSameUnit = createOrUpdateCompilationUnit();
+			compile();
+			if (isSameUnit) {
+				Set<URI> urisToVisit = new HashSet<>(urisWithChanges);
+				urisToVisit.addAll(changedSourceURIs);
+				visitAST(urisToVisit);
+			} else {
+				visitAST();
+			}
+			scheduleWorkspaceIndexing();
+		});
 	}
 
 	@Override
@@ -182,9 +418,63 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 			return;
 		}
 		JsonObject settings = (JsonObject) params.getSettings();
+		this.updateCompileDelay(settings);
+		this.updateClasspathScanThreads(settings);
+		this.updateParallelParse(settings);
+		this.updateASTNodeBudget(settings);
 		this.updateClasspath(settings);
 	}
 
+	private void updateCompileDelay(JsonObject settings) {
+		long compileDelay = CompilationScheduler.DEFAULT_QUIET_PERIOD;
+		if (settings.has("groovy") && settings.get("groovy").isJsonObject()) {
+			JsonObject groovy = settings.get("groovy").getAsJsonObject();
+			if (groovy.has("compileDelay") && groovy.get("compileDelay").isJsonPrimitive()) {
+				compileDelay = groovy.get("compileDelay").getAsLong();
+			}
+		}
+		compilationScheduler.setQuietPeriod(compileDelay);
+	}
+
+	private void updateClasspathScanThreads(JsonObject settings) {
+		int scanThreads = 0;
+		if (settings.has("groovy") && settings.get("groovy").isJsonObject()) {
+			JsonObject groovy = settings.get("groovy").getAsJsonObject();
+			if (groovy.has("classpathScanThreads") && groovy.get("classpathScanThreads").isJsonPrimitive()) {
+				scanThreads = groovy.get("classpathScanThreads").getAsInt();
+			}
+		}
+		classpathIndexer.setThreadCount(scanThreads);
+	}
+
+	private void updateParallelParse(JsonObject settings) {
+		boolean parallelParse = true;
+		if (settings.has("groovy") && settings.get("groovy").isJsonObject()) {
+			JsonObject groovy = settings.get("groovy").getAsJsonObject();
+			if (groovy.has("parallelParse") && groovy.get("parallelParse").isJsonPrimitive()) {
+				parallelParse = groovy.get("parallelParse").getAsBoolean();
+			}
+		}
+		if (parallelParse != compilationUnitFactory.isParallelParse()) {
+			boolean newParallelParse = parallelParse;
+			runExclusive(() -> {
+				compilationUnitFactory.setParallelParse(newParallelParse);
+			});
+		}
+	}
+
+	private void updateASTNodeBudget(JsonObject settings) {
+		int nodeBudget = ASTRetentionPolicy.DEFAULT_NODE_BUDGET;
+		if (settings.has("groovy") && settings.get("groovy").isJsonObject()) {
+			JsonObject groovy = settings.get("groovy").getAsJsonObject();
+			if (groovy.has("astNodeBudget") && groovy.get("astNodeBudget").isJsonPrimitive()) {
+				nodeBudget = groovy.get("astNodeBudget").getAsInt();
+			}
+		}
+		// closed files are reduced to fit the new budget after the next compile
+		astRetentionPolicy.setNodeBudget(nodeBudget);
+	}
+
 	private void updateClasspath(JsonObject settings) {
 		List<String> classpathList = new ArrayList<>();
 
@@ -199,12 +489,19 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 		}
 
 		if (!classpathList.equals(compilationUnitFactory.getAdditionalClasspathList())) {
-			compilationUnitFactory.setAdditionalClasspathList(classpathList);
+			completionCache.clear();
+			runExclusive(() -> {
+				compilationUnitFactory.setAdditionalClasspathList(classpathList);
+				// everything is compiled again, so it's a good time to find
+				// any files that changed while the client wasn't watching
+				compilationUnitFactory.rescanSourceFiles();
 
-			createOrUpdateCompilationUnit();
-			compile();
-			visitAST();
-			previousContext = null;
+				createOrUpdateCompilationUnit();
+				compile();
+				visitAST();
+				previousContext = null;
+				scheduleWorkspaceIndexing();
+			});
 		}
 	}
 
@@ -215,8 +512,13 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 		URI uri = URI.create(params.getTextDocument().getUri());
 		recompileIfContextChanged(uri);
 
-		HoverProvider provider = new HoverProvider(astVisitor);
-		return provider.provideHover(params.getTextDocument(), params.getPosition());
+		return computeAsync(cancelChecker -> {
+			awaitFullAST(uri, cancelChecker);
+			return withReadLock(() -> {
+				HoverProvider provider = new HoverProvider(astVisitor);
+				return provider.provideHover(params.getTextDocument(), params.getPosition());
+			});
+		});
 	}
 
 	@Override
@@ -224,54 +526,66 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 		TextDocumentIdentifier textDocument = params.getTextDocument();
 		Position position = params.getPosition();
 		URI uri = URI.create(textDocument.getUri());
+		// the version is read first, so that a change made in between makes
+		// the cache miss instead of matching the wrong text
+		int version = fileContentsTracker.getVersion(uri);
+
+		// typing more of a member name doesn't require compiling again, or
+		// even reading the whole document
+		List<CompletionItem> cachedItems = completionCache.get(uri, version,
+				fileContentsTracker.getOffset(uri, position));
+		if (cachedItems != null) {
+			return CompletableFuture.completedFuture(Either.forLeft(cachedItems));
+		}
+
+		String originalSource = fileContentsTracker.getContents(uri);
+		LineIndex lineIndex = fileContentsTracker.getLineIndex(uri);
+		int offset = lineIndex != null ? lineIndex.getOffset(position) : -1;
 
 		recompileIfContextChanged(uri);
 
-		String originalSource = null;
-		ASTNode offsetNode = astVisitor.getNodeAtLineAndColumn(uri, position.getLine(), position.getCharacter());
-		if (offsetNode == null) {
-			originalSource = fileContentsTracker.getContents(uri);
-			VersionedTextDocumentIdentifier versionedTextDocument = new VersionedTextDocumentIdentifier(
-					textDocument.getUri(), 1);
-			int offset = Positions.getOffset(originalSource, position);
-			String lineBeforeOffset = originalSource.substring(offset - position.getCharacter(), offset);
-			Matcher matcher = PATTERN_CONSTRUCTOR_CALL.matcher(lineBeforeOffset);
-			TextDocumentContentChangeEvent changeEvent = null;
-			if (matcher.matches()) {
-				changeEvent = new TextDocumentContentChangeEvent(new Range(position, position), 0, "a()");
-			} else {
-				changeEvent = new TextDocumentContentChangeEvent(new Range(position, position), 0, "a");
-			}
-			DidChangeTextDocumentParams didChangeParams = new DidChangeTextDocumentParams(versionedTextDocument,
-					Collections.singletonList(changeEvent));
-			// if the offset node is null, there is probably a syntax error.
-			// a completion request is usually triggered by the . character, and
-			// if there is no property name after the dot, it will cause a syntax
-			// error.
-			// this hack adds a placeholder property name in the hopes that it
-			// will correctly create a PropertyExpression to use for completion.
-			// we'll restore the original text after we're done handling the
-			// completion request.
-			didChange(didChangeParams);
-		}
-
-		CompletableFuture<Either<List<CompletionItem>, CompletionList>> result = null;
-		try {
-			CompletionProvider provider = new CompletionProvider(astVisitor, classGraphScanResult);
-			result = provider.provideCompletion(params.getTextDocument(), params.getPosition(), params.getContext());
-		} finally {
-			if (originalSource != null) {
-				VersionedTextDocumentIdentifier versionedTextDocument = new VersionedTextDocumentIdentifier(
-						textDocument.getUri(), 1);
-				TextDocumentContentChangeEvent changeEvent = new TextDocumentContentChangeEvent(null, 0,
-						originalSource);
-				DidChangeTextDocumentParams didChangeParams = new DidChangeTextDocumentParams(versionedTextDocument,
-						Collections.singletonList(changeEvent));
-				didChange(didChangeParams);
+		return computeAsync(cancelChecker -> {
+			awaitFullAST(uri, cancelChecker);
+
+			ASTNodeVisitor visitor = astVisitor;
+			ASTNode offsetNode = getNodeAtPosition(visitor, uri, position);
+			if (offsetNode == null) {
+				// if the offset node is null, there is probably a syntax error.
+				// a completion request is usually triggered by the . character, and
+				// if there is no property name after the dot, it will cause a syntax
+				// error.
+				// this hack adds a placeholder property name to a copy of the file
+				// in the hopes that it will correctly create a PropertyExpression to
+				// use for completion.
+				if (originalSource != null && offset != -1) {
+					String lineBeforeOffset = originalSource.substring(lineIndex.getLineStart(position.getLine()),
+							offset);
+					Matcher matcher = PATTERN_CONSTRUCTOR_CALL.matcher(lineBeforeOffset);
+					String placeholder = matcher.matches() ? "a()" : "a";
+					visitor = compileScratchAST(uri, originalSource, offset, placeholder, cancelChecker);
+				}
 			}
-		}
 
-		return result;
+			// until the classpath is indexed, use the previous index, if any
+			CompletableFuture<ClasspathIndex> indexResult = classpathIndexResult;
+			boolean isClasspathIndexReady = indexResult.isDone();
+			ClasspathIndex index = isClasspathIndexReady ? indexResult.join() : classpathIndex;
+			CompletionProvider provider = new CompletionProvider(visitor, index, isClasspathIndexReady, cancelChecker);
+			// classes aren't missing from files that haven't been compiled yet
+			provider.setUnindexedFileSummaries(getUnindexedFileSummaries(visitor), this::readWorkspaceFile);
+			CompletableFuture<Either<List<CompletionItem>, CompletionList>> result = withReadLock(() -> {
+				return provider.provideCompletion(params.getTextDocument(), params.getPosition(), params.getContext());
+			});
+			Position memberNameStart = provider.getMemberNameStart();
+			if (originalSource != null && offset != -1 && memberNameStart != null) {
+				int anchorOffset = lineIndex.getOffset(memberNameStart);
+				if (anchorOffset >= 0 && anchorOffset <= offset) {
+					completionCache.put(uri, version, anchorOffset, originalSource.substring(anchorOffset, offset),
+							provider.getMemberCandidates());
+				}
+			}
+			return result;
+		});
 	}
 
 	@Override
@@ -280,8 +594,13 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 		URI uri = URI.create(params.getTextDocument().getUri());
 		recompileIfContextChanged(uri);
 
-		DefinitionProvider provider = new DefinitionProvider(astVisitor);
-		return provider.provideDefinition(params.getTextDocument(), params.getPosition());
+		return computeAsync(cancelChecker -> {
+			awaitFullAST(uri, cancelChecker);
+			return withReadLock(() -> {
+				DefinitionProvider provider = new DefinitionProvider(astVisitor);
+				return provider.provideDefinition(params.getTextDocument(), params.getPosition());
+			});
+		});
 	}
 
 	@Override
@@ -292,41 +611,31 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 
 		recompileIfContextChanged(uri);
 
-		String originalSource = null;
-		ASTNode offsetNode = astVisitor.getNodeAtLineAndColumn(uri, position.getLine(), position.getCharacter());
-		if (offsetNode == null) {
-			originalSource = fileContentsTracker.getContents(uri);
-			VersionedTextDocumentIdentifier versionedTextDocument = new VersionedTextDocumentIdentifier(
-					textDocument.getUri(), 1);
-			TextDocumentContentChangeEvent changeEvent = new TextDocumentContentChangeEvent(
-					new Range(position, position), 0, ")");
-			DidChangeTextDocumentParams didChangeParams = new DidChangeTextDocumentParams(versionedTextDocument,
-					Collections.singletonList(changeEvent));
-			// if the offset node is null, there is probably a syntax error.
-			// a signature help request is usually triggered by the ( character,
-			// and if there is no matching ), it will cause a syntax error.
-			// this hack adds a placeholder ) character in the hopes that it
-			// will correctly create a ArgumentListExpression to use for
-			// signature help.
-			// we'll restore the original text after we're done handling the
-			// signature help request.
-			didChange(didChangeParams);
-		}
+		return computeAsync(cancelChecker -> {
+			awaitFullAST(uri, cancelChecker);
 
-		try {
-			SignatureHelpProvider provider = new SignatureHelpProvider(astVisitor);
-			return provider.provideSignatureHelp(params.getTextDocument(), params.getPosition());
-		} finally {
-			if (originalSource != null) {
-				VersionedTextDocumentIdentifier versionedTextDocument = new VersionedTextDocumentIdentifier(
-						textDocument.getUri(), 1);
-				TextDocumentContentChangeEvent changeEvent = new TextDocumentContentChangeEvent(null, 0,
-						originalSource);
-				DidChangeTextDocumentParams didChangeParams = new DidChangeTextDocumentParams(versionedTextDocument,
-						Collections.singletonList(changeEvent));
-				didChange(didChangeParams);
+			ASTNodeVisitor visitor = astVisitor;
+			ASTNode offsetNode = getNodeAtPosition(visitor, uri, position);
+			if (offsetNode == null) {
+				// if the offset node is null, there is probably a syntax error.
+				// a signature help request is usually triggered by the ( character,
+				// and if there is no matching ), it will cause a syntax error.
+				// this hack adds a placeholder ) character to a copy of the file in
+				// the hopes that it will correctly create a ArgumentListExpression
+				// to use for signature help.
+				String originalSource = fileContentsTracker.getContents(uri);
+				LineIndex lineIndex = fileContentsTracker.getLineIndex(uri);
+				int offset = lineIndex != null ? lineIndex.getOffset(position) : -1;
+				if (originalSource != null && offset != -1) {
+					visitor = compileScratchAST(uri, originalSource, offset, ")", cancelChecker);
+				}
 			}
-		}
+
+			SignatureHelpProvider provider = new SignatureHelpProvider(visitor);
+			return withReadLock(() -> {
+				return provider.provideSignatureHelp(params.getTextDocument(), params.getPosition());
+			});
+		});
 	}
 
 	@Override
@@ -335,8 +644,13 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 		URI uri = URI.create(params.getTextDocument().getUri());
 		recompileIfContextChanged(uri);
 
-		TypeDefinitionProvider provider = new TypeDefinitionProvider(astVisitor);
-		return provider.provideTypeDefinition(params.getTextDocument(), params.getPosition());
+		return computeAsync(cancelChecker -> {
+			awaitFullAST(uri, cancelChecker);
+			return withReadLock(() -> {
+				TypeDefinitionProvider provider = new TypeDefinitionProvider(astVisitor);
+				return provider.provideTypeDefinition(params.getTextDocument(), params.getPosition());
+			});
+		});
 	}
 
 	@Override
@@ -344,8 +658,17 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 		URI uri = URI.create(params.getTextDocument().getUri());
 		recompileIfContextChanged(uri);
 
-		ReferenceProvider provider = new ReferenceProvider(astVisitor);
-		return provider.provideReferences(params.getTextDocument(), params.getPosition());
+		return computeAsync(cancelChecker -> {
+			// files that haven't been compiled yet may contain references too
+			CompilationScheduler.await(whenWorkspaceIndexed(), cancelChecker);
+			awaitFullAST(uri, cancelChecker);
+			return withReadLock(() -> {
+				ReferenceProvider provider = new ReferenceProvider(astVisitor, cancelChecker);
+				ProgressReporter progress = new ProgressReporter(languageClient, params.getWorkDoneToken(),
+						params.getPartialResultToken());
+				return provider.provideReferences(params.getTextDocument(), params.getPosition(), progress);
+			});
+		});
 	}
 
 	@Override
@@ -354,14 +677,47 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 		URI uri = URI.create(params.getTextDocument().getUri());
 		recompileIfContextChanged(uri);
 
-		DocumentSymbolProvider provider = new DocumentSymbolProvider(astVisitor);
-		return provider.provideDocumentSymbols(params.getTextDocument());
+		return computeAsync(cancelChecker -> {
+			awaitFullAST(uri, cancelChecker);
+			return withReadLock(() -> {
+				DocumentSymbolProvider provider = new DocumentSymbolProvider(astVisitor);
+				return provider.provideDocumentSymbols(params.getTextDocument());
+			});
+		});
 	}
 
 	@Override
 	public CompletableFuture<List<? extends SymbolInformation>> symbol(WorkspaceSymbolParams params) {
-		WorkspaceSymbolProvider provider = new WorkspaceSymbolProvider(astVisitor);
-		return provider.provideWorkspaceSymbols(params.getQuery());
+		if (astVisitor == null) {
+			// until the workspace is compiled for the first time, the symbols
+			// saved in the previous session may be used, if nothing changed
+			List<FileSummary> summaries = getCurrentFileSummaries();
+			if (summaries != null) {
+				return computeAsync(cancelChecker -> {
+					WorkspaceSymbolProvider provider = new WorkspaceSymbolProvider(null, summaries, cancelChecker);
+					ProgressReporter progress = new ProgressReporter(languageClient, params.getWorkDoneToken(),
+							params.getPartialResultToken());
+					return provider.provideWorkspaceSymbols(params.getQuery(), progress);
+				});
+			}
+		}
+		if (!workspaceIndexedResult.isDone()) {
+			runExclusive(this::scheduleWorkspaceIndexing);
+		}
+		// searching the index is cheap enough to include any pending changes
+		CompletableFuture<Void> flushResult = compilationScheduler.flush();
+		return computeAsync(cancelChecker -> {
+			CompilationScheduler.await(flushResult, cancelChecker);
+			return withReadLock(() -> {
+				// until the rest of the workspace is indexed, files that haven't
+				// been compiled yet are searched using their saved summaries
+				List<FileSummary> summaries = getUnindexedFileSummaries(astVisitor);
+				WorkspaceSymbolProvider provider = new WorkspaceSymbolProvider(astVisitor, summaries, cancelChecker);
+				ProgressReporter progress = new ProgressReporter(languageClient, params.getWorkDoneToken(),
+						params.getPartialResultToken());
+				return provider.provideWorkspaceSymbols(params.getQuery(), progress);
+			});
+		});
 	}
 
 	@Override
@@ -369,18 +725,86 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 		URI uri = URI.create(params.getTextDocument().getUri());
 		recompileIfContextChanged(uri);
 
-		RenameProvider provider = new RenameProvider(astVisitor, fileContentsTracker);
-		return provider.provideRename(params);
+		return computeAsync(cancelChecker -> {
+			// a rename that skipped the files that haven't been compiled yet
+			// would break their references
+			CompilationScheduler.await(whenWorkspaceIndexed(), cancelChecker);
+			awaitFullAST(uri, cancelChecker);
+			return withReadLock(() -> {
+				RenameProvider provider = new RenameProvider(astVisitor, fileContentsTracker);
+				return provider.provideRename(params);
+			});
+		});
 	}
 
 	// --- INTERNAL
 
+	/**
+	 * Runs a request on the pool of request threads, so that the client may
+	 * cancel it while it waits for the AST, or while a provider is working.
+	 * Requests must not hold the read lock while they wait for the compile
+	 * worker.
+	 */
+	private <T> CompletableFuture<T> computeAsync(Function<CancelChecker, CompletableFuture<T>> request) {
+		return CompletableFutures.computeAsync(requestExecutor, cancelChecker -> {
+			return request.apply(cancelChecker).join();
+		});
+	}
+
+	/**
+	 * Compiling may modify the nodes that are shared with the specified AST,
+	 * so they're searched while it is locked, like in the providers.
+	 */
+	private ASTNode getNodeAtPosition(ASTNodeVisitor visitor, URI uri, Position position) {
+		if (visitor == null) {
+			// nothing has been compiled yet
+			return null;
+		}
+		return withReadLock(() -> {
+			return visitor.getNodeAtLineAndColumn(uri, position.getLine(), position.getCharacter());
+		});
+	}
+
+	private <T> T withReadLock(Supplier<T> task) {
+		astLock.readLock().lock();
+		try {
+			return task.get();
+		} finally {
+			astLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Compiling modifies nodes that are shared with the current AST, so
+	 * requests must wait until it's finished.
+	 */
+	private void runWithWriteLock(Runnable task) {
+		astLock.writeLock().lock();
+		try {
+			task.run();
+		} finally {
+			astLock.writeLock().unlock();
+		}
+	}
+
+	private CompletableFuture<Void> runExclusive(Runnable task) {
+		return compilationScheduler.runExclusive(() -> runWithWriteLock(task));
+	}
+
 	private void visitAST() {
 		if (compilationUnit == null) {
 			return;
 		}
-		astVisitor = new ASTNodeVisitor();
-		astVisitor.visitCompilationUnit(compilationUnit);
+		ASTNodeVisitor newVisitor = new ASTNodeVisitor();
+		newVisitor.visitCompilationUnit(compilationUnit);
+		dependencyGraph.clear();
+		for (URI uri : newVisitor.getURIs()) {
+			dependencyGraph.update(uri, newVisitor.getClassNodes(uri), newVisitor.getNodes(uri));
+		}
+		stubUnusedFiles(newVisitor);
+		// requests keep using the previous AST until the new one is complete
+		astVisitor = newVisitor;
+		saveFileSummaries(newVisitor, newVisitor.getURIs());
 	}
 
 	private void visitAST(Set<URI> uris) {
@@ -391,81 +815,664 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 		if (compilationUnit == null) {
 			return;
 		}
-		astVisitor.visitCompilationUnit(compilationUnit, uris);
+		ASTNodeVisitor newVisitor = new ASTNodeVisitor(astVisitor);
+		newVisitor.visitCompilationUnit(compilationUnit, uris);
+		for (URI uri : uris) {
+			dependencyGraph.update(uri, newVisitor.getClassNodes(uri), newVisitor.getNodes(uri));
+		}
+		stubUnusedFiles(newVisitor);
+		astVisitor = newVisitor;
+		saveFileSummaries(newVisitor, uris);
 	}
 
-	private boolean createOrUpdateCompilationUnit() {
-		if (compilationUnit != null) {
-			File targetDirectory = compilationUnit.getConfiguration().getTargetDirectory();
-			if (targetDirectory != null && targetDirectory.exists()) {
-				try {
-					Files.walk(targetDirectory.toPath()).sorted(Comparator.reverseOrder()).map(Path::toFile)
-							.forEach(File::delete);
-				} catch (IOException e) {
-					System.err.println("Failed to delete target directory: " + targetDirectory.getAbsolutePath());
-					compilationUnit = null;
-					return false;
+	/**
+	 * Reduces the closed files that weren't used recently to stubs, and
+	 * releases their method bodies from the compilation unit, so that the
+	 * memory used by the AST grows with the files that are being edited
+	 * instead of with the size of the workspace. The bodies aren't read by
+	 * requests, only by the visitor, and a stub is compiled again from its
+	 * text before it's visited.
+	 */
+	private void stubUnusedFiles(ASTNodeVisitor visitor) {
+		Set<URI> stubURIs = new HashSet<>(astRetentionPolicy.selectStubs(visitor, fileContentsTracker.getOpenURIs()));
+		if (stubURIs.isEmpty()) {
+			return;
+		}
+		compilationUnit.iterator().forEachRemaining(sourceUnit -> {
+			URI uri = sourceUnit.getSource().getURI();
+			if (stubURIs.contains(uri)) {
+				visitor.stubFile(uri);
+				compilationUnit.releaseMethodBodies(sourceUnit);
+			}
+		});
+	}
+
+	/**
+	 * Waits for the AST of a file, like CompilationScheduler.awaitAST(), but
+	 * if the file was reduced to a stub, it's compiled again first.
+	 */
+	private void awaitFullAST(URI uri, CancelChecker cancelChecker) {
+		astRetentionPolicy.touch(uri);
+		compilationScheduler.awaitAST(uri, cancelChecker);
+		ASTNodeVisitor visitor = astVisitor;
+		if (visitor == null || !visitor.isStub(uri)) {
+			return;
+		}
+		CompletableFuture<Void> recompileResult = runExclusive(() -> recompileStub(uri));
+		CompilationScheduler.await(recompileResult, cancelChecker);
+	}
+
+	private void recompileStub(URI uri) {
+		if (astVisitor == null || !astVisitor.isStub(uri)) {
+			return;
+		}
+		// its method bodies were released, so it's compiled again
+		fileContentsTracker.forceChanged(uri);
+		compileAndVisit(Collections.singleton(uri), workspaceIndexing);
+	}
+
+	/**
+	 * Saves the summaries of the files that were just visited in the
+	 * background. Only the sources that were compiled from memory are read
+	 * here, because the others are read from disk.
+	 */
+	private void saveFileSummaries(ASTNodeVisitor visitor, Set<URI> uris) {
+		FileSummaryCache cache = fileSummaryCache;
+		if (cache == null || compilationUnit == null) {
+			return;
+		}
+		Map<URI, ReaderSource> sourcesByURI = new HashMap<>();
+		compilationUnit.iterator().forEachRemaining(sourceUnit -> {
+			URI uri = sourceUnit.getSource().getURI();
+			if (uri != null && uris.contains(uri)) {
+				sourcesByURI.put(uri, sourceUnit.getSource());
+			}
+		});
+		List<PendingFileSummary> pending = new ArrayList<>();
+		for (URI uri : uris) {
+			SymbolIndex symbolIndex = visitor.getSymbolIndex(uri);
+			ReaderSource source = sourcesByURI.get(uri);
+			if (symbolIndex == null || source == null) {
+				continue;
+			}
+			pending.add(new PendingFileSummary(uri, source, symbolIndex,
+					new LinkedHashSet<>(dependencyGraph.getDefinedClasses(uri)),
+					new LinkedHashSet<>(dependencyGraph.getReferencedClasses(uri))));
+		}
+		if (pending.isEmpty()) {
+			return;
+		}
+		fileSummariesWritten = CompletableFuture.runAsync(() -> {
+			for (PendingFileSummary file : pending) {
+				String contents = readSource(file.source);
+				if (contents == null) {
+					continue;
 				}
+				cache.write(FileSummary.create(file.uri, contents, file.symbolIndex, file.definedClasses,
+						file.referencedClasses));
+			}
+		}, summaryExecutor);
+	}
+
+	/**
+	 * Reads the summaries saved in a previous session for the source files in
+	 * the workspace whose contents haven't changed since.
+	 */
+	private FileSummaries loadFileSummaries(Set<URI> sourceURIs, FileSummaryCache cache) {
+		FileSummaries result = new FileSummaries();
+		for (URI uri : sourceURIs) {
+			String contents = readWorkspaceFile(uri);
+			if (contents == null) {
+				result.complete = false;
+				continue;
+			}
+			FileSummary summary = cache.read(uri, contents);
+			if (summary == null) {
+				result.complete = false;
+				continue;
+			}
+			result.summariesByURI.put(uri, summary);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the saved summaries of all files in the workspace, or null if
+	 * they haven't been loaded yet, or if any file has no valid summary.
+	 */
+	private List<FileSummary> getCurrentFileSummaries() {
+		CompletableFuture<FileSummaries> result = fileSummariesResult;
+		if (!result.isDone()) {
+			return null;
+		}
+		FileSummaries summaries = result.getNow(null);
+		if (summaries == null || !summaries.complete) {
+			return null;
+		}
+		for (URI uri : fileContentsTracker.getOpenURIs()) {
+			// an open file may have been changed since the summaries loaded
+			FileSummary summary = summaries.summariesByURI.get(uri);
+			String contents = fileContentsTracker.getContents(uri);
+			if (summary == null || contents == null
+					|| !summary.getContentHash().equals(FileSummaryCache.hashContents(contents))) {
+				return null;
 			}
 		}
+		return new ArrayList<>(summaries.summariesByURI.values());
+	}
 
+	private static String readSource(ReaderSource source) {
+		StringBuilder builder = new StringBuilder();
+		char[] buffer = new char[8192];
+		try (Reader reader = new BufferedReader(source.getReader())) {
+			int count;
+			while ((count = reader.read(buffer)) != -1) {
+				builder.append(buffer, 0, count);
+			}
+		} catch (IOException e) {
+			System.err.println("Failed to read source file: " + source.getURI());
+			return null;
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Compiles a copy of a file with a placeholder inserted at the specified
+	 * offset, and returns the existing AST with the nodes for that file
+	 * replaced. The copy is resolved against the classes of the other files in
+	 * the workspace, but it never replaces the real contents of the file, and
+	 * its errors are not reported as diagnostics.
+	 */
+	private ASTNodeVisitor compileScratchAST(URI uri, String originalSource, int offset, String placeholder,
+			CancelChecker cancelChecker) {
+		String contents = originalSource.substring(0, offset) + placeholder + originalSource.substring(offset);
+		CompletableFuture<ASTNodeVisitor> scratchResult = compilationScheduler.supplyExclusive(() -> {
+			if (compilationUnit == null || astVisitor == null) {
+				return null;
+			}
+			GroovyLSCompilationUnit scratchUnit = new GroovyLSCompilationUnit(compilationUnit.getConfiguration(), null,
+					compilationUnit.getClassLoader());
+			compilationUnit.iterator().forEachRemaining(sourceUnit -> {
+				if (uri.equals(sourceUnit.getSource().getURI()) || sourceUnit.getAST() == null) {
+					return;
+				}
+				sourceUnit.getAST().getClasses().forEach(classNode -> {
+					scratchUnit.getAST().addClass(classNode);
+				});
+			});
+			CompilerConfiguration config = scratchUnit.getConfiguration();
+			SourceUnit sourceUnit = new SourceUnit(Paths.get(uri).toString(),
+					new StringReaderSourceWithURI(contents, uri, config), config, scratchUnit.getClassLoader(),
+					scratchUnit.getErrorCollector());
+			scratchUnit.addSource(sourceUnit);
+			try {
+				scratchUnit.compile(Phases.CANONICALIZATION, cancelChecker);
+			} catch (CancellationException e) {
+				return null;
+			} catch (CompilationFailedException e) {
+				// ignore
+			} catch (GroovyBugError e) {
+				System.err.println("Unexpected exception in language server when compiling Groovy.");
+				e.printStackTrace(System.err);
+			} catch (Exception e) {
+				System.err.println("Unexpected exception in language server when compiling Groovy.");
+				e.printStackTrace(System.err);
+			}
+			ASTNodeVisitor scratchVisitor = new ASTNodeVisitor(astVisitor);
+			scratchVisitor.visitCompilationUnit(scratchUnit, Collections.singleton(uri));
+			return scratchVisitor;
+		});
+		ASTNodeVisitor result = CompilationScheduler.await(scratchResult, cancelChecker);
+		if (result == null) {
+			return astVisitor;
+		}
+		return result;
+	}
+
+	private boolean createOrUpdateCompilationUnit() {
 		GroovyLSCompilationUnit oldCompilationUnit = compilationUnit;
-		compilationUnit = compilationUnitFactory.create(workspaceRoot, fileContentsTracker);
-		fileContentsTracker.resetChangedFiles();
+		synchronized (fileContentsTracker) {
+			// changes that arrive while the compilation unit is updated must
+			// not be reset before they are compiled
+			compilationUnit = compilationUnitFactory.create(workspaceRoot, fileContentsTracker);
+			fileContentsTracker.resetChangedFiles();
+		}
 
 		if (compilationUnit != null) {
-			File targetDirectory = compilationUnit.getConfiguration().getTargetDirectory();
-			if (targetDirectory != null && !targetDirectory.exists() && !targetDirectory.mkdirs()) {
-				System.err.println("Failed to create target directory: " + targetDirectory.getAbsolutePath());
-			}
 			GroovyClassLoader newClassLoader = compilationUnit.getClassLoader();
 			if (!newClassLoader.equals(classLoader)) {
 				classLoader = newClassLoader;
 
-				try {
-					classGraphScanResult = new ClassGraph().overrideClassLoaders(classLoader).enableClassInfo()
-							.enableSystemJarsAndModules()
-							.scan();
-				} catch (ClassGraphException e) {
-					classGraphScanResult = null;
-				}
+				indexClasspath(newClassLoader);
 			}
 		} else {
-			classGraphScanResult = null;
+			classpathIndexResult = CompletableFuture.completedFuture(null);
+			classpathIndex = null;
 		}
 
 		return compilationUnit != null && compilationUnit.equals(oldCompilationUnit);
 	}
 
+	/**
+	 * Indexes the classpath in the background, so that compiling doesn't need
+	 * to wait. Completion uses the previous index until the new one is ready.
+	 */
+	private void indexClasspath(GroovyClassLoader newClassLoader) {
+		CompletableFuture<ClasspathIndex> result = CompletableFuture.supplyAsync(() -> {
+			try {
+				return classpathIndexer.index(newClassLoader, classpathIndex);
+			} catch (ClassGraphException e) {
+				System.err.println("Failed to index classpath: " + e.getMessage());
+				return null;
+			}
+		}, classpathExecutor);
+		classpathIndexResult = result;
+		result.thenAccept(index -> {
+			if (classpathIndexResult == result) {
+				classpathIndex = index;
+			}
+		});
+	}
+
+	/**
+	 * Returns the directory where data that is expensive to compute is saved
+	 * between sessions. It may be customized with a system property.
+	 */
+	private static Path getCacheDirectory() {
+		String cacheDirectory = System.getProperty(PROPERTY_CACHE_DIRECTORY);
+		if (cacheDirectory != null && cacheDirectory.length() > 0) {
+			return Paths.get(cacheDirectory);
+		}
+		return Paths.get(System.getProperty("user.home"), ".groovyls", "cache");
+	}
+
 	protected void recompileIfContextChanged(URI newContext) {
 		if (previousContext == null || previousContext.equals(newContext)) {
 			return;
 		}
 		fileContentsTracker.forceChanged(newContext);
-		compileAndVisitAST(newContext);
+		compilationScheduler.schedule(newContext);
 	}
 
-	private void compileAndVisitAST(URI contextURI) {
-		Set<URI> uris = Collections.singleton(contextURI);
+	private void compileAndVisitAST(Set<URI> uris) {
+		WorkspaceIndexing indexing = workspaceIndexing;
+		Set<URI> urisToCompile = uris;
+		if (indexing != null) {
+			// the files that haven't been compiled yet, but that the changed
+			// files may depend on, are compiled first
+			Set<URI> referencedURIs = findUnindexedReferences(indexing, uris);
+			if (!referencedURIs.isEmpty()) {
+				urisToCompile = new LinkedHashSet<>(uris);
+				urisToCompile.addAll(referencedURIs);
+			}
+		}
+		compileAndVisit(urisToCompile, indexing);
+		for (URI uri : uris) {
+			previousContext = uri;
+		}
+		scheduleWorkspaceIndexing();
+	}
+
+	private void forceChangedSourceFiles(Set<URI> changedSourceURIs) {
+		changedSourceURIs.forEach(fileContentsTracker::forceChanged);
+		WorkspaceIndexing indexing = workspaceIndexing;
+		if (indexing != null) {
+			// a new file must be compiled now, because it wasn't listed when
+			// indexing started, and a changed file's summary is out of date
+			indexing.includedURIs.addAll(changedSourceURIs);
+			indexing.deferredURIs.removeAll(changedSourceURIs);
+		}
+	}
+
+	private void compileAndVisit(Set<URI> uris, WorkspaceIndexing indexing) {
+		if (indexing != null) {
+			for (URI uri : uris) {
+				if (indexing.unindexedURIs.contains(uri)) {
+					indexing.includedURIs.add(uri);
+					fileContentsTracker.forceChanged(uri);
+				}
+			}
+		}
+		Set<URI> urisToVisit = new HashSet<>(uris);
+		for (URI dependent : getDependents(uris)) {
+			// a dependent's resolved types would continue to point to the old
+			// classes if it weren't compiled again
+			fileContentsTracker.forceChanged(dependent);
+			urisToVisit.add(dependent);
+		}
 		boolean isSameUnit = createOrUpdateCompilationUnit();
-		compile();
+		// a new compilation unit must be compiled completely, but the same
+		// unit may be abandoned when newer changes arrive
+		compile(isSameUnit ? compilationScheduler::checkCanceled : NO_CANCEL);
 		if (isSameUnit) {
-			visitAST(uris);
+			visitAST(urisToVisit);
 		} else {
 			visitAST();
 		}
-		previousContext = contextURI;
+		if (indexing != null) {
+			indexing.unindexedURIs.removeAll(uris);
+		}
+	}
+
+	/**
+	 * Lists the files in the workspace, but doesn't compile them yet. The
+	 * files that the open files depend on are compiled with them, and the
+	 * rest are compiled later in the background.
+	 */
+	private void startWorkspaceIndexing(Set<URI> sourceURIs) {
+		if (workspaceIndexing != null) {
+			workspaceIndexing.endProgress();
+			workspaceIndexedResult.complete(null);
+		}
+		workspaceIndexing = null;
+		if (sourceURIs.isEmpty()) {
+			compilationUnitFactory.setIncludedURIs(null);
+			workspaceIndexedResult = CompletableFuture.completedFuture(null);
+			return;
+		}
+		WorkspaceIndexing indexing = new WorkspaceIndexing();
+		for (URI uri : sourceURIs) {
+			indexing.unindexedURIs.add(uri);
+			String fileName = Paths.get(uri).getFileName().toString();
+			String className = fileName.substring(0, fileName.length() - FILE_EXTENSION_GROOVY.length());
+			indexing.urisByClassName.computeIfAbsent(className, key -> new ArrayList<>()).add(uri);
+		}
+		indexing.total = indexing.unindexedURIs.size();
+		compilationUnitFactory.setIncludedURIs(indexing.includedURIs);
+		workspaceIndexing = indexing;
+		workspaceIndexedResult = new CompletableFuture<>();
+	}
+
+	/**
+	 * Starts compiling the files in the workspace that haven't been compiled
+	 * yet in batches. Requests and pending changes may run between batches.
+	 */
+	private void scheduleWorkspaceIndexing() {
+		WorkspaceIndexing indexing = workspaceIndexing;
+		if (indexing == null || indexing.isScheduled || (!indexing.canDefer && indexing.getRemainingCount() == 0)) {
+			return;
+		}
+		indexing.isScheduled = true;
+		if (!indexing.hasStartedProgress) {
+			indexing.hasStartedProgress = true;
+			startIndexingProgress(indexing);
+		}
+		// the saved summaries decide which files may be deferred
+		fileSummariesResult.thenRun(() -> runExclusive(() -> indexNextBatch(indexing)));
+	}
+
+	/**
+	 * Compiles the files that were deferred too, because a request needs
+	 * every file in the workspace.
+	 */
+	private void includeDeferredFiles() {
+		WorkspaceIndexing indexing = workspaceIndexing;
+		if (indexing == null) {
+			return;
+		}
+		indexing.canDefer = false;
+		indexing.deferredURIs.clear();
+	}
+
+	/**
+	 * Defers the files that haven't changed since their summaries were
+	 * saved, because the summaries are enough for workspace symbols and for
+	 * completing class names. A deferred file is compiled when another file
+	 * references it, or when a request needs every file in the workspace.
+	 */
+	private void deferUnchangedFiles(WorkspaceIndexing indexing) {
+		FileSummaries summaries = fileSummariesResult.getNow(null);
+		if (summaries == null) {
+			return;
+		}
+		for (URI uri : indexing.unindexedURIs) {
+			if (summaries.summariesByURI.containsKey(uri) && !fileContentsTracker.isOpen(uri)) {
+				indexing.deferredURIs.add(uri);
+			}
+		}
+		indexing.total = indexing.getRemainingCount();
+	}
+
+	private void indexNextBatch(WorkspaceIndexing indexing) {
+		if (workspaceIndexing != indexing) {
+			// the workspace root has changed
+			return;
+		}
+		if (indexing.canDefer) {
+			indexing.canDefer = false;
+			deferUnchangedFiles(indexing);
+		}
+		compileNextBatch(indexing, false);
+		int remainingCount = indexing.getRemainingCount();
+		indexing.reportProgress(indexing.total - remainingCount);
+		if (remainingCount > 0) {
+			runExclusive(() -> indexNextBatch(indexing));
+			return;
+		}
+		indexing.isScheduled = false;
+		indexing.endProgress();
+		if (!indexing.unindexedURIs.isEmpty()) {
+			// the rest were deferred, but their diagnostics are reported
+			// once the files that are being edited are idle
+			scheduleDeferredIndexing(indexing);
+			return;
+		}
+		endWorkspaceIndexing();
+	}
+
+	private void scheduleDeferredIndexing(WorkspaceIndexing indexing) {
+		if (indexing.isDeferredScheduled) {
+			return;
+		}
+		indexing.isDeferredScheduled = true;
+		compilationScheduler.runWhenIdle(() -> runWithWriteLock(() -> indexDeferredBatch(indexing)),
+				DEFERRED_INDEX_DELAY);
+	}
+
+	private void indexDeferredBatch(WorkspaceIndexing indexing) {
+		indexing.isDeferredScheduled = false;
+		if (workspaceIndexing != indexing || indexing.isScheduled) {
+			// the workspace root has changed, or other batches are still
+			// running, and they schedule this pass again when they're done
+			return;
+		}
+		compileNextBatch(indexing, true);
+		if (!indexing.unindexedURIs.isEmpty()) {
+			scheduleDeferredIndexing(indexing);
+			return;
+		}
+		endWorkspaceIndexing();
+	}
+
+	private void compileNextBatch(WorkspaceIndexing indexing, boolean includeDeferred) {
+		Set<URI> batch = new LinkedHashSet<>();
+		for (URI uri : indexing.unindexedURIs) {
+			if (batch.size() >= WORKSPACE_INDEX_BATCH_SIZE) {
+				break;
+			}
+			if (!includeDeferred && indexing.deferredURIs.contains(uri)) {
+				continue;
+			}
+			if (batch.add(uri)) {
+				// a file's dependencies are compiled in the same batch, when
+				// possible, so that fewer files need to be compiled again
+				batch.addAll(findUnindexedReferences(indexing, Collections.singleton(uri)));
+			}
+		}
+		if (batch.isEmpty()) {
+			return;
+		}
+		indexing.deferredURIs.removeAll(batch);
+		compileAndVisit(batch, indexing);
+	}
+
+	private void endWorkspaceIndexing() {
+		compilationUnitFactory.setIncludedURIs(null);
+		workspaceIndexing = null;
+		workspaceIndexedResult.complete(null);
+	}
+
+	/**
+	 * Returns the files that haven't been compiled yet that define classes
+	 * with names that appear in the specified files, or in the files that
+	 * they reference, recursively. A class is expected to be defined in a
+	 * file with the same name, unless a saved summary says otherwise.
+	 */
+	private Set<URI> findUnindexedReferences(WorkspaceIndexing indexing, Set<URI> uris) {
+		if (!indexing.hasSummaryClassNames) {
+			FileSummaries summaries = fileSummariesResult.getNow(null);
+			if (summaries != null) {
+				indexing.hasSummaryClassNames = true;
+				summaries.summariesByURI.values().forEach(summary -> {
+					for (String className : summary.getDefinedClasses()) {
+						String simpleName = className.substring(className.lastIndexOf('.') + 1);
+						simpleName = simpleName.substring(simpleName.lastIndexOf('$') + 1);
+						List<URI> classURIs = indexing.urisByClassName.computeIfAbsent(simpleName,
+								key -> new ArrayList<>());
+						if (!classURIs.contains(summary.getURI())) {
+							classURIs.add(summary.getURI());
+						}
+					}
+				});
+			}
+		}
+		Set<URI> result = new LinkedHashSet<>();
+		Deque<URI> queue = new ArrayDeque<>(uris);
+		while (!queue.isEmpty()) {
+			String contents = readWorkspaceFile(queue.poll());
+			if (contents == null) {
+				continue;
+			}
+			Matcher matcher = PATTERN_IDENTIFIER.matcher(contents);
+			while (matcher.find()) {
+				List<URI> classURIs = indexing.urisByClassName.get(matcher.group());
+				if (classURIs == null) {
+					continue;
+				}
+				for (URI classURI : classURIs) {
+					if (!uris.contains(classURI) && indexing.unindexedURIs.contains(classURI)
+							&& result.add(classURI)) {
+						queue.add(classURI);
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the summaries of the files in the workspace that aren't in the
+	 * AST yet.
+	 */
+	private List<FileSummary> getUnindexedFileSummaries(ASTNodeVisitor ast) {
+		FileSummaries summaries = fileSummariesResult.getNow(null);
+		if (workspaceIndexedResult.isDone() || summaries == null) {
+			return Collections.emptyList();
+		}
+		List<FileSummary> result = new ArrayList<>();
+		for (FileSummary summary : summaries.summariesByURI.values()) {
+			URI uri = summary.getURI();
+			if ((ast == null || !ast.getURIs().contains(uri)) && !fileContentsTracker.isOpen(uri)) {
+				result.add(summary);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Asks the client to create the indexing progress in the background,
+	 * because this is called while the AST is locked. Indexing doesn't wait
+	 * for the client to accept the token, and its progress is reported only
+	 * after that.
+	 */
+	private void startIndexingProgress(WorkspaceIndexing indexing) {
+		LanguageClient client = languageClient;
+		if (!workDoneProgressSupported || client == null) {
+			return;
+		}
+		Either<String, Integer> token = Either.forLeft("groovyls-indexing-" + System.identityHashCode(indexing));
+		client.createProgress(new WorkDoneProgressCreateParams(token)).thenRun(() -> {
+			indexing.startProgress(new ProgressReporter(client, token, null));
+		}).exceptionally(e -> {
+			System.err.println("Failed to create indexing progress: " + e.getMessage());
+			return null;
+		});
+	}
+
+	/**
+	 * Reads a file from the workspace. Only open files are read from the file
+	 * contents tracker, because it reads the others while it is locked.
+	 */
+	private String readWorkspaceFile(URI uri) {
+		if (fileContentsTracker.isOpen(uri)) {
+			String contents = fileContentsTracker.getContents(uri);
+			if (contents != null) {
+				return contents;
+			}
+		}
+		try {
+			return new String(Files.readAllBytes(Paths.get(uri)), CompilerConfiguration.DEFAULT.getSourceEncoding());
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	private Set<URI> getDependents(Set<URI> uris) {
+		Set<URI> result = new HashSet<>(dependencyGraph.getDependents(uris));
+		// a changed file may now define a class that another file failed to
+		// resolve, but only if the class name appears in its text
+		List<String> changedContents = new ArrayList<>();
+		for (URI uri : uris) {
+			String contents = fileContentsTracker.getContents(uri);
+			if (contents != null) {
+				changedContents.add(contents);
+			}
+		}
+		Set<URI> resolvableURIs = new HashSet<>();
+		for (URI uri : dependencyGraph.getURIsWithUnresolvedClasses()) {
+			if (uris.contains(uri) || result.contains(uri)) {
+				continue;
+			}
+			boolean resolvable = dependencyGraph.getUnresolvedClasses(uri).stream()
+					.anyMatch(className -> changedContents.stream().anyMatch(contents -> contents.contains(className)));
+			if (resolvable) {
+				resolvableURIs.add(uri);
+			}
+		}
+		if (!resolvableURIs.isEmpty()) {
+			result.addAll(resolvableURIs);
+			result.addAll(dependencyGraph.getDependents(resolvableURIs));
+			result.removeAll(uris);
+		}
+		return result;
 	}
 
 	private void compile() {
+		compile(NO_CANCEL);
+	}
+
+	private void compile(CancelChecker cancelChecker) {
 		if (compilationUnit == null) {
 			return;
 		}
+		// the sources that were already compiled keep their diagnostics,
+		// because their errors aren't reported again
+		Set<URI> sourceURIs = new HashSet<>();
+		Set<URI> compiledURIs = new HashSet<>();
+		compilationUnit.iterator().forEachRemaining(sourceUnit -> {
+			URI uri = sourceUnit.getSource().getURI();
+			sourceURIs.add(uri);
+			if (sourceUnit.getPhase() < Phases.CANONICALIZATION || !sourceUnit.isPhaseComplete()) {
+				compiledURIs.add(uri);
+			}
+		});
 		try {
 			// AST is completely built after the canonicalization phase
 			// for code intelligence, we shouldn't need to go further
 			// http://groovy-lang.org/metaprogramming.html#_compilation_phases_guide
-			compilationUnit.compile(Phases.CANONICALIZATION);
+			compilationUnit.compile(Phases.CANONICALIZATION, cancelChecker);
+		} catch (CancellationException e) {
+			throw e;
 		} catch (CompilationFailedException e) {
 			// ignore
 		} catch (GroovyBugError e) {
@@ -475,11 +1482,13 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 			System.err.println("Unexpected exception in language server when compiling Groovy.");
 			e.printStackTrace(System.err);
 		}
-		Set<PublishDiagnosticsParams> diagnostics = handleErrorCollector(compilationUnit.getErrorCollector());
+		Set<PublishDiagnosticsParams> diagnostics = handleErrorCollector(compilationUnit.getErrorCollector(),
+				compiledURIs, sourceURIs);
 		diagnostics.stream().forEach(languageClient::publishDiagnostics);
 	}
 
-	private Set<PublishDiagnosticsParams> handleErrorCollector(ErrorCollector collector) {
+	private Set<PublishDiagnosticsParams> handleErrorCollector(ErrorCollector collector, Set<URI> compiledURIs,
+			Set<URI> sourceURIs) {
 		Map<URI, List<Diagnostic>> diagnosticsByFile = new HashMap<>();
 
 		List<? extends Message> errors = collector.getErrors();
@@ -507,16 +1516,100 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 				.map(entry -> new PublishDiagnosticsParams(entry.getKey().toString(), entry.getValue()))
 				.collect(Collectors.toSet());
 
-		if (prevDiagnosticsByFile != null) {
-			for (URI key : prevDiagnosticsByFile.keySet()) {
-				if (!diagnosticsByFile.containsKey(key)) {
-					// send an empty list of diagnostics for files that had
-					// diagnostics previously or they won't be cleared
-					result.add(new PublishDiagnosticsParams(key.toString(), new ArrayList<>()));
-				}
+		Iterator<URI> prevURIs = prevDiagnosticsByFile.keySet().iterator();
+		while (prevURIs.hasNext()) {
+			URI key = prevURIs.next();
+			if (diagnosticsByFile.containsKey(key)) {
+				continue;
+			}
+			if (compiledURIs.contains(key) || !sourceURIs.contains(key)) {
+				// send an empty list of diagnostics for files that had
+				// diagnostics previously or they won't be cleared
+				result.add(new PublishDiagnosticsParams(key.toString(), new ArrayList<>()));
+				prevURIs.remove();
 			}
 		}
-		prevDiagnosticsByFile = diagnosticsByFile;
+		prevDiagnosticsByFile.putAll(diagnosticsByFile);
 		return result;
 	}
+
+	private static class WorkspaceIndexing {
+		private Set<URI> unindexedURIs = new LinkedHashSet<>();
+		private Set<URI> includedURIs = new HashSet<>();
+		private Set<URI> deferredURIs = new HashSet<>();
+		private Map<String, List<URI>> urisByClassName = new HashMap<>();
+		private boolean hasSummaryClassNames = false;
+		private boolean isScheduled = false;
+		private boolean isDeferredScheduled = false;
+		private boolean canDefer = true;
+		private boolean hasStartedProgress = false;
+		private int total;
+		private ProgressReporter progress = new ProgressReporter(null, null, null);
+		private int completed = 0;
+		private boolean isDone = false;
+
+		public synchronized void startProgress(ProgressReporter reporter) {
+			if (isDone) {
+				// indexing finished before the client accepted the token
+				return;
+			}
+			progress = reporter;
+			progress.begin("Indexing workspace");
+			if (completed > 0) {
+				progress.report(completed, total);
+			}
+		}
+
+		public synchronized void reportProgress(int completed) {
+			if (isDone) {
+				// deferred files are compiled without progress
+				return;
+			}
+			this.completed = completed;
+			progress.report(completed, total);
+		}
+
+		public synchronized void endProgress() {
+			if (isDone) {
+				return;
+			}
+			isDone = true;
+			progress.end();
+		}
+
+		/**
+		 * Returns the number of files that will be compiled in the background.
+		 */
+		public int getRemainingCount() {
+			int count = 0;
+			for (URI uri : unindexedURIs) {
+				if (!deferredURIs.contains(uri)) {
+					count++;
+				}
+			}
+			return count;
+		}
+	}
+
+	private static class FileSummaries {
+		private Map<URI, FileSummary> summariesByURI = new HashMap<>();
+		private boolean complete = true;
+	}
+
+	private static class PendingFileSummary {
+		public PendingFileSummary(URI uri, ReaderSource source, SymbolIndex symbolIndex, Set<String> definedClasses,
+				Set<String> referencedClasses) {
+			this.uri = uri;
+			this.source = source;
+			this.symbolIndex = symbolIndex;
+			this.definedClasses = definedClasses;
+			this.referencedClasses = referencedClasses;
+		}
+
+		private URI uri;
+		private ReaderSource source;
+		private SymbolIndex symbolIndex;
+		private Set<String> definedClasses;
+		private Set<String> referencedClasses;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,75 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.classpath;
+
+/**
+ * A class found on the classpath, with only the information that completion
+ * needs. Unlike ClassGraph's ClassInfo, it may be saved to the cache.
+ */
+public class ClasspathClass {
+	public static final int FLAG_INTERFACE = 1;
+	public static final int FLAG_ENUM = 2;
+	public static final int FLAG_ANNOTATION = 4;
+
+	private String name;
+	private String packageName;
+	private String simpleName;
+	private int flags;
+
+	public ClasspathClass(String packageName, String nameInPackage, int flags) {
+		this.packageName = packageName;
+		this.name = packageName.length() > 0 ? packageName + "." + nameInPackage : nameInPackage;
+		// the same simple name as ClassInfo.getSimpleName()
+		this.simpleName = nameInPackage.substring(nameInPackage.lastIndexOf('$') + 1);
+		this.flags = flags;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getPackageName() {
+		return packageName;
+	}
+
+	public String getSimpleName() {
+		return simpleName;
+	}
+
+	public int getFlags() {
+		return flags;
+	}
+
+	public boolean isInterface() {
+		return (flags & FLAG_INTERFACE) != 0;
+	}
+
+	public boolean isEnum() {
+		return (flags & FLAG_ENUM) != 0;
+	}
+
+	public boolean isAnnotation() {
+		return (flags & FLAG_ANNOTATION) != 0;
+	}
+
+	String getNameInPackage() {
+		return packageName.length() > 0 ? name.substring(packageName.length() + 1) : name;
+	}
+}
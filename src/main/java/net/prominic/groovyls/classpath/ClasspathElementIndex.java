@@ -0,0 +1,155 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.classpath;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The classes in a single classpath element, like a .jar file or a module,
+ * along with the size and modification time of the element when it was
+ * scanned.
+ */
+public class ClasspathElementIndex {
+	private static final int MAGIC = 0x474c5343;
+	private static final int VERSION = 1;
+
+	private URI uri;
+	private long size;
+	private long lastModified;
+	private List<ClasspathClass> classes;
+
+	public ClasspathElementIndex(URI uri, long size, long lastModified, List<ClasspathClass> classes) {
+		this.uri = uri;
+		this.size = size;
+		this.lastModified = lastModified;
+		this.classes = Collections.unmodifiableList(classes);
+	}
+
+	public URI getURI() {
+		return uri;
+	}
+
+	public long getSize() {
+		return size;
+	}
+
+	public long getLastModified() {
+		return lastModified;
+	}
+
+	public List<ClasspathClass> getClasses() {
+		return classes;
+	}
+
+	/**
+	 * Writes the index to a file. Each package name is written once, and the
+	 * classes refer to it by index. The file is replaced atomically, if
+	 * possible, so that a partially written file is never read.
+	 */
+	public void write(Path file) throws IOException {
+		Files.createDirectories(file.getParent());
+		Path tempFile = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+		try {
+			try (DataOutputStream output = new DataOutputStream(
+					new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+				output.writeInt(MAGIC);
+				output.writeInt(VERSION);
+				output.writeUTF(uri.toString());
+				output.writeLong(size);
+				output.writeLong(lastModified);
+				Map<String, Integer> packageIndexes = new HashMap<>();
+				List<String> packageNames = new ArrayList<>();
+				for (ClasspathClass classpathClass : classes) {
+					String packageName = classpathClass.getPackageName();
+					if (!packageIndexes.containsKey(packageName)) {
+						packageIndexes.put(packageName, packageNames.size());
+						packageNames.add(packageName);
+					}
+				}
+				output.writeInt(packageNames.size());
+				for (String packageName : packageNames) {
+					output.writeUTF(packageName);
+				}
+				output.writeInt(classes.size());
+				for (ClasspathClass classpathClass : classes) {
+					output.writeInt(packageIndexes.get(classpathClass.getPackageName()));
+					output.writeUTF(classpathClass.getNameInPackage());
+					output.writeByte(classpathClass.getFlags());
+				}
+			}
+			try {
+				Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (IOException e) {
+				Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(tempFile);
+		}
+	}
+
+	/**
+	 * Reads an index that was written for the specified classpath element.
+	 * Returns null if the file doesn't exist, can't be read, or was written
+	 * for a different size or modification time.
+	 */
+	public static ClasspathElementIndex read(Path file, URI uri, long size, long lastModified) {
+		if (!Files.isRegularFile(file)) {
+			return null;
+		}
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+				return null;
+			}
+			if (!uri.toString().equals(input.readUTF()) || input.readLong() != size
+					|| input.readLong() != lastModified) {
+				return null;
+			}
+			String[] packageNames = new String[input.readInt()];
+			for (int i = 0; i < packageNames.length; i++) {
+				packageNames[i] = input.readUTF();
+			}
+			int classCount = input.readInt();
+			List<ClasspathClass> classes = new ArrayList<>(classCount);
+			for (int i = 0; i < classCount; i++) {
+				String packageName = packageNames[input.readInt()];
+				String nameInPackage = input.readUTF();
+				int flags = input.readByte();
+				classes.add(new ClasspathClass(packageName, nameInPackage, flags));
+			}
+			return new ClasspathElementIndex(uri, size, lastModified, classes);
+		} catch (IOException | RuntimeException e) {
+			System.err.println("Failed to read classpath index: " + file);
+			return null;
+		}
+	}
+}
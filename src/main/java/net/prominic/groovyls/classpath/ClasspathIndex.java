@@ -0,0 +1,133 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.classpath;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * The classes and packages of every element on the classpath. When more than
+ * one element contains a class with the same name, the first one wins, like
+ * a class loader.
+ *
+ * Classes are also sorted by name and by simple name, so that the ones that
+ * start with a prefix may be found with a binary search, in time proportional
+ * to the number of matches.
+ */
+public class ClasspathIndex {
+	private List<ClasspathElementIndex> elements;
+	private List<ClasspathClass> classes;
+	private List<String> packageNames;
+	private ClasspathClass[] classesSortedByName;
+	private ClasspathClass[] classesSortedBySimpleName;
+
+	public ClasspathIndex(List<ClasspathElementIndex> elements) {
+		this.elements = Collections.unmodifiableList(new ArrayList<>(elements));
+		Map<String, ClasspathClass> classesByName = new LinkedHashMap<>();
+		Set<String> packageNameSet = new HashSet<>();
+		for (ClasspathElementIndex element : elements) {
+			for (ClasspathClass classpathClass : element.getClasses()) {
+				classesByName.putIfAbsent(classpathClass.getName(), classpathClass);
+				// parent packages are included, even if they contain no classes
+				String packageName = classpathClass.getPackageName();
+				while (packageNameSet.add(packageName)) {
+					int index = packageName.lastIndexOf('.');
+					if (index == -1) {
+						packageNameSet.add("");
+						break;
+					}
+					packageName = packageName.substring(0, index);
+				}
+			}
+		}
+		classes = Collections.unmodifiableList(new ArrayList<>(classesByName.values()));
+		List<String> sortedPackageNames = new ArrayList<>(packageNameSet);
+		Collections.sort(sortedPackageNames);
+		packageNames = Collections.unmodifiableList(sortedPackageNames);
+
+		classesSortedByName = classes.toArray(new ClasspathClass[classes.size()]);
+		Arrays.sort(classesSortedByName, Comparator.comparing(ClasspathClass::getName));
+		classesSortedBySimpleName = classesSortedByName.clone();
+		// the sort is stable, so classes with the same simple name stay sorted
+		// by name
+		Arrays.sort(classesSortedBySimpleName, Comparator.comparing(ClasspathClass::getSimpleName));
+	}
+
+	public List<ClasspathElementIndex> getElements() {
+		return elements;
+	}
+
+	public List<ClasspathClass> getClasses() {
+		return classes;
+	}
+
+	public List<String> getPackageNames() {
+		return packageNames;
+	}
+
+	/**
+	 * Returns the classes with fully qualified names that start with the
+	 * prefix, sorted by name.
+	 */
+	public List<ClasspathClass> getClassesWithNamePrefix(String prefix) {
+		return findWithPrefix(Arrays.asList(classesSortedByName), ClasspathClass::getName, prefix);
+	}
+
+	/**
+	 * Returns the classes with simple names that start with the prefix, sorted
+	 * by simple name.
+	 */
+	public List<ClasspathClass> getClassesWithSimpleNamePrefix(String prefix) {
+		return findWithPrefix(Arrays.asList(classesSortedBySimpleName), ClasspathClass::getSimpleName, prefix);
+	}
+
+	/**
+	 * Returns the package names that start with the prefix, sorted by name.
+	 */
+	public List<String> getPackageNamesWithPrefix(String prefix) {
+		return findWithPrefix(packageNames, Function.identity(), prefix);
+	}
+
+	private static <T> List<T> findWithPrefix(List<T> sorted, Function<T, String> getKey, String prefix) {
+		int low = 0;
+		int high = sorted.size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (getKey.apply(sorted.get(mid)).compareTo(prefix) < 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		int end = low;
+		while (end < sorted.size() && getKey.apply(sorted.get(end)).startsWith(prefix)) {
+			end++;
+		}
+		return Collections.unmodifiableList(sorted.subList(low, end));
+	}
+}
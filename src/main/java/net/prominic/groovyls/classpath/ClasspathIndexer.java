@@ -0,0 +1,273 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.classpath;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import io.github.classgraph.ClassGraph;
+import io.github.classgraph.ClassInfo;
+import io.github.classgraph.ScanResult;
+import net.prominic.groovyls.util.HashUtils;
+
+/**
+ * Builds a ClasspathIndex for a class loader. The classes in each .jar file
+ * and module are saved to a cache directory, keyed by the element's path,
+ * size, and modification time, so that only new or modified elements need to
+ * be scanned by ClassGraph. Directories are always scanned because their
+ * modification time doesn't change when the files inside them change.
+ */
+public class ClasspathIndexer {
+	private static final String SCHEME_JRT = "jrt";
+	private static final String CACHE_FILE_EXTENSION = ".idx";
+
+	private Path cacheDirectory;
+	private volatile int threadCount = 0;
+
+	public ClasspathIndexer(Path cacheDirectory) {
+		this.cacheDirectory = cacheDirectory;
+	}
+
+	public Path getCacheDirectory() {
+		return cacheDirectory;
+	}
+
+	public int getThreadCount() {
+		return threadCount;
+	}
+
+	/**
+	 * The number of worker threads that ClassGraph uses to scan the
+	 * classpath. A value of 0 uses ClassGraph's default.
+	 */
+	public void setThreadCount(int threadCount) {
+		this.threadCount = Math.max(0, threadCount);
+	}
+
+	/**
+	 * Returns the index of every class visible to the class loader, including
+	 * the JDK's classes.
+	 */
+	public ClasspathIndex index(ClassLoader classLoader) {
+		return index(classLoader, null);
+	}
+
+	/**
+	 * Returns the index of every class visible to the class loader, reusing
+	 * the elements of a previous index that haven't been modified since. Only
+	 * elements that were added or modified are read from the cache or
+	 * scanned.
+	 */
+	public ClasspathIndex index(ClassLoader classLoader, ClasspathIndex previousIndex) {
+		List<URI> uris = new ClassGraph().overrideClassLoaders(classLoader).enableSystemJarsAndModules()
+				.getClasspathURIs();
+		Map<URI, ClasspathElementIndex> previousElementsByURI = new HashMap<>();
+		if (previousIndex != null) {
+			for (ClasspathElementIndex element : previousIndex.getElements()) {
+				previousElementsByURI.put(element.getURI(), element);
+			}
+		}
+		Map<URI, ClasspathElementIndex> elementsByURI = new HashMap<>();
+		Set<URI> missingURIs = new LinkedHashSet<>();
+		for (URI uri : uris) {
+			ClasspathElementIndex element = findUnchangedElement(uri, previousElementsByURI.get(uri));
+			if (element != null) {
+				elementsByURI.put(uri, element);
+			} else {
+				missingURIs.add(uri);
+			}
+		}
+		if (!missingURIs.isEmpty()) {
+			for (ClasspathElementIndex element : scan(classLoader, uris, missingURIs)) {
+				elementsByURI.put(element.getURI(), element);
+				writeCachedElement(element);
+			}
+		}
+		List<ClasspathElementIndex> elements = new ArrayList<>();
+		for (URI uri : uris) {
+			ClasspathElementIndex element = elementsByURI.get(uri);
+			if (element != null) {
+				elements.add(element);
+			}
+		}
+		return new ClasspathIndex(elements);
+	}
+
+	/**
+	 * Returns the cache file for a classpath element, or null if the element
+	 * can't be cached.
+	 */
+	public Path getCacheFile(URI uri) {
+		if (cacheDirectory == null || getKeyFile(uri) == null) {
+			return null;
+		}
+		return cacheDirectory.resolve(HashUtils.sha1(uri.toString()) + CACHE_FILE_EXTENSION);
+	}
+
+	/**
+	 * Returns the previous index of an element, or the index from the cache,
+	 * if the element hasn't been modified. Otherwise, returns null.
+	 */
+	private ClasspathElementIndex findUnchangedElement(URI uri, ClasspathElementIndex previousElement) {
+		Path cacheFile = getCacheFile(uri);
+		if (cacheFile == null) {
+			return null;
+		}
+		Path keyFile = getKeyFile(uri);
+		long size;
+		long lastModified;
+		try {
+			size = Files.size(keyFile);
+			lastModified = Files.getLastModifiedTime(keyFile).toMillis();
+		} catch (IOException e) {
+			return null;
+		}
+		if (previousElement != null && previousElement.getSize() == size
+				&& previousElement.getLastModified() == lastModified) {
+			return previousElement;
+		}
+		return ClasspathElementIndex.read(cacheFile, uri, size, lastModified);
+	}
+
+	private void writeCachedElement(ClasspathElementIndex element) {
+		Path cacheFile = getCacheFile(element.getURI());
+		if (cacheFile == null) {
+			return;
+		}
+		try {
+			element.write(cacheFile);
+		} catch (IOException e) {
+			System.err.println("Failed to write classpath index: " + cacheFile);
+		}
+	}
+
+	/**
+	 * Scans only the specified classpath elements. ClassGraph can't filter
+	 * modules by URL, so they are filtered by name instead.
+	 */
+	private List<ClasspathElementIndex> scan(ClassLoader classLoader, List<URI> allURIs, Set<URI> uris) {
+		ClassGraph classGraph = new ClassGraph().overrideClassLoaders(classLoader).enableSystemJarsAndModules()
+				.enableClassInfo().filterClasspathElementsByURL(url -> {
+					try {
+						return uris.contains(url.toURI());
+					} catch (URISyntaxException e) {
+						return false;
+					}
+				});
+		List<String> acceptedModules = new ArrayList<>();
+		List<String> rejectedModules = new ArrayList<>();
+		for (URI uri : allURIs) {
+			if (SCHEME_JRT.equals(uri.getScheme())) {
+				String moduleName = uri.getPath().substring(1);
+				if (uris.contains(uri)) {
+					acceptedModules.add(moduleName);
+				} else {
+					rejectedModules.add(moduleName);
+				}
+			}
+		}
+		if (!acceptedModules.isEmpty()) {
+			classGraph.acceptModules(acceptedModules.toArray(new String[acceptedModules.size()]));
+		} else if (!rejectedModules.isEmpty()) {
+			classGraph.rejectModules(rejectedModules.toArray(new String[rejectedModules.size()]));
+		}
+
+		Map<URI, List<ClasspathClass>> classesByURI = new HashMap<>();
+		for (URI uri : uris) {
+			classesByURI.put(uri, new ArrayList<>());
+		}
+		int threadCount = this.threadCount;
+		try (ScanResult scanResult = threadCount > 0 ? classGraph.scan(threadCount) : classGraph.scan()) {
+			for (ClassInfo classInfo : scanResult.getAllClasses()) {
+				List<ClasspathClass> classes = classesByURI.get(classInfo.getClasspathElementURI());
+				if (classes == null) {
+					continue;
+				}
+				classes.add(toClasspathClass(classInfo));
+			}
+		}
+
+		List<ClasspathElementIndex> result = new ArrayList<>();
+		for (URI uri : uris) {
+			long size = -1;
+			long lastModified = -1;
+			Path keyFile = getKeyFile(uri);
+			if (keyFile != null) {
+				try {
+					size = Files.size(keyFile);
+					lastModified = Files.getLastModifiedTime(keyFile).toMillis();
+				} catch (IOException e) {
+					// the element will be scanned again next time
+				}
+			}
+			result.add(new ClasspathElementIndex(uri, size, lastModified, classesByURI.get(uri)));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the file whose size and modification time determine whether the
+	 * cached index of a classpath element is still valid. For modules, that's
+	 * the JDK's runtime image.
+	 */
+	private Path getKeyFile(URI uri) {
+		Path path = null;
+		if (SCHEME_JRT.equals(uri.getScheme())) {
+			path = Paths.get(System.getProperty("java.home"), "lib", "modules");
+		} else if ("file".equals(uri.getScheme())) {
+			try {
+				path = Paths.get(uri);
+			} catch (IllegalArgumentException e) {
+				return null;
+			}
+		}
+		if (path == null || !Files.isRegularFile(path)) {
+			return null;
+		}
+		return path;
+	}
+
+	private static ClasspathClass toClasspathClass(ClassInfo classInfo) {
+		int flags = 0;
+		if (classInfo.isInterface()) {
+			flags |= ClasspathClass.FLAG_INTERFACE;
+		}
+		if (classInfo.isEnum()) {
+			flags |= ClasspathClass.FLAG_ENUM;
+		}
+		if (classInfo.isAnnotation()) {
+			flags |= ClasspathClass.FLAG_ANNOTATION;
+		}
+		String packageName = classInfo.getPackageName();
+		String name = classInfo.getName();
+		String nameInPackage = packageName.length() > 0 ? name.substring(packageName.length() + 1) : name;
+		return new ClasspathClass(packageName, nameInPackage, flags);
+	}
+}
@@ -0,0 +1,263 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.compiler.ast;
+
+import org.codehaus.groovy.ast.ASTNode;
+
+/**
+ * Maps nodes to long values in a hash trie. Nodes are compared by identity
+ * because some ASTNode subclasses, like ClassNode, override equals() with
+ * comparisons that are not strict. A copy shares the trie with the original,
+ * and each table copies a branch of the trie only before changing it, so
+ * copying a table takes constant time.
+ */
+public class ASTNodeIdentityTable {
+	public static final long NOT_FOUND = -1L;
+
+	private static final int BITS = 5;
+	private static final int MASK = (1 << BITS) - 1;
+	// after all bits of the hash are used, nodes with equal hashes are
+	// stored in a list
+	private static final int HASH_BITS = 32;
+
+	/**
+	 * Each slot contains a key or a child. In a list of nodes with equal
+	 * hashes, the bitmap contains the number of keys instead.
+	 */
+	private static class TrieNode {
+		private Object owner;
+		private int bitmap;
+		private Object[] slots;
+		private long[] values;
+
+		private TrieNode(Object owner, int capacity) {
+			this.owner = owner;
+			slots = new Object[capacity];
+			values = new long[capacity];
+		}
+	}
+
+	// trie nodes with the same owner may be changed in place
+	private Object owner = new Object();
+	private TrieNode root;
+	private int size;
+
+	public ASTNodeIdentityTable() {
+	}
+
+	public ASTNodeIdentityTable(ASTNodeIdentityTable other) {
+		root = other.root;
+		size = other.size;
+		// the trie is shared now, so neither table may change it in place
+		other.owner = new Object();
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public long get(ASTNode node) {
+		int hash = hash(node);
+		TrieNode current = root;
+		int shift = 0;
+		while (current != null) {
+			if (shift >= HASH_BITS) {
+				int index = indexOfKey(current, node);
+				return index != -1 ? current.values[index] : NOT_FOUND;
+			}
+			int bit = bit(hash, shift);
+			if ((current.bitmap & bit) == 0) {
+				return NOT_FOUND;
+			}
+			int index = index(current.bitmap, bit);
+			Object slot = current.slots[index];
+			if (!(slot instanceof TrieNode)) {
+				return slot == node ? current.values[index] : NOT_FOUND;
+			}
+			current = (TrieNode) slot;
+			shift += BITS;
+		}
+		return NOT_FOUND;
+	}
+
+	public void put(ASTNode node, long value) {
+		if (root == null) {
+			root = new TrieNode(owner, 2);
+		}
+		root = put(root, node, hash(node), value, 0);
+	}
+
+	/**
+	 * Removes a node, but only if it is still mapped to the specified value.
+	 */
+	public void remove(ASTNode node, long value) {
+		if (root != null) {
+			root = remove(root, node, hash(node), value, 0);
+		}
+	}
+
+	private TrieNode put(TrieNode trieNode, ASTNode node, int hash, long value, int shift) {
+		if (shift >= HASH_BITS) {
+			int index = indexOfKey(trieNode, node);
+			if (index == -1) {
+				size++;
+				return insert(trieNode, trieNode.bitmap, trieNode.bitmap, trieNode.bitmap + 1, node, value);
+			}
+			return setValue(trieNode, index, value);
+		}
+		int bit = bit(hash, shift);
+		int index = index(trieNode.bitmap, bit);
+		if ((trieNode.bitmap & bit) == 0) {
+			size++;
+			int count = Integer.bitCount(trieNode.bitmap);
+			return insert(trieNode, count, index, trieNode.bitmap | bit, node, value);
+		}
+		Object slot = trieNode.slots[index];
+		if (slot == node) {
+			return setValue(trieNode, index, value);
+		}
+		TrieNode child;
+		if (slot instanceof TrieNode) {
+			child = put((TrieNode) slot, node, hash, value, shift + BITS);
+			if (child == slot) {
+				return trieNode;
+			}
+		} else {
+			// two keys share this slot now, so they are moved to a child
+			child = new TrieNode(owner, 2);
+			child = put(child, (ASTNode) slot, hash(slot), trieNode.values[index], shift + BITS);
+			child = put(child, node, hash, value, shift + BITS);
+			size--;
+		}
+		TrieNode result = editable(trieNode);
+		result.slots[index] = child;
+		result.values[index] = 0L;
+		return result;
+	}
+
+	private TrieNode remove(TrieNode trieNode, ASTNode node, int hash, long value, int shift) {
+		int index;
+		int bitmap;
+		if (shift >= HASH_BITS) {
+			index = indexOfKey(trieNode, node);
+			if (index == -1 || trieNode.values[index] != value) {
+				return trieNode;
+			}
+			size--;
+			bitmap = trieNode.bitmap - 1;
+		} else {
+			int bit = bit(hash, shift);
+			if ((trieNode.bitmap & bit) == 0) {
+				return trieNode;
+			}
+			index = index(trieNode.bitmap, bit);
+			Object slot = trieNode.slots[index];
+			if (slot instanceof TrieNode) {
+				TrieNode child = remove((TrieNode) slot, node, hash, value, shift + BITS);
+				if (child == slot) {
+					return trieNode;
+				}
+				if (child != null) {
+					TrieNode result = editable(trieNode);
+					result.slots[index] = child;
+					return result;
+				}
+			} else if (slot == node && trieNode.values[index] == value) {
+				size--;
+			} else {
+				return trieNode;
+			}
+			bitmap = trieNode.bitmap ^ bit;
+		}
+		if (bitmap == 0) {
+			return null;
+		}
+		TrieNode result = editable(trieNode);
+		int count = result.slots.length;
+		System.arraycopy(result.slots, index + 1, result.slots, index, count - index - 1);
+		System.arraycopy(result.values, index + 1, result.values, index, count - index - 1);
+		result.slots[count - 1] = null;
+		result.bitmap = bitmap;
+		return result;
+	}
+
+	private TrieNode insert(TrieNode trieNode, int count, int index, int bitmap, ASTNode node, long value) {
+		TrieNode result;
+		if (trieNode.owner == owner && count < trieNode.slots.length) {
+			result = trieNode;
+		} else {
+			// a trie node owned by this table grows with some extra capacity
+			int capacity = count + 1;
+			if (trieNode.owner == owner) {
+				capacity = Math.max(capacity, Math.min(count * 2, 1 << BITS));
+			}
+			result = new TrieNode(owner, capacity);
+			System.arraycopy(trieNode.slots, 0, result.slots, 0, count);
+			System.arraycopy(trieNode.values, 0, result.values, 0, count);
+		}
+		System.arraycopy(result.slots, index, result.slots, index + 1, count - index);
+		System.arraycopy(result.values, index, result.values, index + 1, count - index);
+		result.slots[index] = node;
+		result.values[index] = value;
+		result.bitmap = bitmap;
+		return result;
+	}
+
+	private TrieNode setValue(TrieNode trieNode, int index, long value) {
+		if (trieNode.values[index] == value) {
+			return trieNode;
+		}
+		TrieNode result = editable(trieNode);
+		result.values[index] = value;
+		return result;
+	}
+
+	private TrieNode editable(TrieNode trieNode) {
+		if (trieNode.owner == owner) {
+			return trieNode;
+		}
+		TrieNode result = new TrieNode(owner, trieNode.slots.length);
+		result.bitmap = trieNode.bitmap;
+		System.arraycopy(trieNode.slots, 0, result.slots, 0, trieNode.slots.length);
+		System.arraycopy(trieNode.values, 0, result.values, 0, trieNode.values.length);
+		return result;
+	}
+
+	private static int indexOfKey(TrieNode trieNode, ASTNode node) {
+		for (int i = 0; i < trieNode.bitmap; i++) {
+			if (trieNode.slots[i] == node) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static int bit(int hash, int shift) {
+		return 1 << ((hash >>> shift) & MASK);
+	}
+
+	private static int index(int bitmap, int bit) {
+		return Integer.bitCount(bitmap & (bit - 1));
+	}
+
+	private static int hash(Object key) {
+		return System.identityHashCode(key);
+	}
+}
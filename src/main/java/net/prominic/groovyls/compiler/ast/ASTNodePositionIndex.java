@@ -0,0 +1,204 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.compiler.ast;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.codehaus.groovy.ast.ASTNode;
+
+/**
+ * Finds the innermost node that contains a position in a single file.
+ *
+ * Nodes are sorted by start position, and nodes with the same start are
+ * sorted from the widest to the narrowest, so the innermost node containing a
+ * position is the last node that starts before the position and ends after
+ * it. A tree of the maximum end position of each range of nodes finds that
+ * node in O(log n) without allocating anything.
+ *
+ * Positions are LSP positions packed into a long, with the line in the high
+ * bits, so that they may be compared as numbers.
+ */
+public class ASTNodePositionIndex {
+	private ASTNode[] nodes;
+	private long[] starts;
+	private long[] ends;
+	private long[] maxEnds;
+	private int leafCount;
+
+	/**
+	 * @param nodes          the nodes of a file, in the order they were visited
+	 * @param sameRangeOrder sorts nodes with identical ranges so that the
+	 *                       preferred node comes first
+	 */
+	public ASTNodePositionIndex(List<ASTNode> nodes, Comparator<ASTNode> sameRangeOrder) {
+		List<Entry> entries = new ArrayList<>(nodes.size());
+		for (ASTNode node : nodes) {
+			if (node.getLineNumber() == -1) {
+				// can't be the offset node if it has no position
+				continue;
+			}
+			long start = pack(node.getLineNumber(), node.getColumnNumber());
+			long end = start;
+			if (node.getLastLineNumber() != -1) {
+				end = pack(node.getLastLineNumber(), node.getLastColumnNumber());
+			}
+			entries.add(new Entry(node, start, end, entries.size()));
+		}
+		entries.sort((e1, e2) -> {
+			if (e1.start != e2.start) {
+				return Long.compare(e1.start, e2.start);
+			}
+			if (e1.end != e2.end) {
+				return Long.compare(e2.end, e1.end);
+			}
+			return Integer.compare(e1.order, e2.order);
+		});
+
+		int count = entries.size();
+		this.nodes = new ASTNode[count];
+		starts = new long[count];
+		ends = new long[count];
+		int i = 0;
+		while (i < count) {
+			Entry entry = entries.get(i);
+			int groupEnd = i + 1;
+			while (groupEnd < count && entries.get(groupEnd).start == entry.start
+					&& entries.get(groupEnd).end == entry.end) {
+				groupEnd++;
+			}
+			List<Entry> group = entries.subList(i, groupEnd);
+			if (group.size() > 1) {
+				// the preferred node must be last because the search finds the
+				// last match
+				group.sort((e1, e2) -> sameRangeOrder.compare(e1.node, e2.node));
+				Collections.reverse(group);
+			}
+			for (Entry groupEntry : group) {
+				this.nodes[i] = groupEntry.node;
+				starts[i] = groupEntry.start;
+				ends[i] = groupEntry.end;
+				i++;
+			}
+		}
+
+		leafCount = 1;
+		while (leafCount < count) {
+			leafCount <<= 1;
+		}
+		maxEnds = new long[leafCount * 2];
+		Arrays.fill(maxEnds, Long.MIN_VALUE);
+		System.arraycopy(ends, 0, maxEnds, leafCount, count);
+		for (int j = leafCount - 1; j > 0; j--) {
+			maxEnds[j] = Math.max(maxEnds[2 * j], maxEnds[2 * j + 1]);
+		}
+	}
+
+	public int size() {
+		return nodes.length;
+	}
+
+	/**
+	 * Returns the innermost node that contains the specified LSP position, or
+	 * null if no node contains it.
+	 */
+	public ASTNode getNodeAt(int line, int column) {
+		if (nodes.length == 0) {
+			return null;
+		}
+		long position = packLSP(line, column);
+		int last = lastStartAtOrBefore(position);
+		if (last == -1) {
+			return null;
+		}
+		int index = lastEndAtOrAfter(1, 0, leafCount - 1, last, position);
+		if (index == -1) {
+			return null;
+		}
+		return nodes[index];
+	}
+
+	private int lastStartAtOrBefore(long position) {
+		int low = 0;
+		int high = starts.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (starts[mid] <= position) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low - 1;
+	}
+
+	/**
+	 * Returns the last index, no greater than limit, of a node that ends at or
+	 * after the specified position.
+	 */
+	private int lastEndAtOrAfter(int treeIndex, int low, int high, int limit, long position) {
+		if (low > limit || maxEnds[treeIndex] < position) {
+			return -1;
+		}
+		if (low == high) {
+			return low;
+		}
+		int mid = (low + high) >>> 1;
+		int result = lastEndAtOrAfter(2 * treeIndex + 1, mid + 1, high, limit, position);
+		if (result != -1) {
+			return result;
+		}
+		return lastEndAtOrAfter(2 * treeIndex, low, mid, limit, position);
+	}
+
+	/**
+	 * Packs a Groovy line and column, using the same conversion as
+	 * GroovyLanguageServerUtils.createGroovyPosition().
+	 */
+	private static long pack(int groovyLine, int groovyColumn) {
+		if (groovyColumn == -1) {
+			groovyColumn = 0;
+		}
+		int lspLine = groovyLine > 0 ? groovyLine - 1 : groovyLine;
+		int lspColumn = groovyColumn > 0 ? groovyColumn - 1 : groovyColumn;
+		return packLSP(lspLine, lspColumn);
+	}
+
+	private static long packLSP(int line, int column) {
+		return ((long) line << 32) + column;
+	}
+
+	private static class Entry {
+		public Entry(ASTNode node, long start, long end, int order) {
+			this.node = node;
+			this.start = start;
+			this.end = end;
+			this.order = order;
+		}
+
+		private ASTNode node;
+		private long start;
+		private long end;
+		private int order;
+	}
+}
@@ -21,13 +21,15 @@ package net.prominic.groovyls.compiler.ast;
 
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Stack;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.function.Consumer;
 
 import org.codehaus.groovy.ast.ASTNode;
 import org.codehaus.groovy.ast.AnnotatedNode;
@@ -92,38 +94,28 @@ import org.codehaus.groovy.ast.stmt.WhileStatement;
 import org.codehaus.groovy.classgen.BytecodeExpression;
 import org.codehaus.groovy.control.CompilationUnit;
 import org.codehaus.groovy.control.SourceUnit;
-import org.eclipse.lsp4j.Position;
-import org.eclipse.lsp4j.Range;
 
-import net.prominic.groovyls.util.GroovyLanguageServerUtils;
-import net.prominic.lsp.utils.Positions;
-import net.prominic.lsp.utils.Ranges;
+import net.prominic.groovyls.compiler.util.GroovyASTUtils;
 
 public class ASTNodeVisitor extends ClassCodeVisitorSupport {
-	private class ASTLookupKey {
-		public ASTLookupKey(ASTNode node) {
-			this.node = node;
-		}
-
-		private ASTNode node;
-
-		@Override
-		public boolean equals(Object o) {
-			// some ASTNode subclasses, like ClassNode, override equals() with
-			// comparisons that are not strict. we need strict.
-			ASTLookupKey other = (ASTLookupKey) o;
-			return node == other.node;
-		}
-
-		@Override
-		public int hashCode() {
-			return node.hashCode();
-		}
-	}
-
-	private class ASTNodeLookupData {
-		public ASTNode parent;
-		public URI uri;
+	/**
+	 * The nodes of one file. Each node is identified by its index in these
+	 * arrays, and parents are stored as indexes too. Synthetic nodes are
+	 * stored only so that they may be returned as parents. A stub contains
+	 * only the declarations and references of a file.
+	 */
+	private static class ASTFileIndex {
+		private URI uri;
+		private ASTNode[] entries;
+		private int[] parents;
+		private boolean[] synthetic;
+		private int[] nodeIds;
+		private List<ASTNode> nodes;
+		private List<ClassNode> classNodes;
+		private ASTNodePositionIndex positionIndex;
+		private SymbolIndex symbolIndex;
+		private Map<ASTNode, List<ASTNode>> referencesByDefinition = Collections.emptyMap();
+		private boolean stub;
 	}
 
 	private SourceUnit sourceUnit;
@@ -133,10 +125,42 @@ public class ASTNodeVisitor extends ClassCodeVisitorSupport {
 		return sourceUnit;
 	}
 
-	private Stack<ASTNode> stack = new Stack<>();
-	private Map<URI, List<ASTNode>> nodesByURI = new HashMap<>();
-	private Map<URI, List<ClassNode>> classNodesByURI = new HashMap<>();
-	private Map<ASTLookupKey, ASTNodeLookupData> lookup = new HashMap<>();
+	private Map<URI, Integer> fileIdsByURI = new HashMap<>();
+	private ASTFileIndex[] files = new ASTFileIndex[16];
+	private int nextFileId = 0;
+	// the ids of removed files, which are reused before new ids
+	private int[] freeFileIds = new int[16];
+	private int freeFileIdCount = 0;
+	private ASTNodeIdentityTable nodeIds = new ASTNodeIdentityTable();
+	private Map<String, ClassNode> classNodesByName = new HashMap<>();
+	private List<ClassNode> allClassNodes = Collections.emptyList();
+
+	// the file that is currently being visited
+	private List<ASTNode> currentEntries;
+	private int[] currentParents;
+	private boolean[] currentSynthetic;
+	private List<ClassNode> currentClassNodes;
+	private int[] stack = new int[32];
+	private int stackSize = 0;
+
+	public ASTNodeVisitor() {
+	}
+
+	/**
+	 * Starts with the nodes of an existing visitor, which is not modified.
+	 * Visiting a subset of files replaces only their nodes, so requests may
+	 * keep using the existing visitor until this one is complete.
+	 */
+	public ASTNodeVisitor(ASTNodeVisitor previous) {
+		fileIdsByURI.putAll(previous.fileIdsByURI);
+		files = previous.files.clone();
+		nextFileId = previous.nextFileId;
+		freeFileIds = previous.freeFileIds.clone();
+		freeFileIdCount = previous.freeFileIdCount;
+		nodeIds = new ASTNodeIdentityTable(previous.nodeIds);
+		classNodesByName.putAll(previous.classNodesByName);
+		allClassNodes = previous.allClassNodes;
+	}
 
 	private void pushASTNode(ASTNode node) {
 		boolean isSynthetic = false;
@@ -144,152 +168,216 @@ public class ASTNodeVisitor extends ClassCodeVisitorSupport {
 			AnnotatedNode annotatedNode = (AnnotatedNode) node;
 			isSynthetic = annotatedNode.isSynthetic();
 		}
-		if (!isSynthetic) {
-			URI uri = sourceUnit.getSource().getURI();
-			nodesByURI.get(uri).add(node);
-
-			ASTNodeLookupData data = new ASTNodeLookupData();
-			data.uri = uri;
-			if (stack.size() > 0) {
-				data.parent = stack.lastElement();
-			}
-			lookup.put(new ASTLookupKey(node), data);
+		int id = currentEntries.size();
+		if (id == currentParents.length) {
+			currentParents = Arrays.copyOf(currentParents, id * 2);
+			currentSynthetic = Arrays.copyOf(currentSynthetic, id * 2);
 		}
+		currentEntries.add(node);
+		currentParents[id] = stackSize > 0 ? stack[stackSize - 1] : -1;
+		currentSynthetic[id] = isSynthetic;
 
-		stack.add(node);
+		if (stackSize == stack.length) {
+			stack = Arrays.copyOf(stack, stackSize * 2);
+		}
+		stack[stackSize++] = id;
 	}
 
 	private void popASTNode() {
-		stack.pop();
+		stackSize--;
 	}
 
 	public List<ClassNode> getClassNodes() {
-		List<ClassNode> result = new ArrayList<>();
-		for (List<ClassNode> nodes : classNodesByURI.values()) {
-			result.addAll(nodes);
+		return allClassNodes;
+	}
+
+	/**
+	 * Returns the class with the specified fully-qualified name, if it is
+	 * defined in one of the visited files. If more than one file defines the
+	 * same class, the first one in getClassNodes() is returned.
+	 */
+	public ClassNode getClassNode(String name) {
+		return classNodesByName.get(name);
+	}
+
+	public List<ClassNode> getClassNodes(URI uri) {
+		ASTFileIndex file = getFile(uri);
+		if (file == null) {
+			return Collections.emptyList();
 		}
-		return result;
+		return file.classNodes;
+	}
+
+	public Set<URI> getURIs() {
+		return Collections.unmodifiableSet(fileIdsByURI.keySet());
+	}
+
+	public SymbolIndex getSymbolIndex(URI uri) {
+		ASTFileIndex file = getFile(uri);
+		if (file == null) {
+			return null;
+		}
+		return file.symbolIndex;
 	}
 
 	public List<ASTNode> getNodes() {
 		List<ASTNode> result = new ArrayList<>();
-		for (List<ASTNode> nodes : nodesByURI.values()) {
-			result.addAll(nodes);
+		for (int i = 0; i < nextFileId; i++) {
+			if (files[i] != null) {
+				result.addAll(files[i].nodes);
+			}
 		}
 		return result;
 	}
 
 	public List<ASTNode> getNodes(URI uri) {
-		List<ASTNode> nodes = nodesByURI.get(uri);
-		if (nodes == null) {
+		ASTFileIndex file = getFile(uri);
+		if (file == null) {
 			return Collections.emptyList();
 		}
-		return nodes;
+		return file.nodes;
 	}
 
 	public ASTNode getNodeAtLineAndColumn(URI uri, int line, int column) {
-		Position position = new Position(line, column);
-		Map<ASTNode, Range> nodeToRange = new HashMap<>();
-		List<ASTNode> nodes = nodesByURI.get(uri);
-		if (nodes == null) {
+		ASTFileIndex file = getFile(uri);
+		if (file == null) {
 			return null;
 		}
-		List<ASTNode> foundNodes = nodes.stream().filter(node -> {
-			if (node.getLineNumber() == -1) {
-				// can't be the offset node if it has no position
-				// also, do this first because it's the fastest comparison
-				return false;
-			}
-			Range range = GroovyLanguageServerUtils.astNodeToRange(node);
-			if (range == null) {
-				return false;
-			}
-			boolean result = Ranges.contains(range, position);
-			if (result) {
-				// save the range object to avoid creating it again when we
-				// sort the nodes
-				nodeToRange.put(node, range);
-			}
-			return result;
-		}).sorted((n1, n2) -> {
-			int result = Positions.COMPARATOR.reversed().compare(nodeToRange.get(n1).getStart(),
-					nodeToRange.get(n2).getStart());
-			if (result != 0) {
-				return result;
-			}
-			result = Positions.COMPARATOR.compare(nodeToRange.get(n1).getEnd(), nodeToRange.get(n2).getEnd());
-			if (result != 0) {
-				return result;
-			}
-			// n1 and n2 have the same range
-			if (contains(n1, n2)) {
-				if (n1 instanceof ClassNode && n2 instanceof ConstructorNode) {
-					return -1;
-				}
-				return 1;
-			} else if (contains(n2, n1)) {
-				if (n2 instanceof ClassNode && n1 instanceof ConstructorNode) {
-					return 1;
-				}
+		return file.positionIndex.getNodeAt(line, column);
+	}
+
+	private int compareNodesWithSameRange(ASTNode n1, ASTNode n2) {
+		if (contains(n1, n2)) {
+			if (n1 instanceof ClassNode && n2 instanceof ConstructorNode) {
 				return -1;
 			}
-			return 0;
-		}).collect(Collectors.toList());
-		if (foundNodes.size() == 0) {
-			return null;
+			return 1;
+		} else if (contains(n2, n1)) {
+			if (n2 instanceof ClassNode && n1 instanceof ConstructorNode) {
+				return 1;
+			}
+			return -1;
 		}
-		return foundNodes.get(0);
+		return 0;
+	}
+
+	/**
+	 * Returns the nodes that resolve to the specified definition, in the same
+	 * order as getNodes().
+	 */
+	public List<ASTNode> getReferences(ASTNode definitionNode) {
+		List<ASTNode> result = new ArrayList<>();
+		for (int i = 0; i < nextFileId; i++) {
+			if (files[i] == null) {
+				continue;
+			}
+			List<ASTNode> references = files[i].referencesByDefinition.get(definitionNode);
+			if (references != null) {
+				result.addAll(references);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Searches for workspace symbols one file at a time, in the same order as
+	 * getNodes(), and passes each file's matches to the consumer, even if
+	 * there are none.
+	 */
+	public void searchSymbolsByFile(String lowerCaseQuery, Consumer<List<SymbolIndex.Match>> fileResult) {
+		for (int i = 0; i < nextFileId; i++) {
+			if (files[i] != null) {
+				List<SymbolIndex.Match> matches = new ArrayList<>();
+				files[i].symbolIndex.search(lowerCaseQuery, matches);
+				fileResult.accept(matches);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of file ids that have been used, including the ids
+	 * of removed files that are waiting to be reused.
+	 */
+	int getFileSlotCount() {
+		return nextFileId;
+	}
+
+	public int getFileCount() {
+		int count = 0;
+		for (int i = 0; i < nextFileId; i++) {
+			if (files[i] != null) {
+				count++;
+			}
+		}
+		return count;
 	}
 
 	public ASTNode getParent(ASTNode child) {
 		if (child == null) {
 			return null;
 		}
-		ASTNodeLookupData data = lookup.get(new ASTLookupKey(child));
-		if (data == null) {
+		long value = nodeIds.get(child);
+		if (value == ASTNodeIdentityTable.NOT_FOUND) {
+			return null;
+		}
+		ASTFileIndex file = files[getFileId(value)];
+		int parentId = file.parents[getNodeId(value)];
+		if (parentId == -1) {
 			return null;
 		}
-		return data.parent;
+		return file.entries[parentId];
 	}
 
 	public boolean contains(ASTNode ancestor, ASTNode descendant) {
-		ASTNode current = getParent(descendant);
-		while (current != null) {
-			if (current.equals(ancestor)) {
+		long value = nodeIds.get(descendant);
+		if (value == ASTNodeIdentityTable.NOT_FOUND) {
+			return false;
+		}
+		ASTFileIndex file = files[getFileId(value)];
+		int currentId = file.parents[getNodeId(value)];
+		while (currentId != -1) {
+			if (file.entries[currentId].equals(ancestor)) {
 				return true;
 			}
-			current = getParent(current);
+			if (file.synthetic[currentId]) {
+				// synthetic nodes aren't indexed, so they have no parent
+				break;
+			}
+			currentId = file.parents[currentId];
 		}
 		return false;
 	}
 
 	public URI getURI(ASTNode node) {
-		ASTNodeLookupData data = lookup.get(new ASTLookupKey(node));
-		if (data == null) {
+		long value = nodeIds.get(node);
+		if (value == ASTNodeIdentityTable.NOT_FOUND) {
 			return null;
 		}
-		return data.uri;
+		return files[getFileId(value)].uri;
 	}
 
 	public void visitCompilationUnit(CompilationUnit unit) {
-		nodesByURI.clear();
-		classNodesByURI.clear();
-		lookup.clear();
+		fileIdsByURI.clear();
+		files = new ASTFileIndex[16];
+		nextFileId = 0;
+		freeFileIdCount = 0;
+		nodeIds = new ASTNodeIdentityTable();
+		classNodesByName.clear();
 		unit.iterator().forEachRemaining(sourceUnit -> {
 			visitSourceUnit(sourceUnit);
 		});
+		updateClassNodes();
+		for (int i = 0; i < nextFileId; i++) {
+			if (files[i] != null) {
+				indexReferences(files[i]);
+			}
+		}
 	}
 
 	public void visitCompilationUnit(CompilationUnit unit, Collection<URI> uris) {
 		uris.forEach(uri -> {
 			// clear all old nodes so that they may be replaced
-			List<ASTNode> nodes = nodesByURI.remove(uri);
-			if (nodes != null) {
-				nodes.forEach(node -> {
-					lookup.remove(new ASTLookupKey(node));
-				});
-			}
-			classNodesByURI.remove(uri);
+			removeFile(uri);
 		});
 		unit.iterator().forEachRemaining(sourceUnit -> {
 			URI uri = sourceUnit.getSource().getURI();
@@ -298,20 +386,259 @@ public class ASTNodeVisitor extends ClassCodeVisitorSupport {
 			}
 			visitSourceUnit(sourceUnit);
 		});
+		updateClassNodes();
+		// definitions can't be resolved until all of the files have been
+		// visited
+		uris.forEach(uri -> {
+			ASTFileIndex file = getFile(uri);
+			if (file != null) {
+				indexReferences(file);
+			}
+		});
 	}
 
 	public void visitSourceUnit(SourceUnit unit) {
 		sourceUnit = unit;
 		URI uri = sourceUnit.getSource().getURI();
-		nodesByURI.put(uri, new ArrayList<>());
-		classNodesByURI.put(uri, new ArrayList<>());
-		stack.clear();
+		removeFile(uri);
+		currentEntries = new ArrayList<>();
+		currentParents = new int[64];
+		currentSynthetic = new boolean[64];
+		currentClassNodes = new ArrayList<>();
+		stackSize = 0;
 		ModuleNode moduleNode = unit.getAST();
 		if (moduleNode != null) {
 			visitModule(moduleNode);
 		}
+		addFile(uri);
 		sourceUnit = null;
-		stack.clear();
+		currentEntries = null;
+		currentParents = null;
+		currentSynthetic = null;
+		currentClassNodes = null;
+		stackSize = 0;
+	}
+
+	private void addFile(URI uri) {
+		int fileId;
+		if (freeFileIdCount > 0) {
+			// a file that is compiled again usually gets its previous id back
+			fileId = freeFileIds[--freeFileIdCount];
+		} else {
+			fileId = nextFileId++;
+			if (fileId == files.length) {
+				files = Arrays.copyOf(files, fileId * 2);
+			}
+		}
+		int count = currentEntries.size();
+		ASTFileIndex file = new ASTFileIndex();
+		file.uri = uri;
+		file.entries = currentEntries.toArray(new ASTNode[count]);
+		file.parents = Arrays.copyOf(currentParents, count);
+		file.synthetic = Arrays.copyOf(currentSynthetic, count);
+		file.classNodes = Collections.unmodifiableList(currentClassNodes);
+		putFile(fileId, file);
+		fileIdsByURI.put(uri, fileId);
+		for (ClassNode classNode : file.classNodes) {
+			classNodesByName.putIfAbsent(classNode.getName(), classNode);
+		}
+		file.symbolIndex = new SymbolIndex(uri, file.nodes, this);
+	}
+
+	private void putFile(int fileId, ASTFileIndex file) {
+		int count = file.entries.length;
+		int[] ids = new int[count];
+		ASTNode[] nodes = new ASTNode[count];
+		int nodeCount = 0;
+		for (int i = 0; i < count; i++) {
+			if (file.synthetic[i]) {
+				continue;
+			}
+			ids[nodeCount] = i;
+			nodes[nodeCount] = file.entries[i];
+			nodeCount++;
+			nodeIds.put(file.entries[i], pack(fileId, i));
+		}
+		file.nodeIds = Arrays.copyOf(ids, nodeCount);
+		file.nodes = Collections.unmodifiableList(Arrays.asList(Arrays.copyOf(nodes, nodeCount)));
+		files[fileId] = file;
+		file.positionIndex = new ASTNodePositionIndex(file.nodes, this::compareNodesWithSameRange);
+	}
+
+	public boolean isStub(URI uri) {
+		ASTFileIndex file = getFile(uri);
+		return file != null && file.stub;
+	}
+
+	/**
+	 * Returns the number of nodes in the index of the specified file, which
+	 * is much smaller for a stub.
+	 */
+	public int getNodeCount(URI uri) {
+		ASTFileIndex file = getFile(uri);
+		if (file == null) {
+			return 0;
+		}
+		return file.entries.length;
+	}
+
+	/**
+	 * Reduces a file to its declarations and to the nodes that reference
+	 * declarations, so that other files may still be resolved against it, and
+	 * its references may still be found. A stub can't be expanded again, so
+	 * the file must be compiled again when its full index is needed.
+	 *
+	 * The nodes themselves are shared with the compilation unit and with
+	 * previous visitors, so they're never modified here.
+	 */
+	public void stubFile(URI uri) {
+		Integer fileId = fileIdsByURI.get(uri);
+		if (fileId == null || files[fileId].stub) {
+			return;
+		}
+		ASTFileIndex file = files[fileId];
+		Map<ASTNode, List<ASTNode>> referencesByDefinition = new HashMap<>();
+		Set<ASTNode> references = Collections.newSetFromMap(new IdentityHashMap<>());
+		file.referencesByDefinition.forEach((definitionNode, nodes) -> {
+			// local variables can't be referenced from other files
+			if (isDeclaration(definitionNode)) {
+				referencesByDefinition.put(definitionNode, nodes);
+				references.addAll(nodes);
+			}
+		});
+		int count = file.entries.length;
+		int[] stubIds = new int[count];
+		int stubCount = 0;
+		for (int i = 0; i < count; i++) {
+			ASTNode node = file.entries[i];
+			ASTNode parent = file.parents[i] != -1 ? file.entries[file.parents[i]] : null;
+			boolean keep = isDeclaration(node) || node instanceof ModuleNode || node instanceof ImportNode
+					|| (node instanceof Parameter && parent instanceof MethodNode) || references.contains(node);
+			stubIds[i] = keep ? stubCount++ : -1;
+		}
+		ASTFileIndex stub = new ASTFileIndex();
+		stub.uri = uri;
+		stub.entries = new ASTNode[stubCount];
+		stub.parents = new int[stubCount];
+		stub.synthetic = new boolean[stubCount];
+		for (int i = 0; i < count; i++) {
+			int stubId = stubIds[i];
+			if (stubId == -1) {
+				continue;
+			}
+			// a reference's parent is replaced by its closest declaration
+			int parentId = file.parents[i];
+			while (parentId != -1 && stubIds[parentId] == -1) {
+				parentId = file.parents[parentId];
+			}
+			stub.entries[stubId] = file.entries[i];
+			stub.parents[stubId] = parentId != -1 ? stubIds[parentId] : -1;
+			stub.synthetic[stubId] = file.synthetic[i];
+		}
+		stub.classNodes = file.classNodes;
+		stub.symbolIndex = file.symbolIndex;
+		stub.referencesByDefinition = referencesByDefinition;
+		stub.stub = true;
+
+		for (int id : file.nodeIds) {
+			nodeIds.remove(file.entries[id], pack(fileId, id));
+		}
+		putFile(fileId, stub);
+	}
+
+	private static boolean isDeclaration(ASTNode node) {
+		return node instanceof ClassNode || node instanceof MethodNode || node instanceof FieldNode
+				|| node instanceof PropertyNode;
+	}
+
+	private void indexReferences(ASTFileIndex file) {
+		Map<ASTNode, List<ASTNode>> referencesByDefinition = new HashMap<>();
+		for (ASTNode node : file.nodes) {
+			ASTNode definitionNode = null;
+			try {
+				definitionNode = GroovyASTUtils.getDefinition(node, false, this);
+			} catch (Exception e) {
+				// a node that can't be resolved can't be a reference, and it
+				// shouldn't prevent the rest of the file from being indexed
+			}
+			if (definitionNode == null) {
+				continue;
+			}
+			referencesByDefinition.computeIfAbsent(definitionNode, key -> new ArrayList<>()).add(node);
+		}
+		file.referencesByDefinition = referencesByDefinition;
+	}
+
+	private void removeFile(URI uri) {
+		Integer fileId = fileIdsByURI.remove(uri);
+		if (fileId == null) {
+			return;
+		}
+		ASTFileIndex file = files[fileId];
+		for (int id : file.nodeIds) {
+			nodeIds.remove(file.entries[id], pack(fileId, id));
+		}
+		files[fileId] = null;
+		if (freeFileIdCount == freeFileIds.length) {
+			freeFileIds = Arrays.copyOf(freeFileIds, freeFileIdCount * 2);
+		}
+		freeFileIds[freeFileIdCount++] = fileId;
+		for (ClassNode classNode : file.classNodes) {
+			String name = classNode.getName();
+			if (classNodesByName.get(name) != classNode) {
+				continue;
+			}
+			classNodesByName.remove(name);
+			// another file may define a class with the same name
+			ClassNode replacement = findClassNode(name);
+			if (replacement != null) {
+				classNodesByName.put(name, replacement);
+			}
+		}
+	}
+
+	private ClassNode findClassNode(String name) {
+		for (int i = 0; i < nextFileId; i++) {
+			if (files[i] == null) {
+				continue;
+			}
+			for (ClassNode classNode : files[i].classNodes) {
+				if (classNode.getName().equals(name)) {
+					return classNode;
+				}
+			}
+		}
+		return null;
+	}
+
+	private void updateClassNodes() {
+		List<ClassNode> result = new ArrayList<>();
+		for (int i = 0; i < nextFileId; i++) {
+			if (files[i] != null) {
+				result.addAll(files[i].classNodes);
+			}
+		}
+		allClassNodes = Collections.unmodifiableList(result);
+	}
+
+	private ASTFileIndex getFile(URI uri) {
+		Integer fileId = fileIdsByURI.get(uri);
+		if (fileId == null) {
+			return null;
+		}
+		return files[fileId];
+	}
+
+	private static long pack(int fileId, int nodeId) {
+		return ((long) fileId << 32) | nodeId;
+	}
+
+	private static int getFileId(long value) {
+		return (int) (value >>> 32);
+	}
+
+	private static int getNodeId(long value) {
+		return (int) value;
 	}
 
 	public void visitModule(ModuleNode node) {
@@ -328,8 +655,7 @@ public class ASTNodeVisitor extends ClassCodeVisitorSupport {
 	// GroovyClassVisitor
 
 	public void visitClass(ClassNode node) {
-		URI uri = sourceUnit.getSource().getURI();
-		classNodesByURI.get(uri).add(node);
+		currentClassNodes.add(node);
 		pushASTNode(node);
 		try {
 			ClassNode unresolvedSuperClass = node.getUnresolvedSuperClass();
@@ -0,0 +1,99 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.compiler.ast;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Decides which closed files keep their full ASTs. The closed files that
+ * were used most recently are kept, as long as their nodes fit in the
+ * budget, and the rest are reduced to stubs.
+ */
+public class ASTRetentionPolicy {
+	public static final int DEFAULT_NODE_BUDGET = 500000;
+
+	private int nodeBudget = DEFAULT_NODE_BUDGET;
+	// least recently used first
+	private Map<URI, Boolean> recentURIs = new LinkedHashMap<>(16, 0.75f, true);
+
+	public synchronized int getNodeBudget() {
+		return nodeBudget;
+	}
+
+	/**
+	 * Sets the maximum number of nodes in the closed files that keep their
+	 * full ASTs. A negative budget keeps every file.
+	 */
+	public synchronized void setNodeBudget(int nodeBudget) {
+		this.nodeBudget = nodeBudget;
+	}
+
+	public synchronized void touch(URI uri) {
+		recentURIs.put(uri, Boolean.TRUE);
+	}
+
+	/**
+	 * Returns the closed files that should be reduced to stubs. Files that
+	 * were never used are reduced first, and then the files that were used
+	 * least recently. The file that was used last is always kept, even if it
+	 * doesn't fit in the budget.
+	 */
+	public synchronized List<URI> selectStubs(ASTNodeVisitor ast, Set<URI> openURIs) {
+		Set<URI> uris = ast.getURIs();
+		recentURIs.keySet().retainAll(uris);
+		if (nodeBudget < 0) {
+			return Collections.emptyList();
+		}
+		List<URI> candidates = new ArrayList<>();
+		for (URI uri : uris) {
+			if (!recentURIs.containsKey(uri)) {
+				candidates.add(uri);
+			}
+		}
+		Iterator<URI> recentIterator = recentURIs.keySet().iterator();
+		while (recentIterator.hasNext()) {
+			URI uri = recentIterator.next();
+			if (recentIterator.hasNext()) {
+				candidates.add(uri);
+			}
+		}
+		candidates.removeIf(uri -> openURIs.contains(uri) || ast.isStub(uri));
+		long nodeCount = 0;
+		for (URI uri : candidates) {
+			nodeCount += ast.getNodeCount(uri);
+		}
+		List<URI> result = new ArrayList<>();
+		for (URI uri : candidates) {
+			if (nodeCount <= nodeBudget) {
+				break;
+			}
+			result.add(uri);
+			nodeCount -= ast.getNodeCount(uri);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,246 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.compiler.ast;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.lsp4j.Location;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.SymbolInformation;
+import org.eclipse.lsp4j.SymbolKind;
+
+import net.prominic.lsp.utils.LineIndex;
+
+/**
+ * What a source file declares and references, saved between sessions so that
+ * it's available before the file is compiled again. The summary is only
+ * valid for the contents with the same hash. The groovydoc comments aren't
+ * saved, only where to find them in the file.
+ */
+public class FileSummary {
+	private static final int MAGIC = 0x474c5353;
+	private static final int VERSION = 2;
+
+	private URI uri;
+	private String contentHash;
+	private SymbolIndex symbolIndex;
+	private Set<String> definedClasses;
+	private Set<String> referencedClasses;
+	// the start and end offsets of each symbol's groovydoc, or -1
+	private int[] groovydocOffsets;
+
+	public FileSummary(URI uri, String contentHash, SymbolIndex symbolIndex, Set<String> definedClasses,
+			Set<String> referencedClasses, int[] groovydocOffsets) {
+		this.uri = uri;
+		this.contentHash = contentHash;
+		this.symbolIndex = symbolIndex;
+		this.definedClasses = Collections.unmodifiableSet(definedClasses);
+		this.referencedClasses = Collections.unmodifiableSet(referencedClasses);
+		this.groovydocOffsets = groovydocOffsets;
+	}
+
+	/**
+	 * Summarizes the specified contents of a file, and finds the groovydoc
+	 * comment before each of its symbols.
+	 */
+	public static FileSummary create(URI uri, String contents, SymbolIndex symbolIndex, Set<String> definedClasses,
+			Set<String> referencedClasses) {
+		LineIndex lineIndex = new LineIndex(contents);
+		List<SymbolInformation> symbols = symbolIndex.getSymbols();
+		int[] groovydocOffsets = new int[symbols.size() * 2];
+		Arrays.fill(groovydocOffsets, -1);
+		for (int i = 0; i < symbols.size(); i++) {
+			int offset = lineIndex.getOffset(symbols.get(i).getLocation().getRange().getStart());
+			// only whitespace may appear between a comment and its symbol
+			while (offset > 0 && Character.isWhitespace(contents.charAt(offset - 1))) {
+				offset--;
+			}
+			if (offset < 2 || !contents.startsWith("*/", offset - 2)) {
+				continue;
+			}
+			int start = contents.lastIndexOf("/**", offset - 2);
+			if (start != -1) {
+				groovydocOffsets[i * 2] = start;
+				groovydocOffsets[i * 2 + 1] = offset;
+			}
+		}
+		return new FileSummary(uri, FileSummaryCache.hashContents(contents), symbolIndex, definedClasses,
+				referencedClasses, groovydocOffsets);
+	}
+
+	public URI getURI() {
+		return uri;
+	}
+
+	public String getContentHash() {
+		return contentHash;
+	}
+
+	/**
+	 * The workspace symbols that the file declares.
+	 */
+	public SymbolIndex getSymbolIndex() {
+		return symbolIndex;
+	}
+
+	public Set<String> getDefinedClasses() {
+		return definedClasses;
+	}
+
+	public Set<String> getReferencedClasses() {
+		return referencedClasses;
+	}
+
+	/**
+	 * Returns the groovydoc comment of the symbol at the specified index of
+	 * getSymbolIndex().getSymbols(), read from the file's contents. Returns
+	 * null if the symbol has no groovydoc, or if the contents changed.
+	 */
+	public String getGroovydoc(int symbolId, String contents) {
+		int start = groovydocOffsets[symbolId * 2];
+		int end = groovydocOffsets[symbolId * 2 + 1];
+		if (start == -1 || end > contents.length() || !contents.startsWith("/**", start)
+				|| !contents.startsWith("*/", end - 2)) {
+			return null;
+		}
+		return contents.substring(start, end);
+	}
+
+	/**
+	 * Writes the summary to a file. The file is replaced atomically, if
+	 * possible, so that a partially written file is never read.
+	 */
+	public void write(Path file) throws IOException {
+		Files.createDirectories(file.getParent());
+		Path tempFile = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+		try {
+			try (DataOutputStream output = new DataOutputStream(
+					new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+				output.writeInt(MAGIC);
+				output.writeInt(VERSION);
+				output.writeUTF(uri.toString());
+				output.writeUTF(contentHash);
+				List<SymbolInformation> symbols = symbolIndex.getSymbols();
+				List<String> humpNames = symbolIndex.getHumpNames();
+				output.writeInt(symbols.size());
+				for (int i = 0; i < symbols.size(); i++) {
+					SymbolInformation symbol = symbols.get(i);
+					output.writeUTF(symbol.getName());
+					output.writeUTF(humpNames.get(i));
+					output.writeByte(symbol.getKind().getValue());
+					String containerName = symbol.getContainerName();
+					output.writeBoolean(containerName != null);
+					if (containerName != null) {
+						output.writeUTF(containerName);
+					}
+					Range range = symbol.getLocation().getRange();
+					output.writeInt(range.getStart().getLine());
+					output.writeInt(range.getStart().getCharacter());
+					output.writeInt(range.getEnd().getLine());
+					output.writeInt(range.getEnd().getCharacter());
+					output.writeInt(groovydocOffsets[i * 2]);
+					output.writeInt(groovydocOffsets[i * 2 + 1]);
+				}
+				writeStrings(definedClasses, output);
+				writeStrings(referencedClasses, output);
+			}
+			try {
+				Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (IOException e) {
+				Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(tempFile);
+		}
+	}
+
+	/**
+	 * Reads a summary that was written for the specified file and contents.
+	 * Returns null if the file doesn't exist, can't be read, or was written
+	 * for different contents.
+	 */
+	public static FileSummary read(Path file, URI uri, String contentHash) {
+		if (!Files.isRegularFile(file)) {
+			return null;
+		}
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+				return null;
+			}
+			if (!uri.equals(URI.create(input.readUTF())) || !contentHash.equals(input.readUTF())) {
+				return null;
+			}
+			int symbolCount = input.readInt();
+			List<SymbolInformation> symbols = new ArrayList<>(symbolCount);
+			List<String> humpNames = new ArrayList<>(symbolCount);
+			int[] groovydocOffsets = new int[symbolCount * 2];
+			for (int i = 0; i < symbolCount; i++) {
+				String name = input.readUTF();
+				humpNames.add(input.readUTF());
+				SymbolKind kind = SymbolKind.forValue(input.readByte());
+				String containerName = input.readBoolean() ? input.readUTF() : null;
+				Position start = new Position(input.readInt(), input.readInt());
+				Position end = new Position(input.readInt(), input.readInt());
+				Location location = new Location(uri.toString(), new Range(start, end));
+				symbols.add(new SymbolInformation(name, kind, location, containerName));
+				groovydocOffsets[i * 2] = input.readInt();
+				groovydocOffsets[i * 2 + 1] = input.readInt();
+			}
+			Set<String> definedClasses = readStrings(input);
+			Set<String> referencedClasses = readStrings(input);
+			return new FileSummary(uri, contentHash, new SymbolIndex(symbols, humpNames), definedClasses,
+					referencedClasses, groovydocOffsets);
+		} catch (IOException | RuntimeException e) {
+			System.err.println("Failed to read file summary: " + file);
+			return null;
+		}
+	}
+
+	private static void writeStrings(Set<String> values, DataOutputStream output) throws IOException {
+		output.writeInt(values.size());
+		for (String value : values) {
+			output.writeUTF(value);
+		}
+	}
+
+	private static Set<String> readStrings(DataInputStream input) throws IOException {
+		int count = input.readInt();
+		Set<String> result = new LinkedHashSet<>(count);
+		for (int i = 0; i < count; i++) {
+			result.add(input.readUTF());
+		}
+		return result;
+	}
+}
@@ -0,0 +1,71 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.compiler.ast;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import net.prominic.groovyls.util.HashUtils;
+
+/**
+ * Saves a summary of each source file in a directory, so that a workspace's
+ * symbols are available before it is compiled again.
+ */
+public class FileSummaryCache {
+	private static final String FILE_EXTENSION_SUMMARY = ".summary";
+
+	private Path cacheDirectory;
+
+	public FileSummaryCache(Path cacheDirectory) {
+		this.cacheDirectory = cacheDirectory;
+	}
+
+	/**
+	 * Returns the summary of a file with the specified contents, or null if
+	 * none was saved for exactly those contents.
+	 */
+	public FileSummary read(URI uri, String contents) {
+		return FileSummary.read(getCacheFile(uri), uri, hashContents(contents));
+	}
+
+	public void write(FileSummary summary) {
+		try {
+			summary.write(getCacheFile(summary.getURI()));
+		} catch (IOException e) {
+			System.err.println("Failed to write file summary: " + summary.getURI());
+		}
+	}
+
+	public static String hashContents(String contents) {
+		return HashUtils.sha1(contents);
+	}
+
+	private Path getCacheFile(URI uri) {
+		String key = uri.toString();
+		if ("file".equals(uri.getScheme())) {
+			// the compiler names files "file:/path", but the workspace uses
+			// "file:///path"
+			key = Paths.get(uri).toUri().toString();
+		}
+		return cacheDirectory.resolve(HashUtils.sha1(key) + FILE_EXTENSION_SUMMARY);
+	}
+}
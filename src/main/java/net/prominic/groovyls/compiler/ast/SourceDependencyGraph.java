@@ -0,0 +1,246 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.compiler.ast;
+
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.codehaus.groovy.ast.ASTNode;
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.ast.FieldNode;
+import org.codehaus.groovy.ast.GenericsType;
+import org.codehaus.groovy.ast.ImportNode;
+import org.codehaus.groovy.ast.MethodNode;
+import org.codehaus.groovy.ast.Parameter;
+import org.codehaus.groovy.ast.PropertyNode;
+import org.codehaus.groovy.ast.Variable;
+import org.codehaus.groovy.ast.expr.Expression;
+import org.codehaus.groovy.ast.expr.StaticMethodCallExpression;
+
+/**
+ * Records which classes each source file defines and which classes it
+ * references, so that the files that depend on a changed file may be compiled
+ * again. Their resolved types would otherwise continue to point to the class
+ * nodes from before the change.
+ */
+public class SourceDependencyGraph {
+	private Map<URI, Set<String>> definedClassesByURI = new HashMap<>();
+	private Map<URI, Set<String>> referencedClassesByURI = new HashMap<>();
+	private Map<String, Set<URI>> referencingURIsByClass = new HashMap<>();
+	private Map<URI, Set<String>> unresolvedClassesByURI = new HashMap<>();
+
+	public void clear() {
+		definedClassesByURI.clear();
+		referencedClassesByURI.clear();
+		referencingURIsByClass.clear();
+		unresolvedClassesByURI.clear();
+	}
+
+	public void update(URI uri, List<ClassNode> classNodes, List<ASTNode> nodes) {
+		remove(uri);
+		if (classNodes.isEmpty() && nodes.isEmpty()) {
+			return;
+		}
+		Set<String> definedClasses = new HashSet<>();
+		for (ClassNode classNode : classNodes) {
+			definedClasses.add(classNode.getName());
+		}
+		Set<String> referencedClasses = new HashSet<>();
+		Set<String> unresolvedClasses = new HashSet<>();
+		for (ASTNode node : nodes) {
+			for (ClassNode type : getReferencedTypes(node)) {
+				addReferencedType(type, referencedClasses, unresolvedClasses, new HashSet<>());
+			}
+		}
+		referencedClasses.removeAll(definedClasses);
+		definedClassesByURI.put(uri, definedClasses);
+		referencedClassesByURI.put(uri, referencedClasses);
+		for (String className : referencedClasses) {
+			referencingURIsByClass.computeIfAbsent(className, key -> new HashSet<>()).add(uri);
+		}
+		if (!unresolvedClasses.isEmpty()) {
+			unresolvedClassesByURI.put(uri, unresolvedClasses);
+		}
+	}
+
+	public void remove(URI uri) {
+		definedClassesByURI.remove(uri);
+		unresolvedClassesByURI.remove(uri);
+		Set<String> referencedClasses = referencedClassesByURI.remove(uri);
+		if (referencedClasses == null) {
+			return;
+		}
+		for (String className : referencedClasses) {
+			Set<URI> uris = referencingURIsByClass.get(className);
+			if (uris == null) {
+				continue;
+			}
+			uris.remove(uri);
+			if (uris.isEmpty()) {
+				referencingURIsByClass.remove(className);
+			}
+		}
+	}
+
+	public Set<String> getDefinedClasses(URI uri) {
+		Set<String> result = definedClassesByURI.get(uri);
+		if (result == null) {
+			return Collections.emptySet();
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the fully-qualified names of the classes that a file references,
+	 * excluding the classes that it defines.
+	 */
+	public Set<String> getReferencedClasses(URI uri) {
+		Set<String> result = referencedClassesByURI.get(uri);
+		if (result == null) {
+			return Collections.emptySet();
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the simple names of the classes that a file references, but that
+	 * could not be resolved when it was compiled.
+	 */
+	public Set<String> getUnresolvedClasses(URI uri) {
+		Set<String> result = unresolvedClassesByURI.get(uri);
+		if (result == null) {
+			return Collections.emptySet();
+		}
+		return result;
+	}
+
+	public Set<URI> getURIsWithUnresolvedClasses() {
+		return unresolvedClassesByURI.keySet();
+	}
+
+	/**
+	 * Returns the files that reference classes defined in the specified files,
+	 * directly or through other dependents. The specified files are not
+	 * included in the result.
+	 */
+	public Set<URI> getDependents(Collection<URI> uris) {
+		Set<URI> result = new LinkedHashSet<>();
+		Deque<URI> queue = new ArrayDeque<>(uris);
+		while (!queue.isEmpty()) {
+			URI uri = queue.poll();
+			for (String className : getDefinedClasses(uri)) {
+				Set<URI> referencingURIs = referencingURIsByClass.get(className);
+				if (referencingURIs == null) {
+					continue;
+				}
+				for (URI referencingURI : referencingURIs) {
+					if (uris.contains(referencingURI) || !result.add(referencingURI)) {
+						continue;
+					}
+					queue.add(referencingURI);
+				}
+			}
+		}
+		return result;
+	}
+
+	private Collection<ClassNode> getReferencedTypes(ASTNode node) {
+		if (node instanceof ClassNode) {
+			ClassNode classNode = (ClassNode) node;
+			Set<ClassNode> result = new HashSet<>();
+			// a class node that isn't a class declaration is a type reference,
+			// like the unresolved super class
+			result.add(classNode);
+			if (classNode.getSuperClass() != null) {
+				result.add(classNode.getSuperClass());
+			}
+			Collections.addAll(result, classNode.getInterfaces());
+			return result;
+		}
+		if (node instanceof MethodNode) {
+			MethodNode methodNode = (MethodNode) node;
+			Set<ClassNode> result = new HashSet<>();
+			result.add(methodNode.getReturnType());
+			Collections.addAll(result, methodNode.getExceptions());
+			for (Parameter parameter : methodNode.getParameters()) {
+				result.add(parameter.getType());
+			}
+			return result;
+		}
+		if (node instanceof FieldNode) {
+			return Collections.singleton(((FieldNode) node).getType());
+		}
+		if (node instanceof PropertyNode) {
+			return Collections.singleton(((PropertyNode) node).getType());
+		}
+		if (node instanceof ImportNode) {
+			ClassNode type = ((ImportNode) node).getType();
+			if (type == null) {
+				return Collections.emptySet();
+			}
+			return Collections.singleton(type);
+		}
+		if (node instanceof StaticMethodCallExpression) {
+			StaticMethodCallExpression expression = (StaticMethodCallExpression) node;
+			Set<ClassNode> result = new HashSet<>();
+			result.add(expression.getType());
+			result.add(expression.getOwnerType());
+			return result;
+		}
+		if (node instanceof Expression) {
+			return Collections.singleton(((Expression) node).getType());
+		}
+		if (node instanceof Variable) {
+			return Collections.singleton(((Variable) node).getType());
+		}
+		return Collections.emptySet();
+	}
+
+	private void addReferencedType(ClassNode type, Set<String> referencedClasses, Set<String> unresolvedClasses,
+			Set<ClassNode> visited) {
+		if (type == null || !visited.add(type)) {
+			return;
+		}
+		if (type.isArray()) {
+			addReferencedType(type.getComponentType(), referencedClasses, unresolvedClasses, visited);
+			return;
+		}
+		ClassNode redirect = type.redirect();
+		referencedClasses.add(redirect.getName());
+		if (!redirect.isPrimaryClassNode() && !redirect.isResolved()) {
+			unresolvedClasses.add(redirect.getNameWithoutPackage());
+		}
+		GenericsType[] genericsTypes = type.getGenericsTypes();
+		if (genericsTypes != null) {
+			for (GenericsType genericsType : genericsTypes) {
+				addReferencedType(genericsType.getType(), referencedClasses, unresolvedClasses, visited);
+			}
+		}
+	}
+}
@@ -0,0 +1,266 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.compiler.ast;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.groovy.ast.ASTNode;
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.ast.FieldNode;
+import org.codehaus.groovy.ast.MethodNode;
+import org.codehaus.groovy.ast.PropertyNode;
+import org.eclipse.lsp4j.SymbolInformation;
+
+import net.prominic.groovyls.compiler.util.GroovyASTUtils;
+import net.prominic.groovyls.util.GroovyLanguageServerUtils;
+
+/**
+ * The workspace symbols defined in a single file. Symbols are found by the
+ * trigrams in their names, or by the first letters of the humps in their
+ * camel-case names.
+ */
+public class SymbolIndex {
+	public static final int RANK_EXACT = 0;
+	public static final int RANK_PREFIX = 1;
+	public static final int RANK_CAMEL_CASE = 2;
+	public static final int RANK_SUBSTRING = 3;
+
+	public static class Match {
+		public Match(SymbolInformation symbol, int rank) {
+			this.symbol = symbol;
+			this.rank = rank;
+		}
+
+		private SymbolInformation symbol;
+		private int rank;
+
+		public SymbolInformation getSymbol() {
+			return symbol;
+		}
+
+		public int getRank() {
+			return rank;
+		}
+	}
+
+	private static final int[] NO_SYMBOLS = new int[0];
+
+	private SymbolInformation[] symbols;
+	private String[] humpNames;
+	private String[] lowerCaseNames;
+	private Map<Long, int[]> symbolsByTrigram = new HashMap<>();
+	private Map<String, int[]> symbolsByHumps = new HashMap<>();
+
+	public SymbolIndex(URI uri, List<ASTNode> nodes, ASTNodeVisitor ast) {
+		List<SymbolInformation> symbolList = new ArrayList<>();
+		List<String> humpNames = new ArrayList<>();
+		for (ASTNode node : nodes) {
+			SymbolInformation symbol = null;
+			String humpName = null;
+			if (node instanceof ClassNode) {
+				ClassNode classNode = (ClassNode) node;
+				symbol = GroovyLanguageServerUtils.astNodeToSymbolInformation(classNode, uri, null);
+				humpName = classNode.getNameWithoutPackage();
+			} else if (node instanceof MethodNode || node instanceof FieldNode || node instanceof PropertyNode) {
+				ClassNode classNode = (ClassNode) GroovyASTUtils.getEnclosingNodeOfType(node, ClassNode.class, ast);
+				if (classNode == null) {
+					continue;
+				}
+				if (node instanceof MethodNode) {
+					symbol = GroovyLanguageServerUtils.astNodeToSymbolInformation((MethodNode) node, uri,
+							classNode.getName());
+				} else if (node instanceof PropertyNode) {
+					symbol = GroovyLanguageServerUtils.astNodeToSymbolInformation((PropertyNode) node, uri,
+							classNode.getName());
+				} else {
+					symbol = GroovyLanguageServerUtils.astNodeToSymbolInformation((FieldNode) node, uri,
+							classNode.getName());
+				}
+			}
+			if (symbol == null || symbol.getName() == null) {
+				continue;
+			}
+			symbolList.add(symbol);
+			humpNames.add(humpName != null ? humpName : symbol.getName());
+		}
+		index(symbolList, humpNames);
+	}
+
+	/**
+	 * Creates an index of symbols that were saved earlier. Each symbol has a
+	 * name from which the initials of its camel-case humps are taken.
+	 */
+	public SymbolIndex(List<SymbolInformation> symbols, List<String> humpNames) {
+		index(symbols, humpNames);
+	}
+
+	private void index(List<SymbolInformation> symbolList, List<String> humpNameList) {
+		symbols = symbolList.toArray(new SymbolInformation[symbolList.size()]);
+		humpNames = humpNameList.toArray(new String[humpNameList.size()]);
+		lowerCaseNames = new String[symbols.length];
+		Map<Long, List<Integer>> trigrams = new HashMap<>();
+		Map<String, List<Integer>> humps = new HashMap<>();
+		for (int i = 0; i < symbols.length; i++) {
+			String lowerCaseName = symbols[i].getName().toLowerCase();
+			lowerCaseNames[i] = lowerCaseName;
+			for (int j = 0; j + 3 <= lowerCaseName.length(); j++) {
+				List<Integer> ids = trigrams.computeIfAbsent(trigram(lowerCaseName, j), key -> new ArrayList<>());
+				// a name may contain the same trigram more than once
+				if (ids.isEmpty() || ids.get(ids.size() - 1) != i) {
+					ids.add(i);
+				}
+			}
+			String initials = getHumpInitials(humpNames[i]);
+			for (int j = 2; j <= initials.length(); j++) {
+				List<Integer> ids = humps.computeIfAbsent(initials.substring(0, j), key -> new ArrayList<>());
+				if (ids.isEmpty() || ids.get(ids.size() - 1) != i) {
+					ids.add(i);
+				}
+			}
+		}
+		trigrams.forEach((key, ids) -> symbolsByTrigram.put(key, toArray(ids)));
+		humps.forEach((key, ids) -> symbolsByHumps.put(key, toArray(ids)));
+	}
+
+	public int size() {
+		return symbols.length;
+	}
+
+	public List<SymbolInformation> getSymbols() {
+		return Collections.unmodifiableList(Arrays.asList(symbols));
+	}
+
+	public List<String> getHumpNames() {
+		return Collections.unmodifiableList(Arrays.asList(humpNames));
+	}
+
+	/**
+	 * Adds the symbols that match the query to the result, in the order that
+	 * they appear in the file.
+	 */
+	public void search(String lowerCaseQuery, List<Match> result) {
+		if (symbols.length == 0) {
+			return;
+		}
+		int[] humpMatches = symbolsByHumps.getOrDefault(lowerCaseQuery, NO_SYMBOLS);
+		int[] candidates = getSubstringCandidates(lowerCaseQuery);
+		int c = 0;
+		int h = 0;
+		while (c < candidates.length || h < humpMatches.length) {
+			int id;
+			boolean isHumpMatch = false;
+			if (h < humpMatches.length && (c == candidates.length || humpMatches[h] <= candidates[c])) {
+				id = humpMatches[h++];
+				isHumpMatch = true;
+				if (c < candidates.length && candidates[c] == id) {
+					c++;
+				}
+			} else {
+				id = candidates[c++];
+			}
+			String lowerCaseName = lowerCaseNames[id];
+			int rank = -1;
+			if (lowerCaseName.equals(lowerCaseQuery)) {
+				rank = RANK_EXACT;
+			} else if (lowerCaseName.startsWith(lowerCaseQuery)) {
+				rank = RANK_PREFIX;
+			} else if (isHumpMatch) {
+				rank = RANK_CAMEL_CASE;
+			} else if (lowerCaseName.contains(lowerCaseQuery)) {
+				rank = RANK_SUBSTRING;
+			}
+			if (rank != -1) {
+				result.add(new Match(symbols[id], rank));
+			}
+		}
+	}
+
+	/**
+	 * Returns the symbols that might contain the query. Every trigram of the
+	 * query must appear in the name, so only the shortest list of symbols for
+	 * one of its trigrams needs to be checked.
+	 */
+	private int[] getSubstringCandidates(String lowerCaseQuery) {
+		if (lowerCaseQuery.length() < 3) {
+			int[] all = new int[symbols.length];
+			for (int i = 0; i < all.length; i++) {
+				all[i] = i;
+			}
+			return all;
+		}
+		int[] shortest = null;
+		for (int j = 0; j + 3 <= lowerCaseQuery.length(); j++) {
+			int[] ids = symbolsByTrigram.get(trigram(lowerCaseQuery, j));
+			if (ids == null) {
+				return NO_SYMBOLS;
+			}
+			if (shortest == null || ids.length < shortest.length) {
+				shortest = ids;
+			}
+		}
+		return shortest;
+	}
+
+	private static long trigram(String text, int index) {
+		return ((long) text.charAt(index) << 32) | ((long) text.charAt(index + 1) << 16) | text.charAt(index + 2);
+	}
+
+	/**
+	 * Returns the lower-case first letter of each hump of a camel-case name.
+	 * Underscores and dollar signs also start new humps.
+	 */
+	static String getHumpInitials(String name) {
+		StringBuilder builder = new StringBuilder();
+		boolean startOfHump = true;
+		char previous = 0;
+		for (int i = 0; i < name.length(); i++) {
+			char current = name.charAt(i);
+			if (current == '_' || current == '$' || current == '.') {
+				startOfHump = true;
+				previous = current;
+				continue;
+			}
+			if (Character.isUpperCase(current) && !Character.isUpperCase(previous)) {
+				startOfHump = true;
+			}
+			if (startOfHump) {
+				builder.append(Character.toLowerCase(current));
+				startOfHump = false;
+			}
+			previous = current;
+		}
+		return builder.toString();
+	}
+
+	private static int[] toArray(List<Integer> ids) {
+		int[] result = new int[ids.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = ids.get(i);
+		}
+		Arrays.sort(result);
+		return result;
+	}
+}
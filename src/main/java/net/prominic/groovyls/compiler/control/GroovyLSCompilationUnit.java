@@ -20,17 +20,26 @@
 package net.prominic.groovyls.compiler.control;
 
 import groovy.lang.GroovyClassLoader;
+import org.codehaus.groovy.ast.ClassNode;
 import org.codehaus.groovy.ast.CompileUnit;
+import org.codehaus.groovy.ast.ConstructorNode;
+import org.codehaus.groovy.ast.MethodNode;
 import org.codehaus.groovy.ast.ModuleNode;
+import org.codehaus.groovy.ast.stmt.BlockStatement;
+import org.codehaus.groovy.control.CompilationFailedException;
 import org.codehaus.groovy.control.CompilationUnit;
 import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.Phases;
 import org.codehaus.groovy.control.SourceUnit;
 import org.codehaus.groovy.tools.GroovyClass;
+import org.eclipse.lsp4j.jsonrpc.CancelChecker;
 
 import java.security.CodeSource;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CancellationException;
 import java.util.stream.Collectors;
 
 public class GroovyLSCompilationUnit extends CompilationUnit {
@@ -70,7 +79,75 @@ public class GroovyLSCompilationUnit extends CompilationUnit {
 		lsErrorCollector.clear();
 	}
 
+	/**
+	 * Compiles through the specified phase, but checks for cancellation
+	 * before each phase. If canceled, the CancellationException from the
+	 * checker is thrown, and the sources that didn't finish compiling are
+	 * replaced, so that compiling again later starts them from the beginning.
+	 */
+	public void compile(int throughPhase, CancelChecker cancelChecker) throws CompilationFailedException {
+		// groovy wraps exceptions thrown by a progress callback during a
+		// phase, so cancellation is checked between phases instead
+		try {
+			for (int phase = Phases.INITIALIZATION; phase <= throughPhase; phase++) {
+				cancelChecker.checkCanceled();
+				compile(phase);
+			}
+		} catch (CancellationException e) {
+			resetIncompleteSources(throughPhase);
+			throw e;
+		}
+	}
+
+	private void resetIncompleteSources(int throughPhase) {
+		List<SourceUnit> incompleteSources = new ArrayList<>();
+		iterator().forEachRemaining(sourceUnit -> {
+			if (sourceUnit.getPhase() < throughPhase
+					|| (sourceUnit.getPhase() == throughPhase && !sourceUnit.isPhaseComplete())) {
+				incompleteSources.add(sourceUnit);
+			}
+		});
+		if (incompleteSources.isEmpty()) {
+			return;
+		}
+		removeSources(incompleteSources);
+		for (SourceUnit sourceUnit : incompleteSources) {
+			addSource(new SourceUnit(sourceUnit.getName(), sourceUnit.getSource(), getConfiguration(),
+					getClassLoader(), getErrorCollector()));
+		}
+	}
+
 	public void removeSource(SourceUnit sourceUnit) {
 		removeSources(Collections.singletonList(sourceUnit));
 	}
+
+	/**
+	 * Replaces the method bodies of a source with empty blocks, so that the
+	 * garbage collector may free them. Returns false if the source hasn't
+	 * been compiled through canonicalization, because compiling it again
+	 * continues from its current phase, which still needs the bodies. A
+	 * source that was released must be compiled again from its text before
+	 * its bodies are visited.
+	 */
+	public boolean releaseMethodBodies(SourceUnit sourceUnit) {
+		ModuleNode module = sourceUnit.getAST();
+		if (module == null || sourceUnit.getPhase() < Phases.CANONICALIZATION || !sourceUnit.isPhaseComplete()) {
+			return false;
+		}
+		for (ClassNode classNode : module.getClasses()) {
+			for (MethodNode methodNode : classNode.getMethods()) {
+				if (methodNode.getCode() != null) {
+					methodNode.setCode(new BlockStatement());
+				}
+			}
+			for (ConstructorNode constructorNode : classNode.getDeclaredConstructors()) {
+				if (constructorNode.getCode() != null) {
+					constructorNode.setCode(new BlockStatement());
+				}
+			}
+		}
+		// a script's statements are kept by its module too
+		module.getStatementBlock().getStatements().clear();
+		return true;
+	}
 }
\ No newline at end of file
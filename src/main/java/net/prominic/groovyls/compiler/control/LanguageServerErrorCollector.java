@@ -22,10 +22,13 @@ package net.prominic.groovyls.compiler.control;
 import org.codehaus.groovy.control.CompilationFailedException;
 import org.codehaus.groovy.control.CompilerConfiguration;
 import org.codehaus.groovy.control.ErrorCollector;
+import org.codehaus.groovy.control.messages.Message;
+import org.codehaus.groovy.control.messages.WarningMessage;
 
 /**
  * A special ErrorCollector for language servers that can clear all errors and
- * does not throw exceptions.
+ * does not throw exceptions. Source files may be parsed in parallel, so
+ * messages may be added from multiple threads.
  */
 public class LanguageServerErrorCollector extends ErrorCollector {
     private static final long serialVersionUID = 1L;
@@ -34,7 +37,17 @@ public class LanguageServerErrorCollector extends ErrorCollector {
         super(configuration);
     }
 
-    public void clear() {
+    @Override
+    public synchronized void addErrorAndContinue(Message message) {
+        super.addErrorAndContinue(message);
+    }
+
+    @Override
+    public synchronized void addWarning(WarningMessage message) {
+        super.addWarning(message);
+    }
+
+    public synchronized void clear() {
         if (errors != null) {
             errors.clear();
         }
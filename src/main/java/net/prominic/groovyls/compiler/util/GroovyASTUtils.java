@@ -139,15 +139,16 @@ public class GroovyASTUtils {
         if (definitionNode == null) {
             return Collections.emptyList();
         }
-        return ast.getNodes().stream().filter(otherNode -> {
-            ASTNode otherDefinition = getDefinition(otherNode, false, ast);
-            return definitionNode.equals(otherDefinition) && node.getLineNumber() != -1 && node.getColumnNumber() != -1;
-        }).collect(Collectors.toList());
+        if (node.getLineNumber() == -1 || node.getColumnNumber() == -1) {
+            return Collections.emptyList();
+        }
+        return ast.getReferences(definitionNode);
     }
 
     private static ClassNode tryToResolveOriginalClassNode(ClassNode node, boolean strict, ASTNodeVisitor ast) {
-        for (ClassNode originalNode : ast.getClassNodes()) {
-            if (originalNode.equals(node)) {
+        if (node != null) {
+            ClassNode originalNode = ast.getClassNode(node.getName());
+            if (originalNode != null) {
                 return originalNode;
             }
         }
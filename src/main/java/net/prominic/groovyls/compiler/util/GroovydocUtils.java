@@ -26,7 +26,13 @@ public class GroovydocUtils {
 		if (groovydoc == null || !groovydoc.isPresent()) {
 			return null;
 		}
-		String content = groovydoc.getContent();
+		return groovydocToMarkdownDescription(groovydoc.getContent());
+	}
+
+	/**
+	 * Converts the text of a groovydoc comment, including its delimiters.
+	 */
+	public static String groovydocToMarkdownDescription(String content) {
 		String[] lines = content.split("\n");
 		StringBuilder markdownBuilder = new StringBuilder();
 		int n = lines.length;
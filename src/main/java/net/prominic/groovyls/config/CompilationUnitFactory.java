@@ -20,12 +20,11 @@
 package net.prominic.groovyls.config;
 
 import java.io.File;
-import java.io.IOException;
 import java.net.URI;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -38,14 +37,17 @@ import groovy.lang.GroovyClassLoader;
 import net.prominic.groovyls.compiler.control.GroovyLSCompilationUnit;
 import net.prominic.groovyls.compiler.control.io.StringReaderSourceWithURI;
 import net.prominic.groovyls.util.FileContentsTracker;
+import net.prominic.groovyls.util.SourceFileInventory;
 
 public class CompilationUnitFactory implements ICompilationUnitFactory {
-	private static final String FILE_EXTENSION_GROOVY = ".groovy";
-
 	private GroovyLSCompilationUnit compilationUnit;
 	private CompilerConfiguration config;
 	private GroovyClassLoader classLoader;
 	private List<String> additionalClasspathList;
+	private boolean parallelParse = true;
+	private Set<URI> includedURIs;
+	private SourceFileInventory sourceFiles;
+	private Map<String, DirectoryListing> jarListingsByDirectory = new HashMap<>();
 
 	public CompilationUnitFactory() {
 	}
@@ -59,6 +61,49 @@ public class CompilationUnitFactory implements ICompilationUnitFactory {
 		invalidateCompilationUnit();
 	}
 
+	public boolean isParallelParse() {
+		return parallelParse;
+	}
+
+	public void setParallelParse(boolean parallelParse) {
+		this.parallelParse = parallelParse;
+		if (config != null) {
+			// the compilation unit checks this option every time that it
+			// compiles, so it doesn't need to be replaced
+			config.getOptimizationOptions().put(CompilerConfiguration.PARALLEL_PARSE, parallelParse);
+		}
+	}
+
+	public Set<URI> getIncludedURIs() {
+		return includedURIs;
+	}
+
+	public void setIncludedURIs(Set<URI> includedURIs) {
+		this.includedURIs = includedURIs;
+	}
+
+	public SourceFileInventory getSourceFiles(Path workspaceRoot) {
+		if (sourceFiles == null || !sourceFiles.getRoot().equals(workspaceRoot)) {
+			sourceFiles = new SourceFileInventory(workspaceRoot);
+			sourceFiles.rescan();
+		}
+		return sourceFiles;
+	}
+
+	public Set<URI> updateSourceFiles(Set<URI> uris) {
+		if (sourceFiles == null) {
+			return Collections.emptySet();
+		}
+		return sourceFiles.update(uris);
+	}
+
+	public Set<URI> rescanSourceFiles() {
+		if (sourceFiles == null) {
+			return Collections.emptySet();
+		}
+		return sourceFiles.rescan();
+	}
+
 	public void invalidateCompilationUnit() {
 		compilationUnit = null;
 		config = null;
@@ -114,9 +159,14 @@ public class CompilationUnitFactory implements ICompilationUnitFactory {
 
 	protected CompilerConfiguration getConfiguration() {
 		CompilerConfiguration config = new CompilerConfiguration();
+		// compiling stops before classes are generated, so nothing is ever
+		// written to disk, even if a system property sets a directory
+		config.setTargetDirectory((File) null);
 
 		Map<String, Boolean> optimizationOptions = new HashMap<>();
 		optimizationOptions.put(CompilerConfiguration.GROOVYDOC, true);
+		// the fork-join common pool scales with the number of cores
+		optimizationOptions.put(CompilerConfiguration.PARALLEL_PARSE, parallelParse);
 		config.setOptimizationOptions(optimizationOptions);
 
 		List<String> classpathList = new ArrayList<>();
@@ -143,12 +193,7 @@ public class CompilationUnitFactory implements ICompilationUnitFactory {
 				continue;
 			}
 			if (file.isDirectory()) {
-				for (File child : file.listFiles()) {
-					if (!child.getName().endsWith(".jar") || !child.isFile()) {
-						continue;
-					}
-					result.add(child.getPath());
-				}
+				result.addAll(listJarFiles(file));
 			} else if (!mustBeDirectory && file.isFile()) {
 				if (file.getName().endsWith(".jar")) {
 					result.add(entry);
@@ -157,28 +202,51 @@ public class CompilationUnitFactory implements ICompilationUnitFactory {
 		}
 	}
 
+	/**
+	 * Returns the paths of the .jar files in a directory. A directory's
+	 * modification time changes when files are added or removed, so the
+	 * previous listing is reused until then.
+	 */
+	private List<String> listJarFiles(File directory) {
+		String key = directory.getPath();
+		long lastModified = directory.lastModified();
+		DirectoryListing listing = jarListingsByDirectory.get(key);
+		if (listing != null && listing.lastModified == lastModified) {
+			return listing.paths;
+		}
+		List<String> paths = new ArrayList<>();
+		File[] children = directory.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				if (!child.getName().endsWith(".jar") || !child.isFile()) {
+					continue;
+				}
+				paths.add(child.getPath());
+			}
+		}
+		jarListingsByDirectory.put(key, new DirectoryListing(lastModified, paths));
+		return paths;
+	}
+
 	protected void addDirectoryToCompilationUnit(Path dirPath, GroovyLSCompilationUnit compilationUnit,
 			FileContentsTracker fileContentsTracker, Set<URI> changedUris) {
-		try {
-			if (Files.exists(dirPath)) {
-				Files.walk(dirPath).forEach((filePath) -> {
-					if (!filePath.toString().endsWith(FILE_EXTENSION_GROOVY)) {
-						return;
-					}
-					URI fileURI = filePath.toUri();
-					if (!fileContentsTracker.isOpen(fileURI)) {
-						File file = filePath.toFile();
-						if (file.isFile()) {
-							if (changedUris == null || changedUris.contains(fileURI)) {
-								compilationUnit.addSource(file);
-							}
-						}
-					}
-				});
+		// the inventory is kept up to date without walking the directory tree
+		// on every change
+		for (URI fileURI : getSourceFiles(dirPath).getURIs()) {
+			if (changedUris != null) {
+				if (!changedUris.contains(fileURI)) {
+					continue;
+				}
+			} else if (includedURIs != null && !includedURIs.contains(fileURI)) {
+				continue;
+			}
+			if (fileContentsTracker.isOpen(fileURI)) {
+				continue;
+			}
+			File file = Paths.get(fileURI).toFile();
+			if (file.isFile()) {
+				compilationUnit.addSource(file);
 			}
-
-		} catch (IOException e) {
-			System.err.println("Failed to walk directory for source files: " + dirPath);
 		}
 		fileContentsTracker.getOpenURIs().forEach(uri -> {
 			Path openPath = Paths.get(uri);
@@ -201,4 +269,14 @@ public class CompilationUnitFactory implements ICompilationUnitFactory {
 				compilationUnit.getErrorCollector());
 		compilationUnit.addSource(sourceUnit);
 	}
-}
\ No newline at end of file
+
+	private static class DirectoryListing {
+		public DirectoryListing(long lastModified, List<String> paths) {
+			this.lastModified = lastModified;
+			this.paths = paths;
+		}
+
+		private long lastModified;
+		private List<String> paths;
+	}
+}
@@ -19,11 +19,14 @@
 ////////////////////////////////////////////////////////////////////////////////
 package net.prominic.groovyls.config;
 
+import java.net.URI;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.Set;
 
 import net.prominic.groovyls.compiler.control.GroovyLSCompilationUnit;
 import net.prominic.groovyls.util.FileContentsTracker;
+import net.prominic.groovyls.util.SourceFileInventory;
 
 public interface ICompilationUnitFactory {
 	/**
@@ -36,6 +39,42 @@ public interface ICompilationUnitFactory {
 
 	public void setAdditionalClasspathList(List<String> classpathList);
 
+	public boolean isParallelParse();
+
+	/**
+	 * If true, source files are parsed and converted to AST on all available
+	 * cores. Classes are still resolved one file at a time.
+	 */
+	public void setParallelParse(boolean parallelParse);
+
+	public Set<URI> getIncludedURIs();
+
+	/**
+	 * If not null, a new compilation unit includes only these files from the
+	 * workspace, in addition to the open files. Other files are added to an
+	 * existing compilation unit when they are marked as changed.
+	 */
+	public void setIncludedURIs(Set<URI> includedURIs);
+
+	/**
+	 * Returns the source files in a workspace. The directory tree is walked
+	 * the first time, and afterwards only when the files are rescanned.
+	 */
+	public SourceFileInventory getSourceFiles(Path workspaceRoot);
+
+	/**
+	 * Updates the source files in the workspace for the files or directories
+	 * that the client reported as created, changed or deleted. Returns the
+	 * source files that were added, modified or deleted.
+	 */
+	public Set<URI> updateSourceFiles(Set<URI> uris);
+
+	/**
+	 * Walks the workspace's directory tree again. Returns the source files
+	 * that were added, modified or deleted.
+	 */
+	public Set<URI> rescanSourceFiles();
+
 	/**
 	 * Returns a compilation unit.
 	 */
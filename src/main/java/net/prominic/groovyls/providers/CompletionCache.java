@@ -0,0 +1,108 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.providers;
+
+import java.net.URI;
+import java.util.List;
+
+import org.eclipse.lsp4j.CompletionItem;
+
+import net.prominic.groovyls.util.FileContentsTracker;
+
+/**
+ * Remembers the candidates of the most recent member completion, so that the
+ * requests that follow as the user types the member name may be answered by
+ * filtering them, without compiling again. The candidates remain valid only
+ * while every change to the document replaces text inside the member name
+ * that is being typed after the anchor. The changes are reported as they're
+ * applied, so the rest of the document is never compared.
+ */
+public class CompletionCache implements FileContentsTracker.ChangeListener {
+	private URI uri;
+	private int version;
+	private int anchorOffset;
+	private String memberNamePrefix;
+	private List<CompletionItem> candidates;
+
+	/**
+	 * @param version          the version of the document when the
+	 *                         candidates were created
+	 * @param anchorOffset     the offset where the member name starts
+	 * @param memberNamePrefix the text between the anchor and the offset of
+	 *                         the completion request
+	 */
+	public synchronized void put(URI uri, int version, int anchorOffset, String memberNamePrefix,
+			List<CompletionItem> candidates) {
+		if (version < 0 || anchorOffset < 0) {
+			clear();
+			return;
+		}
+		this.uri = uri;
+		this.version = version;
+		this.anchorOffset = anchorOffset;
+		this.memberNamePrefix = memberNamePrefix;
+		this.candidates = candidates;
+	}
+
+	/**
+	 * Returns the cached candidates that match the member name between the
+	 * anchor and the offset, or null if the candidates are not valid for the
+	 * current version of the document.
+	 */
+	public synchronized List<CompletionItem> get(URI uri, int version, int offset) {
+		if (candidates == null || !uri.equals(this.uri)) {
+			return null;
+		}
+		if (version != this.version || offset != anchorOffset + memberNamePrefix.length()) {
+			clear();
+			return null;
+		}
+		for (int i = 0; i < memberNamePrefix.length(); i++) {
+			if (!Character.isJavaIdentifierPart(memberNamePrefix.charAt(i))) {
+				clear();
+				return null;
+			}
+		}
+		return CompletionProvider.filterMemberCandidates(candidates, memberNamePrefix);
+	}
+
+	@Override
+	public synchronized void didReplace(URI uri, int version, int start, int end, String newText) {
+		if (candidates == null) {
+			return;
+		}
+		// a skipped version is a change that was made before the candidates
+		// were stored
+		int offset = anchorOffset + memberNamePrefix.length();
+		if (!uri.equals(this.uri) || version != this.version + 1 || start < anchorOffset || end > offset) {
+			clear();
+			return;
+		}
+		memberNamePrefix = memberNamePrefix.substring(0, start - anchorOffset) + newText
+				+ memberNamePrefix.substring(end - anchorOffset);
+		this.version = version;
+	}
+
+	public synchronized void clear() {
+		uri = null;
+		memberNamePrefix = null;
+		candidates = null;
+	}
+}
@@ -24,9 +24,11 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import org.codehaus.groovy.ast.ASTNode;
@@ -53,27 +55,64 @@ import org.eclipse.lsp4j.MarkupContent;
 import org.eclipse.lsp4j.MarkupKind;
 import org.eclipse.lsp4j.Position;
 import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.SymbolInformation;
+import org.eclipse.lsp4j.SymbolKind;
 import org.eclipse.lsp4j.TextDocumentIdentifier;
 import org.eclipse.lsp4j.TextEdit;
+import org.eclipse.lsp4j.jsonrpc.CancelChecker;
 import org.eclipse.lsp4j.jsonrpc.messages.Either;
 
-import io.github.classgraph.ClassInfo;
-import io.github.classgraph.PackageInfo;
-import io.github.classgraph.ScanResult;
+import net.prominic.groovyls.classpath.ClasspathClass;
+import net.prominic.groovyls.classpath.ClasspathIndex;
 import net.prominic.groovyls.compiler.ast.ASTNodeVisitor;
+import net.prominic.groovyls.compiler.ast.FileSummary;
 import net.prominic.groovyls.compiler.util.GroovyASTUtils;
 import net.prominic.groovyls.compiler.util.GroovydocUtils;
 import net.prominic.groovyls.util.GroovyLanguageServerUtils;
 
 public class CompletionProvider {
 	private ASTNodeVisitor ast;
-	private ScanResult classGraphScanResult;
+	private ClasspathIndex classpathIndex;
+	private boolean isClasspathIndexReady;
+	private CancelChecker cancelChecker;
 	private int maxItemCount = 1000;
 	private boolean isIncomplete = false;
+	private boolean isMissingClasspathItems = false;
+	private Position memberNameStart;
+	private List<CompletionItem> memberCandidates;
+	private List<FileSummary> unindexedFileSummaries = Collections.emptyList();
+	private Function<URI, String> readContents;
+
+	public CompletionProvider(ASTNodeVisitor ast, ClasspathIndex classpathIndex) {
+		this(ast, classpathIndex, true);
+	}
+
+	/**
+	 * @param isClasspathIndexReady if false, the classpath is still being
+	 *                              indexed, and the results that might
+	 *                              include classes from the classpath are
+	 *                              marked as incomplete
+	 */
+	public CompletionProvider(ASTNodeVisitor ast, ClasspathIndex classpathIndex, boolean isClasspathIndexReady) {
+		this(ast, classpathIndex, isClasspathIndexReady, () -> {
+		});
+	}
 
-	public CompletionProvider(ASTNodeVisitor ast, ScanResult classGraphScanResult) {
+	public CompletionProvider(ASTNodeVisitor ast, ClasspathIndex classpathIndex, boolean isClasspathIndexReady,
+			CancelChecker cancelChecker) {
 		this.ast = ast;
-		this.classGraphScanResult = classGraphScanResult;
+		this.classpathIndex = classpathIndex;
+		this.isClasspathIndexReady = isClasspathIndexReady;
+		this.cancelChecker = cancelChecker;
+	}
+
+	/**
+	 * Classes are also completed from the summaries of files that haven't
+	 * been compiled yet. Their groovydoc is read from their contents.
+	 */
+	public void setUnindexedFileSummaries(List<FileSummary> summaries, Function<URI, String> readContents) {
+		this.unindexedFileSummaries = summaries;
+		this.readContents = readContents;
 	}
 
 	public CompletableFuture<Either<List<CompletionItem>, CompletionList>> provideCompletion(
@@ -91,6 +130,9 @@ public class CompletionProvider {
 		ASTNode parentNode = ast.getParent(offsetNode);
 
 		isIncomplete = false;
+		isMissingClasspathItems = false;
+		memberNameStart = null;
+		memberCandidates = null;
 		List<CompletionItem> items = new ArrayList<>();
 
 		if (offsetNode instanceof PropertyExpression) {
@@ -115,7 +157,8 @@ public class CompletionProvider {
 			populateItemsFromScope(offsetNode, "", items);
 		}
 
-		if (isIncomplete) {
+		if (isIncomplete || isMissingClasspathItems) {
+			// the client will ask again as the user continues typing
 			return CompletableFuture.completedFuture(Either.forRight(new CompletionList(true, items)));
 		}
 		return CompletableFuture.completedFuture(Either.forLeft(items));
@@ -128,7 +171,7 @@ public class CompletionProvider {
 			return;
 		}
 		String memberName = getMemberName(propExpr.getPropertyAsString(), propertyRange, position);
-		populateItemsFromExpression(propExpr.getObjectExpression(), memberName, items);
+		populateItemsFromMemberAccess(propExpr.getObjectExpression(), memberName, propertyRange.getStart(), items);
 	}
 
 	private void populateItemsFromMethodCallExpression(MethodCallExpression methodCallExpr, Position position,
@@ -138,7 +181,41 @@ public class CompletionProvider {
 			return;
 		}
 		String memberName = getMemberName(methodCallExpr.getMethodAsString(), methodRange, position);
-		populateItemsFromExpression(methodCallExpr.getObjectExpression(), memberName, items);
+		populateItemsFromMemberAccess(methodCallExpr.getObjectExpression(), memberName, methodRange.getStart(),
+				items);
+	}
+
+	/**
+	 * Returns the position where the member name starts, if the most recent
+	 * completion was for a member of an expression. Otherwise, returns null.
+	 */
+	public Position getMemberNameStart() {
+		return memberNameStart;
+	}
+
+	/**
+	 * Returns the items for every member of the expression, if the most recent
+	 * completion was for a member of an expression. The result for a longer
+	 * member name prefix is the subset of items that start with it, so these
+	 * items may be filtered as the user continues typing.
+	 */
+	public List<CompletionItem> getMemberCandidates() {
+		return memberCandidates;
+	}
+
+	public static List<CompletionItem> filterMemberCandidates(List<CompletionItem> candidates,
+			String memberNamePrefix) {
+		return candidates.stream().filter(item -> item.getLabel().startsWith(memberNamePrefix))
+				.collect(Collectors.toList());
+	}
+
+	private void populateItemsFromMemberAccess(Expression objectExpression, String memberNamePrefix,
+			Position memberNameStart, List<CompletionItem> items) {
+		List<CompletionItem> candidates = new ArrayList<>();
+		populateItemsFromExpression(objectExpression, "", candidates);
+		this.memberNameStart = memberNameStart;
+		memberCandidates = candidates;
+		items.addAll(filterMemberCandidates(candidates, memberNamePrefix));
 	}
 
 	private void populateItemsFromImportNode(ImportNode importNode, Position position, List<CompletionItem> items) {
@@ -189,48 +266,42 @@ public class CompletionProvider {
 		}).collect(Collectors.toList());
 		items.addAll(localClassItems);
 
-		if (classGraphScanResult == null) {
+		if (!isClasspathIndexReady) {
+			isMissingClasspathItems = true;
+		}
+		if (classpathIndex == null) {
 			return;
 		}
-		List<ClassInfo> classes = classGraphScanResult.getAllClasses();
-		List<PackageInfo> packages = classGraphScanResult.getPackageInfo();
+		List<String> packageNames = classpathIndex.getPackageNamesWithPrefix(importText);
+		Set<ClasspathClass> classes = new LinkedHashSet<>(classpathIndex.getClassesWithNamePrefix(importText));
+		classes.addAll(classpathIndex.getClassesWithSimpleNamePrefix(importText));
 
-		List<CompletionItem> packageItems = packages.stream().filter(packageInfo -> {
-			String packageName = packageInfo.getName();
-			if (packageName.startsWith(importText)) {
-				return true;
-			}
-			return false;
-		}).map(packageInfo -> {
+		List<CompletionItem> packageItems = packageNames.stream().map(packageName -> {
 			CompletionItem item = new CompletionItem();
-			item.setLabel(packageInfo.getName());
-			item.setTextEdit(Either.forLeft(new TextEdit(importRange, packageInfo.getName())));
+			item.setLabel(packageName);
+			item.setTextEdit(Either.forLeft(new TextEdit(importRange, packageName)));
 			item.setKind(CompletionItemKind.Module);
 			return item;
 		}).collect(Collectors.toList());
 		items.addAll(packageItems);
 
-		List<CompletionItem> classItems = classes.stream().filter(classInfo -> {
-			String packageName = classInfo.getPackageName();
+		List<CompletionItem> classItems = classes.stream().filter(classpathClass -> {
+			cancelChecker.checkCanceled();
+			String packageName = classpathClass.getPackageName();
 			if (packageName == null || packageName.length() == 0 || packageName.equals(enclosingPackageName)) {
 				return false;
 			}
-			String className = classInfo.getName();
-			String classNameWithoutPackage = classInfo.getSimpleName();
-			if (!className.startsWith(importText) && !classNameWithoutPackage.startsWith(importText)) {
-				return false;
-			}
-			if (importNames.contains(className)) {
+			if (importNames.contains(classpathClass.getName())) {
 				return false;
 			}
 			return true;
-		}).map(classInfo -> {
+		}).map(classpathClass -> {
 			CompletionItem item = new CompletionItem();
-			item.setLabel(classInfo.getName());
-			item.setTextEdit(Either.forLeft(new TextEdit(importRange, classInfo.getName())));
-			item.setKind(classInfoToCompletionItemKind(classInfo));
-			if (classInfo.getSimpleName().startsWith(importText)) {
-				item.setSortText(classInfo.getSimpleName());
+			item.setLabel(classpathClass.getName());
+			item.setTextEdit(Either.forLeft(new TextEdit(importRange, classpathClass.getName())));
+			item.setKind(classpathClassToCompletionItemKind(classpathClass));
+			if (classpathClass.getSimpleName().startsWith(importText)) {
+				item.setSortText(classpathClass.getSimpleName());
 			}
 			return item;
 		}).collect(Collectors.toList());
@@ -452,12 +523,62 @@ public class CompletionProvider {
 		}).collect(Collectors.toList());
 		items.addAll(localClassItems);
 
-		if (classGraphScanResult == null) {
+		for (FileSummary summary : unindexedFileSummaries) {
+			List<SymbolInformation> symbols = summary.getSymbolIndex().getSymbols();
+			List<String> simpleNames = summary.getSymbolIndex().getHumpNames();
+			String contents = null;
+			for (int i = 0; i < symbols.size(); i++) {
+				SymbolInformation symbol = symbols.get(i);
+				CompletionItemKind kind = symbolKindToCompletionItemKind(symbol.getKind());
+				boolean isIncluded = (kind == CompletionItemKind.Class && includeClasses)
+						|| (kind == CompletionItemKind.Interface && includeInterfaces)
+						|| (kind == CompletionItemKind.Enum && includeEnums);
+				String className = symbol.getName();
+				String classNameWithoutPackage = simpleNames.get(i);
+				if (isIncomplete || !isIncluded || !classNameWithoutPackage.startsWith(namePrefix)
+						|| existingNames.contains(className)) {
+					continue;
+				}
+				if (existingNames.size() >= maxItemCount) {
+					isIncomplete = true;
+					break;
+				}
+				existingNames.add(className);
+				int packageLength = className.length() - classNameWithoutPackage.length() - 1;
+				String packageName = packageLength > 0 ? className.substring(0, packageLength) : null;
+				CompletionItem item = new CompletionItem();
+				item.setLabel(classNameWithoutPackage);
+				item.setKind(kind);
+				item.setDetail(packageName);
+				if (contents == null) {
+					contents = readContents.apply(summary.getURI());
+				}
+				String groovydoc = contents != null ? summary.getGroovydoc(i, contents) : null;
+				String markdownDocs = groovydoc != null ? GroovydocUtils.groovydocToMarkdownDescription(groovydoc)
+						: null;
+				if (markdownDocs != null) {
+					item.setDocumentation(new MarkupContent(MarkupKind.MARKDOWN, markdownDocs));
+				}
+				if (packageName != null && !packageName.equals(enclosingPackageName)
+						&& !importNames.contains(className)) {
+					List<TextEdit> additionalTextEdits = new ArrayList<>();
+					additionalTextEdits.add(createAddImportTextEdit(className, addImportRange));
+					item.setAdditionalTextEdits(additionalTextEdits);
+				}
+				items.add(item);
+			}
+		}
+
+		if (!isClasspathIndexReady) {
+			isMissingClasspathItems = true;
+		}
+		if (classpathIndex == null) {
 			return;
 		}
-		List<ClassInfo> classes = classGraphScanResult.getAllClasses();
+		List<ClasspathClass> classes = classpathIndex.getClassesWithSimpleNamePrefix(namePrefix);
 
-		List<CompletionItem> classItems = classes.stream().filter(classInfo -> {
+		List<CompletionItem> classItems = classes.stream().filter(classpathClass -> {
+			cancelChecker.checkCanceled();
 			if (isIncomplete) {
 				return false;
 			}
@@ -465,20 +586,20 @@ public class CompletionProvider {
 				isIncomplete = true;
 				return false;
 			}
-			String className = classInfo.getName();
-			String classNameWithoutPackage = classInfo.getSimpleName();
+			String className = classpathClass.getName();
+			String classNameWithoutPackage = classpathClass.getSimpleName();
 			if (classNameWithoutPackage.startsWith(namePrefix) && !existingNames.contains(className)) {
 				existingNames.add(className);
 				return true;
 			}
 			return false;
-		}).map(classInfo -> {
-			String className = classInfo.getName();
-			String packageName = classInfo.getPackageName();
+		}).map(classpathClass -> {
+			String className = classpathClass.getName();
+			String packageName = classpathClass.getPackageName();
 			CompletionItem item = new CompletionItem();
-			item.setLabel(classInfo.getSimpleName());
+			item.setLabel(classpathClass.getSimpleName());
 			item.setDetail(packageName);
-			item.setKind(classInfoToCompletionItemKind(classInfo));
+			item.setKind(classpathClassToCompletionItemKind(classpathClass));
 			if (packageName != null && !packageName.equals(enclosingPackageName) && !importNames.contains(className)) {
 				List<TextEdit> additionalTextEdits = new ArrayList<>();
 				TextEdit addImportEdit = createAddImportTextEdit(className, addImportRange);
@@ -501,11 +622,24 @@ public class CompletionProvider {
 		return "";
 	}
 
-	private CompletionItemKind classInfoToCompletionItemKind(ClassInfo classInfo) {
-		if (classInfo.isInterface()) {
+	private CompletionItemKind symbolKindToCompletionItemKind(SymbolKind symbolKind) {
+		if (symbolKind == SymbolKind.Class) {
+			return CompletionItemKind.Class;
+		}
+		if (symbolKind == SymbolKind.Interface) {
+			return CompletionItemKind.Interface;
+		}
+		if (symbolKind == SymbolKind.Enum) {
+			return CompletionItemKind.Enum;
+		}
+		return null;
+	}
+
+	private CompletionItemKind classpathClassToCompletionItemKind(ClasspathClass classpathClass) {
+		if (classpathClass.isInterface()) {
 			return CompletionItemKind.Interface;
 		}
-		if (classInfo.isEnum()) {
+		if (classpathClass.isEnum()) {
 			return CompletionItemKind.Enum;
 		}
 		return CompletionItemKind.Class;
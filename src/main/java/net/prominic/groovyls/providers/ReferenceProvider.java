@@ -20,29 +20,50 @@
 package net.prominic.groovyls.providers;
 
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
-import java.util.stream.Collectors;
 
 import org.codehaus.groovy.ast.ASTNode;
 import org.eclipse.lsp4j.Location;
 import org.eclipse.lsp4j.Position;
 import org.eclipse.lsp4j.TextDocumentIdentifier;
+import org.eclipse.lsp4j.jsonrpc.CancelChecker;
 
 import net.prominic.groovyls.compiler.ast.ASTNodeVisitor;
 import net.prominic.groovyls.compiler.util.GroovyASTUtils;
 import net.prominic.groovyls.util.GroovyLanguageServerUtils;
+import net.prominic.groovyls.util.ProgressReporter;
 
 public class ReferenceProvider {
 	private ASTNodeVisitor ast;
+	private CancelChecker cancelChecker;
 
 	public ReferenceProvider(ASTNodeVisitor ast) {
+		this(ast, () -> {
+		});
+	}
+
+	public ReferenceProvider(ASTNodeVisitor ast, CancelChecker cancelChecker) {
 		this.ast = ast;
+		this.cancelChecker = cancelChecker;
 	}
 
 	public CompletableFuture<List<? extends Location>> provideReferences(TextDocumentIdentifier textDocument,
 			Position position) {
+		return provideReferences(textDocument, position, new ProgressReporter(null, null, null));
+	}
+
+	/**
+	 * Finds references and groups them by file. If the client supports partial
+	 * results, each file's references are sent as a batch, and the returned
+	 * list is empty.
+	 */
+	public CompletableFuture<List<? extends Location>> provideReferences(TextDocumentIdentifier textDocument,
+			Position position, ProgressReporter progress) {
 		if (ast == null) {
 			// this shouldn't happen, but let's avoid an exception if something
 			// goes terribly wrong.
@@ -54,12 +75,35 @@ public class ReferenceProvider {
 			return CompletableFuture.completedFuture(Collections.emptyList());
 		}
 
-		List<ASTNode> references = GroovyASTUtils.getReferences(offsetNode, ast);
-		List<Location> locations = references.stream().map(node -> {
-			URI uri = ast.getURI(node);
-			return GroovyLanguageServerUtils.astNodeToLocation(node, uri);
-		}).filter(location -> location != null).collect(Collectors.toList());
+		progress.begin("Finding references");
+		try {
+			List<ASTNode> references = GroovyASTUtils.getReferences(offsetNode, ast);
+			// references are already in file order, so each file is one group
+			Map<URI, List<Location>> locationsByURI = new LinkedHashMap<>();
+			for (ASTNode node : references) {
+				cancelChecker.checkCanceled();
+				URI uri = ast.getURI(node);
+				Location location = GroovyLanguageServerUtils.astNodeToLocation(node, uri);
+				if (location != null) {
+					locationsByURI.computeIfAbsent(uri, key -> new ArrayList<>()).add(location);
+				}
+			}
 
-		return CompletableFuture.completedFuture(locations);
+			List<Location> locations = new ArrayList<>();
+			int completed = 0;
+			for (List<Location> fileLocations : locationsByURI.values()) {
+				cancelChecker.checkCanceled();
+				if (progress.isPartialResultSupported()) {
+					progress.sendPartialResult(fileLocations);
+				} else {
+					locations.addAll(fileLocations);
+				}
+				completed++;
+				progress.report(completed, locationsByURI.size());
+			}
+			return CompletableFuture.completedFuture(locations);
+		} finally {
+			progress.end();
+		}
 	}
-}
\ No newline at end of file
+}
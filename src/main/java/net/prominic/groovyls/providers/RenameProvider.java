@@ -50,11 +50,14 @@ import net.prominic.groovyls.compiler.ast.ASTNodeVisitor;
 import net.prominic.groovyls.compiler.util.GroovyASTUtils;
 import net.prominic.groovyls.util.FileContentsTracker;
 import net.prominic.groovyls.util.GroovyLanguageServerUtils;
+import net.prominic.lsp.utils.LineIndex;
 import net.prominic.lsp.utils.Ranges;
 
 public class RenameProvider {
 	private ASTNodeVisitor ast;
 	private FileContentsTracker files;
+	private Map<URI, String> contentsByURI = new HashMap<>();
+	private Map<URI, LineIndex> lineIndexesByURI = new HashMap<>();
 
 	public RenameProvider(ASTNodeVisitor ast, FileContentsTracker files) {
 		this.ast = ast;
@@ -156,11 +159,15 @@ public class RenameProvider {
 		if (range == null) {
 			return null;
 		}
-		String contents = files.getContents(uri);
+		// closed files are read from disk, so don't read them again for every
+		// reference that they contain
+		String contents = contentsByURI.computeIfAbsent(uri, key -> files.getContents(key));
 		if (contents == null) {
 			return null;
 		}
-		return Ranges.getSubstring(contents, range, 1);
+		LineIndex lineIndex = lineIndexesByURI.computeIfAbsent(uri,
+				key -> files.isOpen(key) ? files.getLineIndex(key) : new LineIndex(contents));
+		return Ranges.getSubstring(contents, lineIndex, range, 1);
 	}
 
 	private TextEdit createTextEditToRenameClassNode(ClassNode classNode, String newName, String text, Range range) {
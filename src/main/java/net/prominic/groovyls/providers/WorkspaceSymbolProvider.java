@@ -19,79 +19,98 @@
 ////////////////////////////////////////////////////////////////////////////////
 package net.prominic.groovyls.providers;
 
-import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
-import org.codehaus.groovy.ast.ASTNode;
-import org.codehaus.groovy.ast.ClassNode;
-import org.codehaus.groovy.ast.FieldNode;
-import org.codehaus.groovy.ast.MethodNode;
-import org.codehaus.groovy.ast.PropertyNode;
 import org.eclipse.lsp4j.SymbolInformation;
+import org.eclipse.lsp4j.jsonrpc.CancelChecker;
 
 import net.prominic.groovyls.compiler.ast.ASTNodeVisitor;
-import net.prominic.groovyls.compiler.util.GroovyASTUtils;
-import net.prominic.groovyls.util.GroovyLanguageServerUtils;
+import net.prominic.groovyls.compiler.ast.FileSummary;
+import net.prominic.groovyls.compiler.ast.SymbolIndex;
+import net.prominic.groovyls.util.ProgressReporter;
 
 public class WorkspaceSymbolProvider {
 	private ASTNodeVisitor ast;
+	private Collection<FileSummary> summaries;
+	private CancelChecker cancelChecker;
 
 	public WorkspaceSymbolProvider(ASTNodeVisitor ast) {
+		this(ast, () -> {
+		});
+	}
+
+	public WorkspaceSymbolProvider(ASTNodeVisitor ast, CancelChecker cancelChecker) {
+		this(ast, Collections.emptyList(), cancelChecker);
+	}
+
+	/**
+	 * Searches the file summaries saved in a previous session too, for the
+	 * files that are not in the AST. The AST may be null.
+	 */
+	public WorkspaceSymbolProvider(ASTNodeVisitor ast, Collection<FileSummary> summaries,
+			CancelChecker cancelChecker) {
 		this.ast = ast;
+		this.summaries = summaries;
+		this.cancelChecker = cancelChecker;
 	}
 
 	public CompletableFuture<List<? extends SymbolInformation>> provideWorkspaceSymbols(String query) {
-		if (ast == null) {
+		return provideWorkspaceSymbols(query, new ProgressReporter(null, null, null));
+	}
+
+	/**
+	 * Searches for workspace symbols file by file. If the client supports
+	 * partial results, each file's symbols are sent as a batch, and they are
+	 * ranked within that file only. The returned list is empty, in that case.
+	 */
+	public CompletableFuture<List<? extends SymbolInformation>> provideWorkspaceSymbols(String query,
+			ProgressReporter progress) {
+		if (ast == null && summaries.isEmpty()) {
 			// this shouldn't happen, but let's avoid an exception if something
 			// goes terribly wrong.
 			return CompletableFuture.completedFuture(Collections.emptyList());
 		}
 		String lowerCaseQuery = query.toLowerCase();
-		List<ASTNode> nodes = ast.getNodes();
-		List<SymbolInformation> symbols = nodes.stream().filter(node -> {
-			String name = null;
-			if (node instanceof ClassNode) {
-				ClassNode classNode = (ClassNode) node;
-				name = classNode.getName();
-			} else if (node instanceof MethodNode) {
-				MethodNode methodNode = (MethodNode) node;
-				name = methodNode.getName();
-			} else if (node instanceof FieldNode) {
-				FieldNode fieldNode = (FieldNode) node;
-				name = fieldNode.getName();
-			} else if (node instanceof PropertyNode) {
-				PropertyNode propNode = (PropertyNode) node;
-				name = propNode.getName();
+		List<SymbolIndex.Match> matches = new ArrayList<>();
+		int total = (ast != null ? ast.getFileCount() : 0) + summaries.size();
+		int[] completed = new int[1];
+		Consumer<List<SymbolIndex.Match>> fileResult = fileMatches -> {
+			cancelChecker.checkCanceled();
+			if (progress.isPartialResultSupported()) {
+				progress.sendPartialResult(toSymbols(fileMatches));
+			} else {
+				matches.addAll(fileMatches);
 			}
-			if (name == null) {
-				return false;
+			completed[0]++;
+			progress.report(completed[0], total);
+		};
+		progress.begin("Searching workspace symbols");
+		try {
+			if (ast != null) {
+				ast.searchSymbolsByFile(lowerCaseQuery, fileResult);
 			}
-			return name.toLowerCase().contains(lowerCaseQuery);
-		}).map(node -> {
-			URI uri = ast.getURI(node);
-			if (node instanceof ClassNode) {
-				ClassNode classNode = (ClassNode) node;
-				return GroovyLanguageServerUtils.astNodeToSymbolInformation(classNode, uri, null);
+			for (FileSummary summary : summaries) {
+				List<SymbolIndex.Match> fileMatches = new ArrayList<>();
+				summary.getSymbolIndex().search(lowerCaseQuery, fileMatches);
+				fileResult.accept(fileMatches);
 			}
-			ClassNode classNode = (ClassNode) GroovyASTUtils.getEnclosingNodeOfType(node, ClassNode.class, ast);
-			if (node instanceof MethodNode) {
-				MethodNode methodNode = (MethodNode) node;
-				return GroovyLanguageServerUtils.astNodeToSymbolInformation(methodNode, uri, classNode.getName());
-			}
-			if (node instanceof PropertyNode) {
-				PropertyNode propNode = (PropertyNode) node;
-				return GroovyLanguageServerUtils.astNodeToSymbolInformation(propNode, uri, classNode.getName());
-			}
-			if (node instanceof FieldNode) {
-				FieldNode fieldNode = (FieldNode) node;
-				return GroovyLanguageServerUtils.astNodeToSymbolInformation(fieldNode, uri, classNode.getName());
-			}
-			// this should never happen
-			return null;
-		}).filter(symbolInformation -> symbolInformation != null).collect(Collectors.toList());
-		return CompletableFuture.completedFuture(symbols);
+		} finally {
+			progress.end();
+		}
+		return CompletableFuture.completedFuture(toSymbols(matches));
+	}
+
+	private List<SymbolInformation> toSymbols(List<SymbolIndex.Match> matches) {
+		// the sort is stable, so equally ranked symbols stay in the same order
+		matches.sort(Comparator.comparingInt(SymbolIndex.Match::getRank)
+				.thenComparingInt(match -> match.getSymbol().getName().length()));
+		return matches.stream().map(SymbolIndex.Match::getSymbol).collect(Collectors.toList());
 	}
-}
\ No newline at end of file
+}
@@ -32,68 +32,118 @@ import java.util.Set;
 import org.eclipse.lsp4j.DidChangeTextDocumentParams;
 import org.eclipse.lsp4j.DidCloseTextDocumentParams;
 import org.eclipse.lsp4j.DidOpenTextDocumentParams;
+import org.eclipse.lsp4j.Position;
 import org.eclipse.lsp4j.Range;
 import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
 
-import net.prominic.lsp.utils.Positions;
+import net.prominic.lsp.utils.LineIndex;
 
 public class FileContentsTracker {
+	/**
+	 * Notified of each change to an open file while it's applied, so that
+	 * the listener may check only the text that was replaced.
+	 */
+	public interface ChangeListener {
+		/**
+		 * @param version the version of the file after this change
+		 * @param start   the offset where the replaced text starts
+		 * @param end     the offset where the replaced text ends, before the
+		 *                change
+		 */
+		void didReplace(URI uri, int version, int start, int end, String newText);
+	}
 
-	private Map<URI, String> openFiles = new HashMap<>();
+	private Map<URI, PieceTable> openFiles = new HashMap<>();
+	private Map<URI, LineIndex> lineIndexes = new HashMap<>();
+	private Map<URI, Integer> versions = new HashMap<>();
 	private Set<URI> changedFiles = new HashSet<>();
+	private ChangeListener changeListener = null;
+
+	public synchronized void setChangeListener(ChangeListener changeListener) {
+		this.changeListener = changeListener;
+	}
 
-	public Set<URI> getOpenURIs() {
-		return openFiles.keySet();
+	// copies, because the files change on other threads while they're used
+	public synchronized Set<URI> getOpenURIs() {
+		return new HashSet<>(openFiles.keySet());
 	}
 
-	public Set<URI> getChangedURIs() {
-		return changedFiles;
+	public synchronized Set<URI> getChangedURIs() {
+		return new HashSet<>(changedFiles);
 	}
 
-	public void resetChangedFiles() {
+	public synchronized void resetChangedFiles() {
 		changedFiles = new HashSet<>();
 	}
 
-	public void forceChanged(URI uri) {
+	public synchronized void forceChanged(URI uri) {
 		changedFiles.add(uri);
 	}
 
-	public boolean isOpen(URI uri) {
+	public synchronized boolean isOpen(URI uri) {
 		return openFiles.containsKey(uri);
 	}
 
-	public void didOpen(DidOpenTextDocumentParams params) {
+	/**
+	 * Returns the version of an open file, which is incremented by each
+	 * change, or -1 if the file isn't open.
+	 */
+	public synchronized int getVersion(URI uri) {
+		Integer version = versions.get(uri);
+		return version != null ? version : -1;
+	}
+
+	public synchronized void didOpen(DidOpenTextDocumentParams params) {
 		URI uri = URI.create(params.getTextDocument().getUri());
-		openFiles.put(uri, params.getTextDocument().getText());
+		openFiles.put(uri, new PieceTable(params.getTextDocument().getText()));
+		lineIndexes.remove(uri);
+		versions.put(uri, 0);
 		changedFiles.add(uri);
 	}
 
-	public void didChange(DidChangeTextDocumentParams params) {
+	public synchronized void didChange(DidChangeTextDocumentParams params) {
 		URI uri = URI.create(params.getTextDocument().getUri());
-		String oldText = openFiles.get(uri);
-		TextDocumentContentChangeEvent change = params.getContentChanges().get(0);
-		Range range = change.getRange();
-		if (range == null) {
-			openFiles.put(uri, change.getText());
-		} else {
-			int offsetStart = Positions.getOffset(oldText, change.getRange().getStart());
-			int offsetEnd = Positions.getOffset(oldText, change.getRange().getEnd());
-			StringBuilder builder = new StringBuilder();
-			builder.append(oldText.substring(0, offsetStart));
-			builder.append(change.getText());
-			builder.append(oldText.substring(offsetEnd));
-			openFiles.put(uri, builder.toString());
+		PieceTable document = openFiles.get(uri);
+		// the changes must be applied in order because the range of each one
+		// refers to the text produced by the previous one
+		for (TextDocumentContentChangeEvent change : params.getContentChanges()) {
+			Range range = change.getRange();
+			int start = 0;
+			int end = document != null ? document.getLength() : 0;
+			if (range == null || document == null) {
+				document = new PieceTable(change.getText());
+				openFiles.put(uri, document);
+			} else {
+				int rangeStart = getOffset(document, range.getStart());
+				int rangeEnd = getOffset(document, range.getEnd());
+				start = Math.min(rangeStart, rangeEnd);
+				end = Math.max(rangeStart, rangeEnd);
+				document.replace(start, end, change.getText());
+			}
+			int version = versions.merge(uri, 1, Integer::sum);
+			if (changeListener != null) {
+				changeListener.didReplace(uri, version, start, end, change.getText());
+			}
 		}
+		lineIndexes.remove(uri);
 		changedFiles.add(uri);
 	}
 
-	public void didClose(DidCloseTextDocumentParams params) {
+	private static int getOffset(PieceTable document, Position position) {
+		int offset = document.getOffset(position);
+		// a line past the end of the document is its end
+		return offset != -1 ? offset : document.getLength();
+	}
+
+	public synchronized void didClose(DidCloseTextDocumentParams params) {
 		URI uri = URI.create(params.getTextDocument().getUri());
 		openFiles.remove(uri);
+		lineIndexes.remove(uri);
+		versions.remove(uri);
 		changedFiles.add(uri);
 	}
 
-	public String getContents(URI uri) {
+	public synchronized String getContents(URI uri) {
 		if (!openFiles.containsKey(uri)) {
 			BufferedReader reader = null;
 			try {
@@ -115,10 +165,52 @@ public class FileContentsTracker {
 				}
 			}
 		}
-		return openFiles.get(uri);
+		return openFiles.get(uri).toString();
 	}
 
-	public void setContents(URI uri, String contents) {
-		openFiles.put(uri, contents);
+	/**
+	 * Converts a position to an offset in the current contents of a file.
+	 * For open files, the contents don't need to be materialized. Returns -1
+	 * if the file can't be read, or if the line doesn't exist.
+	 */
+	public synchronized int getOffset(URI uri, Position position) {
+		PieceTable document = openFiles.get(uri);
+		if (document != null) {
+			return document.getOffset(position);
+		}
+		LineIndex lineIndex = getLineIndex(uri);
+		return lineIndex != null ? lineIndex.getOffset(position) : -1;
+	}
+
+	/**
+	 * Returns the line index for the current contents of a file. For open
+	 * files, the index is built once per version and reused until the next
+	 * change.
+	 */
+	public synchronized LineIndex getLineIndex(URI uri) {
+		LineIndex lineIndex = lineIndexes.get(uri);
+		if (lineIndex != null) {
+			return lineIndex;
+		}
+		String contents = getContents(uri);
+		if (contents == null) {
+			return null;
+		}
+		lineIndex = new LineIndex(contents);
+		if (openFiles.containsKey(uri)) {
+			lineIndexes.put(uri, lineIndex);
+		}
+		return lineIndex;
+	}
+
+	public synchronized void setContents(URI uri, String contents) {
+		PieceTable document = openFiles.get(uri);
+		int end = document != null ? document.getLength() : 0;
+		openFiles.put(uri, new PieceTable(contents));
+		lineIndexes.remove(uri);
+		int version = versions.merge(uri, 1, Integer::sum);
+		if (changeListener != null) {
+			changeListener.didReplace(uri, version, 0, end, contents);
+		}
 	}
 }
\ No newline at end of file
@@ -0,0 +1,267 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+
+/**
+ * A text document stored as a piece table. Edits only append to the add
+ * buffer and split the affected pieces, so applying a change never copies the
+ * whole document. The positions of line breaks in both buffers are recorded
+ * as they are written, so positions may be converted to offsets without
+ * scanning the text. The full text is materialized on demand and cached until
+ * the next edit.
+ */
+public class PieceTable {
+	private static final int MAX_PIECES = 2048;
+
+	private class Piece {
+		public Piece(boolean added, int start, int length) {
+			this.added = added;
+			this.start = start;
+			this.length = length;
+		}
+
+		private boolean added;
+		private int start;
+		private int length;
+
+		private int getLineBreakCount() {
+			return lineBreaksBefore(added, start + length) - lineBreaksBefore(added, start);
+		}
+
+		/**
+		 * Returns the offset, relative to the start of this piece, that follows
+		 * the n-th line break in this piece.
+		 */
+		private int getOffsetAfterLineBreak(int n) {
+			int index = lineBreaksBefore(added, start) + n - 1;
+			int lineBreak = added ? addBreaks[index] : originalBreaks[index];
+			return lineBreak + 1 - start;
+		}
+	}
+
+	private String original;
+	private int[] originalBreaks;
+	private StringBuilder addBuffer;
+	private int[] addBreaks;
+	private int addBreaksCount;
+	private List<Piece> pieces;
+	private int length;
+	private String text;
+
+	public PieceTable(String text) {
+		reset(text);
+	}
+
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * Converts an LSP position to an offset in the current text.
+	 *
+	 * Returns -1 if the line does not exist.
+	 */
+	public int getOffset(Position position) {
+		int line = position.getLine();
+		int offset = 0;
+		if (line > 0) {
+			int readLines = 0;
+			boolean found = false;
+			for (Piece piece : pieces) {
+				int lineBreaks = piece.getLineBreakCount();
+				if (readLines + lineBreaks < line) {
+					readLines += lineBreaks;
+					offset += piece.length;
+					continue;
+				}
+				offset += piece.getOffsetAfterLineBreak(line - readLines);
+				found = true;
+				break;
+			}
+			if (!found) {
+				return -1;
+			}
+		}
+		return Math.min(offset + position.getCharacter(), length);
+	}
+
+	public void replace(Range range, String newText) {
+		int start = getOffset(range.getStart());
+		int end = getOffset(range.getEnd());
+		if (start == -1) {
+			start = length;
+		}
+		if (end == -1) {
+			end = length;
+		}
+		replace(start, end, newText);
+	}
+
+	public void replace(int start, int end, String newText) {
+		if (start > end) {
+			int temp = start;
+			start = end;
+			end = temp;
+		}
+		text = null;
+		delete(start, end);
+		insert(start, newText);
+		length += newText.length() - (end - start);
+		if (pieces.size() > MAX_PIECES) {
+			reset(toString());
+		}
+	}
+
+	@Override
+	public String toString() {
+		if (text == null) {
+			StringBuilder builder = new StringBuilder(length);
+			for (Piece piece : pieces) {
+				if (piece.added) {
+					builder.append(addBuffer, piece.start, piece.start + piece.length);
+				} else {
+					builder.append(original, piece.start, piece.start + piece.length);
+				}
+			}
+			text = builder.toString();
+		}
+		return text;
+	}
+
+	private void reset(String newText) {
+		original = newText;
+		int count = 0;
+		int[] breaks = new int[16];
+		for (int i = 0; i < newText.length(); i++) {
+			if (newText.charAt(i) == '\n') {
+				if (count == breaks.length) {
+					breaks = Arrays.copyOf(breaks, count * 2);
+				}
+				breaks[count++] = i;
+			}
+		}
+		originalBreaks = Arrays.copyOf(breaks, count);
+		addBuffer = new StringBuilder();
+		addBreaks = new int[16];
+		addBreaksCount = 0;
+		pieces = new ArrayList<>();
+		if (newText.length() > 0) {
+			pieces.add(new Piece(false, 0, newText.length()));
+		}
+		length = newText.length();
+		text = newText;
+	}
+
+	private void delete(int start, int end) {
+		if (start == end) {
+			return;
+		}
+		List<Piece> result = new ArrayList<>(pieces.size() + 1);
+		int pieceStart = 0;
+		for (Piece piece : pieces) {
+			int pieceEnd = pieceStart + piece.length;
+			if (pieceEnd <= start || pieceStart >= end) {
+				result.add(piece);
+			} else {
+				if (pieceStart < start) {
+					result.add(new Piece(piece.added, piece.start, start - pieceStart));
+				}
+				if (pieceEnd > end) {
+					int skip = end - pieceStart;
+					result.add(new Piece(piece.added, piece.start + skip, pieceEnd - end));
+				}
+			}
+			pieceStart = pieceEnd;
+		}
+		pieces = result;
+	}
+
+	private void insert(int offset, String newText) {
+		if (newText.length() == 0) {
+			return;
+		}
+		int addStart = appendToAddBuffer(newText);
+		int pieceStart = 0;
+		for (int i = 0; i < pieces.size(); i++) {
+			Piece piece = pieces.get(i);
+			int pieceEnd = pieceStart + piece.length;
+			if (offset == pieceEnd && piece.added && piece.start + piece.length == addStart) {
+				// typing usually continues where the previous edit ended, so
+				// grow the previous piece instead of creating a new one
+				piece.length += newText.length();
+				return;
+			}
+			if (offset < pieceEnd) {
+				Piece newPiece = new Piece(true, addStart, newText.length());
+				if (offset == pieceStart) {
+					pieces.add(i, newPiece);
+				} else {
+					int split = offset - pieceStart;
+					pieces.set(i, new Piece(piece.added, piece.start, split));
+					pieces.add(i + 1, newPiece);
+					pieces.add(i + 2, new Piece(piece.added, piece.start + split, piece.length - split));
+				}
+				return;
+			}
+			pieceStart = pieceEnd;
+		}
+		pieces.add(new Piece(true, addStart, newText.length()));
+	}
+
+	private int appendToAddBuffer(String newText) {
+		int addStart = addBuffer.length();
+		for (int i = 0; i < newText.length(); i++) {
+			if (newText.charAt(i) == '\n') {
+				if (addBreaksCount == addBreaks.length) {
+					addBreaks = Arrays.copyOf(addBreaks, addBreaksCount * 2);
+				}
+				addBreaks[addBreaksCount++] = addStart + i;
+			}
+		}
+		addBuffer.append(newText);
+		return addStart;
+	}
+
+	/**
+	 * Returns the number of line breaks in a buffer that appear before the
+	 * specified offset.
+	 */
+	private int lineBreaksBefore(boolean added, int offset) {
+		int[] breaks = added ? addBreaks : originalBreaks;
+		int low = 0;
+		int high = added ? addBreaksCount : originalBreaks.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (breaks[mid] < offset) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+}
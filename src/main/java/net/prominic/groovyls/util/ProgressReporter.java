@@ -0,0 +1,94 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.util;
+
+import java.util.List;
+
+import org.eclipse.lsp4j.ProgressParams;
+import org.eclipse.lsp4j.WorkDoneProgressBegin;
+import org.eclipse.lsp4j.WorkDoneProgressEnd;
+import org.eclipse.lsp4j.WorkDoneProgressNotification;
+import org.eclipse.lsp4j.WorkDoneProgressReport;
+import org.eclipse.lsp4j.jsonrpc.messages.Either;
+import org.eclipse.lsp4j.services.LanguageClient;
+
+/**
+ * Sends work done progress and partial results for a request, if the client
+ * provided tokens for them. Otherwise, does nothing.
+ */
+public class ProgressReporter {
+	private LanguageClient client;
+	private Either<String, Integer> workDoneToken;
+	private Either<String, Integer> partialResultToken;
+	private int lastPercentage = -1;
+
+	public ProgressReporter(LanguageClient client, Either<String, Integer> workDoneToken,
+			Either<String, Integer> partialResultToken) {
+		this.client = client;
+		this.workDoneToken = workDoneToken;
+		this.partialResultToken = partialResultToken;
+	}
+
+	/**
+	 * If true, the results must be sent with sendPartialResult(), and the
+	 * final response must be empty.
+	 */
+	public boolean isPartialResultSupported() {
+		return client != null && partialResultToken != null;
+	}
+
+	public void sendPartialResult(List<?> items) {
+		if (!isPartialResultSupported() || items.isEmpty()) {
+			return;
+		}
+		client.notifyProgress(new ProgressParams(partialResultToken, Either.forRight(items)));
+	}
+
+	public void begin(String title) {
+		WorkDoneProgressBegin begin = new WorkDoneProgressBegin();
+		begin.setTitle(title);
+		begin.setPercentage(0);
+		notifyWorkDone(begin);
+	}
+
+	public void report(int completed, int total) {
+		int percentage = total > 0 ? completed * 100 / total : 100;
+		if (percentage == lastPercentage) {
+			// avoid flooding the client with identical notifications
+			return;
+		}
+		lastPercentage = percentage;
+		WorkDoneProgressReport report = new WorkDoneProgressReport();
+		report.setPercentage(percentage);
+		report.setMessage(completed + "/" + total + " files");
+		notifyWorkDone(report);
+	}
+
+	public void end() {
+		notifyWorkDone(new WorkDoneProgressEnd());
+	}
+
+	private void notifyWorkDone(WorkDoneProgressNotification notification) {
+		if (client == null || workDoneToken == null) {
+			return;
+		}
+		client.notifyProgress(new ProgressParams(workDoneToken, Either.forLeft(notification)));
+	}
+}
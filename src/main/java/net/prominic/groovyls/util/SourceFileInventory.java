@@ -0,0 +1,179 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.util;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * The .groovy files in a workspace, with their modification times. The
+ * directory tree is walked only when the inventory is rescanned, and
+ * otherwise it is updated from the file changes that the client reports.
+ */
+public class SourceFileInventory {
+	private static final String FILE_EXTENSION_GROOVY = ".groovy";
+
+	private Path root;
+	private Path normalizedRoot;
+	private Map<URI, Long> lastModifiedByURI = new LinkedHashMap<>();
+
+	public SourceFileInventory(Path root) {
+		this.root = root;
+		normalizedRoot = root.normalize();
+	}
+
+	public Path getRoot() {
+		return root;
+	}
+
+	public synchronized Set<URI> getURIs() {
+		return new LinkedHashSet<>(lastModifiedByURI.keySet());
+	}
+
+	public synchronized boolean contains(URI uri) {
+		return lastModifiedByURI.containsKey(uri);
+	}
+
+	/**
+	 * Returns the modification time of a file when it was last scanned or
+	 * updated, or -1 if it's not in the inventory.
+	 */
+	public synchronized long getLastModified(URI uri) {
+		Long lastModified = lastModifiedByURI.get(uri);
+		if (lastModified == null) {
+			return -1;
+		}
+		return lastModified;
+	}
+
+	/**
+	 * Walks the whole directory tree again, and returns the files that were
+	 * added, modified or deleted since the previous scan.
+	 */
+	public synchronized Set<URI> rescan() {
+		Map<URI, Long> newFiles = walk(root);
+		Set<URI> result = new LinkedHashSet<>();
+		for (Map.Entry<URI, Long> entry : newFiles.entrySet()) {
+			if (!entry.getValue().equals(lastModifiedByURI.get(entry.getKey()))) {
+				result.add(entry.getKey());
+			}
+		}
+		for (URI uri : lastModifiedByURI.keySet()) {
+			if (!newFiles.containsKey(uri)) {
+				result.add(uri);
+			}
+		}
+		lastModifiedByURI = newFiles;
+		return result;
+	}
+
+	/**
+	 * Updates the inventory for files or directories that the client reported
+	 * as created, changed or deleted, and returns the files that were added,
+	 * modified or deleted. Only a directory that was created is walked.
+	 */
+	public synchronized Set<URI> update(Set<URI> uris) {
+		Set<URI> result = new LinkedHashSet<>();
+		for (URI uri : uris) {
+			Path path = toWorkspacePath(uri);
+			if (path == null) {
+				continue;
+			}
+			if (Files.isDirectory(path)) {
+				walk(path).forEach((fileURI, lastModified) -> {
+					lastModifiedByURI.put(fileURI, lastModified);
+					result.add(fileURI);
+				});
+			} else if (Files.isRegularFile(path)) {
+				if (path.toString().endsWith(FILE_EXTENSION_GROOVY)) {
+					URI fileURI = path.toUri();
+					lastModifiedByURI.put(fileURI, getLastModified(path));
+					result.add(fileURI);
+				}
+			} else {
+				// a deleted directory is reported once, without its files
+				List<URI> urisToRemove = new ArrayList<>();
+				for (URI fileURI : lastModifiedByURI.keySet()) {
+					if (Paths.get(fileURI).startsWith(path)) {
+						urisToRemove.add(fileURI);
+					}
+				}
+				urisToRemove.forEach(lastModifiedByURI::remove);
+				result.addAll(urisToRemove);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * The client may report a path in a different form than the workspace
+	 * root, such as without "." segments. Files are always stored relative
+	 * to the root as it was specified, so that their URIs match the ones
+	 * that were found by walking the directory tree.
+	 */
+	private Path toWorkspacePath(URI uri) {
+		if (!"file".equals(uri.getScheme())) {
+			return null;
+		}
+		Path path = Paths.get(uri).normalize();
+		if (!path.startsWith(normalizedRoot)) {
+			return null;
+		}
+		return root.resolve(normalizedRoot.relativize(path));
+	}
+
+	private static Map<URI, Long> walk(Path directory) {
+		Map<URI, Long> result = new LinkedHashMap<>();
+		if (!Files.exists(directory)) {
+			return result;
+		}
+		try (Stream<Path> paths = Files.walk(directory)) {
+			paths.forEach(filePath -> {
+				if (!filePath.toString().endsWith(FILE_EXTENSION_GROOVY)) {
+					return;
+				}
+				if (Files.isRegularFile(filePath)) {
+					result.put(filePath.toUri(), getLastModified(filePath));
+				}
+			});
+		} catch (IOException e) {
+			System.err.println("Failed to walk directory for source files: " + directory);
+		}
+		return result;
+	}
+
+	private static long getLastModified(Path filePath) {
+		try {
+			return Files.getLastModifiedTime(filePath).toMillis();
+		} catch (IOException e) {
+			return 0;
+		}
+	}
+}
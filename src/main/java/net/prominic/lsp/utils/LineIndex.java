@@ -0,0 +1,97 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.lsp.utils;
+
+import java.util.Arrays;
+
+import org.eclipse.lsp4j.Position;
+
+/**
+ * The offset where each line of a document starts. Offsets and characters are
+ * UTF-16 code units, like LSP positions and Java strings.
+ */
+public class LineIndex {
+	private int[] lineStarts;
+	private int length;
+
+	public LineIndex(String text) {
+		int count = 1;
+		int[] starts = new int[64];
+		for (int i = 0; i < text.length(); i++) {
+			if (text.charAt(i) == '\n') {
+				if (count == starts.length) {
+					starts = Arrays.copyOf(starts, count * 2);
+				}
+				starts[count++] = i + 1;
+			}
+		}
+		lineStarts = Arrays.copyOf(starts, count);
+		length = text.length();
+	}
+
+	public int getLength() {
+		return length;
+	}
+
+	public int getLineCount() {
+		return lineStarts.length;
+	}
+
+	/**
+	 * Returns the offset of the first character on a line, or -1 if the line
+	 * does not exist.
+	 */
+	public int getLineStart(int line) {
+		if (line < 0 || line >= lineStarts.length) {
+			return -1;
+		}
+		return lineStarts[line];
+	}
+
+	/**
+	 * Converts an LSP position to an offset. Characters past the end of the
+	 * line continue onto the following lines, but the result never exceeds the
+	 * length of the document.
+	 *
+	 * Returns -1 if the line does not exist.
+	 */
+	public int getOffset(Position position) {
+		int lineStart = getLineStart(position.getLine());
+		if (lineStart == -1) {
+			return -1;
+		}
+		return Math.min(lineStart + position.getCharacter(), length);
+	}
+
+	public Position getPosition(int offset) {
+		offset = Math.max(0, Math.min(offset, length));
+		int low = 0;
+		int high = lineStarts.length - 1;
+		while (low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if (lineStarts[mid] <= offset) {
+				low = mid;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return new Position(low, offset - lineStarts[low]);
+	}
+}
@@ -19,9 +19,6 @@
 ////////////////////////////////////////////////////////////////////////////////
 package net.prominic.lsp.utils;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.StringReader;
 import java.util.Comparator;
 
 import org.eclipse.lsp4j.Position;
@@ -37,36 +34,4 @@ public class Positions {
 	public static boolean valid(Position p) {
 		return p.getLine() >= 0 || p.getCharacter() >= 0;
 	}
-
-	public static int getOffset(String string, Position position) {
-		int line = position.getLine();
-		int character = position.getCharacter();
-		int currentIndex = 0;
-		if (line > 0) {
-			BufferedReader reader = new BufferedReader(new StringReader(string));
-			try {
-				int readLines = 0;
-				while (true) {
-					char currentChar = (char) reader.read();
-					if (currentChar == -1) {
-						return -1;
-					}
-					currentIndex++;
-					if (currentChar == '\n') {
-						readLines++;
-						if (readLines == line) {
-							break;
-						}
-					}
-				}
-			} catch (IOException e) {
-				return -1;
-			}
-			try {
-				reader.close();
-			} catch (IOException e) {
-			}
-		}
-		return currentIndex + character;
-	}
 }
\ No newline at end of file
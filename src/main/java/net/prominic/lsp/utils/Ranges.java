@@ -19,10 +19,6 @@
 ////////////////////////////////////////////////////////////////////////////////
 package net.prominic.lsp.utils;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.StringReader;
-
 import org.eclipse.lsp4j.Position;
 import org.eclipse.lsp4j.Range;
 
@@ -36,57 +32,29 @@ public class Ranges {
 		return contains(r1, r2.getStart()) || contains(r1, r2.getEnd());
 	}
 
-	public static String getSubstring(String string, Range range) {
-		return getSubstring(string, range, 0);
-	}
-
-	public static String getSubstring(String string, Range range, int maxLines) {
-		BufferedReader reader = new BufferedReader(new StringReader(string));
-		StringBuilder builder = new StringBuilder();
+	/**
+	 * The line index must have been built from the same string.
+	 */
+	public static String getSubstring(String string, LineIndex lineIndex, Range range, int maxLines) {
 		Position start = range.getStart();
 		Position end = range.getEnd();
 		int startLine = start.getLine();
-		int startChar = start.getCharacter();
 		int endLine = end.getLine();
-		int endChar = end.getCharacter();
 		int lineCount = 1 + (endLine - startLine);
 		if (maxLines > 0 && lineCount > maxLines) {
-			endLine = startLine + maxLines - 1;
-			endChar = 0;
+			end = new Position(startLine + maxLines - 1, 0);
 		}
-		try {
-			for (int i = 0; i < startLine; i++) {
-				// ignore these lines
-				reader.readLine();
-			}
-			for (int i = 0; i < startChar; i++) {
-				// ignore these characters
-				reader.read();
-			}
-			int endCharStart = startChar;
-			int maxLineBreaks = endLine - startLine;
-			if (maxLineBreaks > 0) {
-				endCharStart = 0;
-				int readLines = 0;
-				while (readLines < maxLineBreaks) {
-					char character = (char) reader.read();
-					if (character == '\n') {
-						readLines++;
-					}
-					builder.append(character);
-				}
-			}
-			// the remaining characters on the final line
-			for (int i = endCharStart; i < endChar; i++) {
-				builder.append((char) reader.read());
-			}
-		} catch (IOException e) {
+		int startOffset = lineIndex.getOffset(start);
+		if (startOffset == -1) {
 			return null;
 		}
-		try {
-			reader.close();
-		} catch (IOException e) {
+		int endOffset = lineIndex.getOffset(end);
+		if (endOffset == -1) {
+			endOffset = string.length();
+		}
+		if (endOffset < startOffset) {
+			return "";
 		}
-		return builder.toString();
+		return string.substring(startOffset, endOffset);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,199 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.Phases;
+import org.codehaus.groovy.control.SourceUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import net.prominic.groovyls.compiler.control.GroovyLSCompilationUnit;
+
+class CompilationSchedulerTests {
+	private static final URI URI_A = URI.create("file:///A.groovy");
+	private static final URI URI_B = URI.create("file:///B.groovy");
+
+	private CompilationScheduler scheduler;
+	private List<Set<URI>> compiles;
+	private List<Thread> compileThreads;
+
+	@BeforeEach
+	void setup() {
+		compiles = Collections.synchronizedList(new ArrayList<>());
+		compileThreads = Collections.synchronizedList(new ArrayList<>());
+		scheduler = new CompilationScheduler(uris -> {
+			compiles.add(new HashSet<>(uris));
+			compileThreads.add(Thread.currentThread());
+		});
+		scheduler.setQuietPeriod(60000);
+	}
+
+	@AfterEach
+	void tearDown() {
+		scheduler = null;
+		compiles = null;
+		compileThreads = null;
+	}
+
+	@Test
+	void testChangesAreCoalesced() {
+		scheduler.schedule(URI_A);
+		scheduler.schedule(URI_B);
+		scheduler.schedule(URI_A);
+		Assertions.assertEquals(0, compiles.size());
+		scheduler.awaitAST(URI_A);
+		Assertions.assertEquals(1, compiles.size());
+		Assertions.assertEquals(new HashSet<>(Arrays.asList(URI_A, URI_B)), compiles.get(0));
+	}
+
+	@Test
+	void testRequestWithoutPendingChangesDoesNotCompile() {
+		scheduler.schedule(URI_B);
+		scheduler.awaitAST(URI_A);
+		Assertions.assertEquals(0, compiles.size());
+		Assertions.assertTrue(scheduler.isPending(URI_B));
+	}
+
+	@Test
+	void testStaleCompileIsDropped() throws Exception {
+		scheduler.setQuietPeriod(0);
+		scheduler.schedule(URI_A);
+		scheduler.flush().join();
+		Thread.sleep(100);
+		Assertions.assertEquals(1, compiles.size());
+	}
+
+	@Test
+	void testIdleTaskWaitsForPendingChanges() throws Exception {
+		AtomicInteger runCount = new AtomicInteger();
+		scheduler.schedule(URI_A);
+		CompletableFuture<Void> idleResult = scheduler.runWhenIdle(runCount::incrementAndGet, 10);
+		Thread.sleep(100);
+		Assertions.assertEquals(0, runCount.get());
+		scheduler.flush().join();
+		idleResult.get(10, TimeUnit.SECONDS);
+		Assertions.assertEquals(1, runCount.get());
+		Assertions.assertEquals(1, compiles.size());
+	}
+
+	@Test
+	void testCompileRunsOnWorkerThread() {
+		scheduler.schedule(URI_A);
+		scheduler.awaitAST(URI_A);
+		Assertions.assertEquals(1, compileThreads.size());
+		Assertions.assertNotEquals(Thread.currentThread(), compileThreads.get(0));
+	}
+
+	@Test
+	void testSupersededCompileIsRetried() {
+		List<Set<URI>> attempts = Collections.synchronizedList(new ArrayList<>());
+		scheduler = new CompilationScheduler(uris -> {
+			attempts.add(new HashSet<>(uris));
+			if (attempts.size() == 1) {
+				// the file changes again while it is being compiled
+				scheduler.schedule(URI_A);
+				scheduler.checkCanceled();
+			}
+			compiles.add(new HashSet<>(uris));
+		});
+		scheduler.setQuietPeriod(60000);
+		scheduler.schedule(URI_A);
+		scheduler.schedule(URI_B);
+		scheduler.awaitAST(URI_B);
+		Assertions.assertEquals(2, attempts.size());
+		Assertions.assertEquals(1, compiles.size());
+		Assertions.assertEquals(new HashSet<>(Arrays.asList(URI_A, URI_B)), compiles.get(0));
+		Assertions.assertFalse(scheduler.isPending(URI_A));
+	}
+
+	@Test
+	void testCompileCanceledDuringPhaseIsRetried() {
+		GroovyLSCompilationUnit unit = new GroovyLSCompilationUnit(new CompilerConfiguration());
+		unit.addSource(new SourceUnit("A.groovy", "class A {\n  B b\n}\n", unit.getConfiguration(),
+				unit.getClassLoader(), unit.getErrorCollector()));
+		unit.addSource(new SourceUnit("B.groovy", "class B {}\n", unit.getConfiguration(), unit.getClassLoader(),
+				unit.getErrorCollector()));
+		List<Set<URI>> attempts = Collections.synchronizedList(new ArrayList<>());
+		AtomicInteger phaseChecks = new AtomicInteger();
+		scheduler = new CompilationScheduler(uris -> {
+			attempts.add(new HashSet<>(uris));
+			unit.compile(Phases.CANONICALIZATION, () -> {
+				// the file changes again just before the conversion phase
+				if (phaseChecks.incrementAndGet() == Phases.CONVERSION) {
+					scheduler.schedule(URI_A);
+				}
+				scheduler.checkCanceled();
+			});
+			compiles.add(new HashSet<>(uris));
+		});
+		scheduler.setQuietPeriod(60000);
+		scheduler.schedule(URI_A);
+		scheduler.awaitAST(URI_A);
+		Assertions.assertEquals(2, attempts.size());
+		Assertions.assertEquals(1, compiles.size());
+		Assertions.assertFalse(unit.getErrorCollector().hasErrors());
+		ClassNode classNode = unit.getAST().getClass("A");
+		Assertions.assertNotNull(classNode);
+		Assertions.assertSame(unit.getAST().getClass("B"), classNode.getField("b").getType().redirect());
+	}
+
+	@Test
+	void testAwaitASTStopsWhenCanceled() throws Exception {
+		CountDownLatch latch = new CountDownLatch(1);
+		scheduler = new CompilationScheduler(uris -> {
+			try {
+				latch.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		scheduler.schedule(URI_A);
+		AtomicInteger checks = new AtomicInteger();
+		try {
+			Assertions.assertThrows(CancellationException.class, () -> {
+				scheduler.awaitAST(URI_A, () -> {
+					if (checks.incrementAndGet() > 2) {
+						throw new CancellationException();
+					}
+				});
+			});
+		} finally {
+			latch.countDown();
+		}
+		scheduler.awaitAST(URI_A);
+	}
+}
@@ -0,0 +1,165 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls;
+
+import java.io.File;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.eclipse.lsp4j.DidChangeConfigurationParams;
+import org.eclipse.lsp4j.DidOpenTextDocumentParams;
+import org.eclipse.lsp4j.Hover;
+import org.eclipse.lsp4j.HoverParams;
+import org.eclipse.lsp4j.Location;
+import org.eclipse.lsp4j.MessageActionItem;
+import org.eclipse.lsp4j.MessageParams;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.PublishDiagnosticsParams;
+import org.eclipse.lsp4j.ReferenceContext;
+import org.eclipse.lsp4j.ReferenceParams;
+import org.eclipse.lsp4j.ShowMessageRequestParams;
+import org.eclipse.lsp4j.TextDocumentIdentifier;
+import org.eclipse.lsp4j.TextDocumentItem;
+import org.eclipse.lsp4j.services.LanguageClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import com.google.gson.JsonObject;
+
+
+class GroovyServicesASTRetentionTests {
+	private static final String LANGUAGE_GROOVY = "groovy";
+	private static final String PATH_WORKSPACE = "./build/test_workspace_retention/";
+
+	@RegisterExtension
+	static TestCacheDirectory cacheDirectory = new TestCacheDirectory();
+
+	private GroovyServices services;
+	private Path workspaceRoot;
+
+	@BeforeEach
+	void setup() throws Exception {
+		workspaceRoot = Paths.get(System.getProperty("user.dir")).resolve(PATH_WORKSPACE);
+		deleteRecursively(workspaceRoot);
+		Files.createDirectories(workspaceRoot);
+		writeFile("Opened.groovy", "class Opened {\n  void open() {\n    new Helper().help()\n  }\n}\n");
+		writeFile("Helper.groovy", "class Helper {\n  void help() {}\n}\n");
+		writeFile("Caller.groovy", "class Caller {\n  void call() {\n    new Helper().help()\n  }\n}\n");
+
+		services = cacheDirectory.createServices();
+		services.setWorkspaceRoot(workspaceRoot);
+		services.connect(new LanguageClient() {
+
+			@Override
+			public void telemetryEvent(Object object) {
+
+			}
+
+			@Override
+			public CompletableFuture<MessageActionItem> showMessageRequest(ShowMessageRequestParams requestParams) {
+				return null;
+			}
+
+			@Override
+			public void showMessage(MessageParams messageParams) {
+
+			}
+
+			@Override
+			public void publishDiagnostics(PublishDiagnosticsParams diagnostics) {
+
+			}
+
+			@Override
+			public void logMessage(MessageParams message) {
+
+			}
+		});
+		// no closed file may keep its full AST
+		JsonObject groovy = new JsonObject();
+		groovy.addProperty("astNodeBudget", 0);
+		JsonObject settings = new JsonObject();
+		settings.add("groovy", groovy);
+		services.didChangeConfiguration(new DidChangeConfigurationParams(settings));
+	}
+
+	@AfterEach
+	void tearDown() throws Exception {
+		services = null;
+		deleteRecursively(workspaceRoot);
+		workspaceRoot = null;
+	}
+
+	@Test
+	void testReferencesAreFoundInStubs() throws Exception {
+		String uri = openFile("Opened.groovy");
+		services.whenWorkspaceIndexed().get();
+
+		TextDocumentIdentifier textDocument = new TextDocumentIdentifier(uri);
+		List<? extends Location> locations = services
+				.references(new ReferenceParams(textDocument, new Position(2, 19), new ReferenceContext(true))).get();
+		URI callerURI = workspaceRoot.resolve("Caller.groovy").toUri();
+		Location location = locations.stream().filter(loc -> callerURI.equals(URI.create(loc.getUri()))).findFirst()
+				.get();
+		Assertions.assertEquals(2, location.getRange().getStart().getLine());
+		Assertions.assertEquals(17, location.getRange().getStart().getCharacter());
+	}
+
+	@Test
+	void testStubIsExpandedForRequest() throws Exception {
+		openFile("Opened.groovy");
+		services.whenWorkspaceIndexed().get();
+
+		// the method body of a closed file is needed to hover over its calls
+		TextDocumentIdentifier textDocument = new TextDocumentIdentifier(
+				workspaceRoot.resolve("Caller.groovy").toUri().toString());
+		Hover hover = services.hover(new HoverParams(textDocument, new Position(2, 19))).get();
+		Assertions.assertNotNull(hover);
+		Assertions.assertTrue(hover.getContents().getRight().getValue().contains("help"));
+	}
+
+	private String openFile(String fileName) throws Exception {
+		Path filePath = workspaceRoot.resolve(fileName);
+		String uri = filePath.toUri().toString();
+		String contents = new String(Files.readAllBytes(filePath), StandardCharsets.UTF_8);
+		services.didOpen(new DidOpenTextDocumentParams(new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, contents)));
+		return uri;
+	}
+
+	private void writeFile(String fileName, String contents) throws Exception {
+		Files.write(workspaceRoot.resolve(fileName), contents.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private void deleteRecursively(Path path) throws Exception {
+		if (!Files.exists(path)) {
+			return;
+		}
+		Files.walk(path).sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+	}
+}
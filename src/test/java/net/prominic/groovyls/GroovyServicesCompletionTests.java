@@ -22,36 +22,47 @@ package net.prominic.groovyls;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
 import java.util.stream.Collectors;
 
 import org.eclipse.lsp4j.CompletionItem;
 import org.eclipse.lsp4j.CompletionItemKind;
 import org.eclipse.lsp4j.CompletionList;
 import org.eclipse.lsp4j.CompletionParams;
+import org.eclipse.lsp4j.DidChangeTextDocumentParams;
 import org.eclipse.lsp4j.DidOpenTextDocumentParams;
 import org.eclipse.lsp4j.MessageActionItem;
 import org.eclipse.lsp4j.MessageParams;
 import org.eclipse.lsp4j.Position;
 import org.eclipse.lsp4j.PublishDiagnosticsParams;
+import org.eclipse.lsp4j.Range;
 import org.eclipse.lsp4j.ShowMessageRequestParams;
+import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
 import org.eclipse.lsp4j.TextDocumentIdentifier;
 import org.eclipse.lsp4j.TextDocumentItem;
+import org.eclipse.lsp4j.VersionedTextDocumentIdentifier;
 import org.eclipse.lsp4j.jsonrpc.messages.Either;
 import org.eclipse.lsp4j.services.LanguageClient;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
 
-import net.prominic.groovyls.config.CompilationUnitFactory;
+import net.prominic.groovyls.classpath.ClasspathIndex;
+import net.prominic.groovyls.classpath.ClasspathIndexer;
 
 class GroovyServicesCompletionTests {
 	private static final String LANGUAGE_GROOVY = "groovy";
 	private static final String PATH_WORKSPACE = "./build/test_workspace/";
 	private static final String PATH_SRC = "./src/main/groovy";
 
+	@RegisterExtension
+	static TestCacheDirectory cacheDirectory = new TestCacheDirectory();
+
 	private GroovyServices services;
 	private Path workspaceRoot;
 	private Path srcRoot;
@@ -64,35 +75,11 @@ class GroovyServicesCompletionTests {
 			srcRoot.toFile().mkdirs();
 		}
 
-		services = new GroovyServices(new CompilationUnitFactory());
+		services = cacheDirectory.createServices();
 		services.setWorkspaceRoot(workspaceRoot);
-		services.connect(new LanguageClient() {
-
-			@Override
-			public void telemetryEvent(Object object) {
-
-			}
-
-			@Override
-			public CompletableFuture<MessageActionItem> showMessageRequest(ShowMessageRequestParams requestParams) {
-				return null;
-			}
-
-			@Override
-			public void showMessage(MessageParams messageParams) {
-
-			}
-
-			@Override
-			public void publishDiagnostics(PublishDiagnosticsParams diagnostics) {
-
-			}
-
-			@Override
-			public void logMessage(MessageParams message) {
-
-			}
-		});
+		services.connect(createLanguageClient());
+		// the classpath is indexed in the background
+		services.whenClasspathIndexed().join();
 	}
 
 	@AfterEach
@@ -128,6 +115,66 @@ class GroovyServicesCompletionTests {
 		Assertions.assertEquals(1, filteredItems.size());
 	}
 
+	@Test
+	void testMemberAccessNarrowsPreviousResultAsMemberNameIsTyped() throws Exception {
+		Path filePath = srcRoot.resolve("Completion.groovy");
+		String uri = filePath.toUri().toString();
+		StringBuilder contents = new StringBuilder();
+		contents.append("class Completion {\n");
+		contents.append("  public Completion() {\n");
+		contents.append("    String localVar\n");
+		contents.append("    localVar.\n");
+		contents.append("  }\n");
+		contents.append("}");
+		TextDocumentItem textDocumentItem = new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, contents.toString());
+		services.didOpen(new DidOpenTextDocumentParams(textDocumentItem));
+		TextDocumentIdentifier textDocument = new TextDocumentIdentifier(uri);
+		List<CompletionItem> items = services.completion(new CompletionParams(textDocument, new Position(3, 13)))
+				.get().getLeft();
+		CompletionItem charAtItem = items.stream().filter(item -> item.getLabel().equals("charAt")).findFirst()
+				.get();
+
+		typeText(uri, 2, new Position(3, 13), "ch");
+		List<CompletionItem> narrowedItems = services
+				.completion(new CompletionParams(textDocument, new Position(3, 15))).get().getLeft();
+		Assertions.assertTrue(narrowedItems.size() > 0);
+		Assertions.assertTrue(narrowedItems.stream().allMatch(item -> item.getLabel().startsWith("ch")));
+		// the same item means that the previous result was filtered
+		Assertions.assertTrue(narrowedItems.stream().anyMatch(item -> item == charAtItem));
+	}
+
+	@Test
+	void testMemberAccessIsCompletedAgainAfterOtherChange() throws Exception {
+		Path filePath = srcRoot.resolve("Completion.groovy");
+		String uri = filePath.toUri().toString();
+		StringBuilder contents = new StringBuilder();
+		contents.append("class Completion {\n");
+		contents.append("  public Completion() {\n");
+		contents.append("    String localVar\n");
+		contents.append("    localVar.\n");
+		contents.append("  }\n");
+		contents.append("}");
+		TextDocumentItem textDocumentItem = new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, contents.toString());
+		services.didOpen(new DidOpenTextDocumentParams(textDocumentItem));
+		TextDocumentIdentifier textDocument = new TextDocumentIdentifier(uri);
+		List<CompletionItem> items = services.completion(new CompletionParams(textDocument, new Position(3, 13)))
+				.get().getLeft();
+		CompletionItem charAtItem = items.stream().filter(item -> item.getLabel().equals("charAt")).findFirst()
+				.get();
+
+		// change the type of the variable
+		VersionedTextDocumentIdentifier versionedTextDocument = new VersionedTextDocumentIdentifier(uri, 2);
+		TextDocumentContentChangeEvent changeEvent = new TextDocumentContentChangeEvent(
+				new Range(new Position(2, 4), new Position(2, 10)), 6, "StringBuilder");
+		services.didChange(
+				new DidChangeTextDocumentParams(versionedTextDocument, Collections.singletonList(changeEvent)));
+		typeText(uri, 3, new Position(3, 13), "ch");
+		List<CompletionItem> newItems = services
+				.completion(new CompletionParams(textDocument, new Position(3, 15))).get().getLeft();
+		Assertions.assertTrue(newItems.stream().anyMatch(item -> item.getLabel().equals("charAt")));
+		Assertions.assertFalse(newItems.stream().anyMatch(item -> item == charAtItem));
+	}
+
 	@Test
 	void testMemberAccessOnMemberVariableAfterDot() throws Exception {
 		Path filePath = srcRoot.resolve("Completion.groovy");
@@ -629,4 +676,88 @@ class GroovyServicesCompletionTests {
 		}).collect(Collectors.toList());
 		Assertions.assertEquals(1, filteredItems.size());
 	}
-}
\ No newline at end of file
+
+	@Test
+	void testSystemClassIsIncompleteUntilClasspathIsIndexed() throws Exception {
+		CountDownLatch indexingAllowed = new CountDownLatch(1);
+		ClasspathIndexer classpathIndexer = new ClasspathIndexer(cacheDirectory.getPath().resolve("classpath")) {
+			@Override
+			public ClasspathIndex index(ClassLoader classLoader, ClasspathIndex previousIndex) {
+				try {
+					indexingAllowed.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return super.index(classLoader, previousIndex);
+			}
+		};
+		GroovyServices indexingServices = cacheDirectory.createServices(classpathIndexer);
+		try {
+			indexingServices.setWorkspaceRoot(workspaceRoot);
+			indexingServices.connect(createLanguageClient());
+			Path filePath = srcRoot.resolve("Completion.groovy");
+			String uri = filePath.toUri().toString();
+			StringBuilder contents = new StringBuilder();
+			contents.append("class Completion {\n");
+			contents.append("  public Completion() {\n");
+			contents.append("    ArrayLis\n");
+			contents.append("  }\n");
+			contents.append("}");
+			TextDocumentItem textDocumentItem = new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, contents.toString());
+			indexingServices.didOpen(new DidOpenTextDocumentParams(textDocumentItem));
+			TextDocumentIdentifier textDocument = new TextDocumentIdentifier(uri);
+			Position position = new Position(2, 12);
+			Either<List<CompletionItem>, CompletionList> result = indexingServices
+					.completion(new CompletionParams(textDocument, position)).get();
+			Assertions.assertTrue(result.isRight());
+			Assertions.assertTrue(result.getRight().isIncomplete());
+
+			indexingAllowed.countDown();
+			indexingServices.whenClasspathIndexed().join();
+			result = indexingServices.completion(new CompletionParams(textDocument, position)).get();
+			Assertions.assertTrue(result.isLeft());
+			Assertions.assertTrue(result.getLeft().stream().anyMatch(item -> item.getLabel().equals("ArrayList")));
+		} finally {
+			// the services are awaited after the test
+			indexingAllowed.countDown();
+		}
+	}
+
+	private LanguageClient createLanguageClient() {
+		return new LanguageClient() {
+
+			@Override
+			public void telemetryEvent(Object object) {
+
+			}
+
+			@Override
+			public CompletableFuture<MessageActionItem> showMessageRequest(ShowMessageRequestParams requestParams) {
+				return null;
+			}
+
+			@Override
+			public void showMessage(MessageParams messageParams) {
+
+			}
+
+			@Override
+			public void publishDiagnostics(PublishDiagnosticsParams diagnostics) {
+
+			}
+
+			@Override
+			public void logMessage(MessageParams message) {
+
+			}
+		};
+	}
+
+	private void typeText(String uri, int version, Position position, String text) {
+		VersionedTextDocumentIdentifier versionedTextDocument = new VersionedTextDocumentIdentifier(uri, version);
+		TextDocumentContentChangeEvent changeEvent = new TextDocumentContentChangeEvent(
+				new Range(position, position), 0, text);
+		services.didChange(
+				new DidChangeTextDocumentParams(versionedTextDocument, Collections.singletonList(changeEvent)));
+	}
+}
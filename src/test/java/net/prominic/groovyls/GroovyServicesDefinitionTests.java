@@ -22,6 +22,7 @@ package net.prominic.groovyls;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
@@ -40,14 +41,17 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
 
-import net.prominic.groovyls.config.CompilationUnitFactory;
 
 class GroovyServicesDefinitionTests {
 	private static final String LANGUAGE_GROOVY = "groovy";
 	private static final String PATH_WORKSPACE = "./build/test_workspace/";
 	private static final String PATH_SRC = "./src/main/groovy";
 
+	@RegisterExtension
+	static TestCacheDirectory cacheDirectory = new TestCacheDirectory();
+
 	private GroovyServices services;
 	private Path workspaceRoot;
 	private Path srcRoot;
@@ -60,7 +64,7 @@ class GroovyServicesDefinitionTests {
 			srcRoot.toFile().mkdirs();
 		}
 
-		services = new GroovyServices(new CompilationUnitFactory());
+		services = cacheDirectory.createServices();
 		services.setWorkspaceRoot(workspaceRoot);
 		services.connect(new LanguageClient() {
 
@@ -539,4 +543,36 @@ class GroovyServicesDefinitionTests {
 		Assertions.assertEquals(5, location.getRange().getEnd().getLine());
 		Assertions.assertEquals(21, location.getRange().getEnd().getCharacter());
 	}
-}
\ No newline at end of file
+
+	// --- concurrent requests
+
+	@Test
+	void testConcurrentDefinitionRequests() throws Exception {
+		Path filePath = srcRoot.resolve("Definitions.groovy");
+		String uri = filePath.toUri().toString();
+		StringBuilder contents = new StringBuilder();
+		contents.append("class Definitions {\n");
+		contents.append("  public Definitions() {\n");
+		contents.append("    int localVar\n");
+		contents.append("    localVar = 123\n");
+		contents.append("  }\n");
+		contents.append("}");
+		TextDocumentItem textDocumentItem = new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, contents.toString());
+		services.didOpen(new DidOpenTextDocumentParams(textDocumentItem));
+		TextDocumentIdentifier textDocument = new TextDocumentIdentifier(uri);
+		Position position = new Position(3, 6);
+		List<CompletableFuture<List<? extends Location>>> results = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			results.add(services.definition(new DefinitionParams(textDocument, position))
+					.thenApply(result -> result.getLeft()));
+		}
+		for (CompletableFuture<List<? extends Location>> result : results) {
+			List<? extends Location> locations = result.get();
+			Assertions.assertEquals(1, locations.size());
+			Location location = locations.get(0);
+			Assertions.assertEquals(uri, location.getUri());
+			Assertions.assertEquals(2, location.getRange().getStart().getLine());
+			Assertions.assertEquals(8, location.getRange().getStart().getCharacter());
+		}
+	}
+}
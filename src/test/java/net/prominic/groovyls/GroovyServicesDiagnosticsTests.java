@@ -0,0 +1,247 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.lsp4j.CompletionItem;
+import org.eclipse.lsp4j.CompletionList;
+import org.eclipse.lsp4j.CompletionParams;
+import org.eclipse.lsp4j.Diagnostic;
+import org.eclipse.lsp4j.DidChangeTextDocumentParams;
+import org.eclipse.lsp4j.DidOpenTextDocumentParams;
+import org.eclipse.lsp4j.DocumentSymbolParams;
+import org.eclipse.lsp4j.MessageActionItem;
+import org.eclipse.lsp4j.MessageParams;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.PublishDiagnosticsParams;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.ShowMessageRequestParams;
+import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
+import org.eclipse.lsp4j.TextDocumentIdentifier;
+import org.eclipse.lsp4j.TextDocumentItem;
+import org.eclipse.lsp4j.VersionedTextDocumentIdentifier;
+import org.eclipse.lsp4j.jsonrpc.messages.Either;
+import org.eclipse.lsp4j.services.LanguageClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+
+class GroovyServicesDiagnosticsTests {
+	private static final String LANGUAGE_GROOVY = "groovy";
+	private static final String PATH_WORKSPACE = "./build/test_workspace/";
+	private static final String PATH_SRC = "./src/main/groovy";
+
+	@RegisterExtension
+	static TestCacheDirectory cacheDirectory = new TestCacheDirectory();
+
+	private GroovyServices services;
+	private Path workspaceRoot;
+	private Path srcRoot;
+	private Map<String, List<Diagnostic>> diagnosticsByURI;
+	private AtomicInteger publishCount;
+
+	@BeforeEach
+	void setup() {
+		workspaceRoot = Paths.get(System.getProperty("user.dir")).resolve(PATH_WORKSPACE);
+		srcRoot = workspaceRoot.resolve(PATH_SRC);
+		if (!Files.exists(srcRoot)) {
+			srcRoot.toFile().mkdirs();
+		}
+		diagnosticsByURI = Collections.synchronizedMap(new HashMap<>());
+		publishCount = new AtomicInteger();
+
+		services = cacheDirectory.createServices();
+		services.setWorkspaceRoot(workspaceRoot);
+		services.connect(new LanguageClient() {
+
+			@Override
+			public void telemetryEvent(Object object) {
+
+			}
+
+			@Override
+			public CompletableFuture<MessageActionItem> showMessageRequest(ShowMessageRequestParams requestParams) {
+				return null;
+			}
+
+			@Override
+			public void showMessage(MessageParams messageParams) {
+
+			}
+
+			@Override
+			public void publishDiagnostics(PublishDiagnosticsParams diagnostics) {
+				diagnosticsByURI.put(diagnostics.getUri(), diagnostics.getDiagnostics());
+				publishCount.incrementAndGet();
+			}
+
+			@Override
+			public void logMessage(MessageParams message) {
+
+			}
+		});
+	}
+
+	@AfterEach
+	void tearDown() {
+		services = null;
+		workspaceRoot = null;
+		srcRoot = null;
+		diagnosticsByURI = null;
+		publishCount = null;
+	}
+
+	@Test
+	void testDependentFileIsCompiledAfterChange() throws Exception {
+		Path filePath = srcRoot.resolve("Diagnostics.groovy");
+		String uri = filePath.toUri().toString();
+		StringBuilder contents = new StringBuilder();
+		contents.append("class Diagnostics {\n");
+		contents.append("}\n");
+		TextDocumentItem textDocumentItem = new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, contents.toString());
+		services.didOpen(new DidOpenTextDocumentParams(textDocumentItem));
+
+		Path filePath2 = srcRoot.resolve("Diagnostics2.groovy");
+		String uri2 = filePath2.toUri().toString();
+		StringBuilder contents2 = new StringBuilder();
+		contents2.append("class Diagnostics2 {\n");
+		contents2.append("  Diagnostics diagnostics\n");
+		contents2.append("}\n");
+		TextDocumentItem textDocumentItem2 = new TextDocumentItem(uri2, LANGUAGE_GROOVY, 1, contents2.toString());
+		services.didOpen(new DidOpenTextDocumentParams(textDocumentItem2));
+
+		TextDocumentIdentifier textDocument = new TextDocumentIdentifier(uri);
+		services.documentSymbol(new DocumentSymbolParams(textDocument)).get();
+		Assertions.assertFalse(diagnosticsByURI.containsKey(uri2) && !diagnosticsByURI.get(uri2).isEmpty());
+
+		// rename the class without changing the file that refers to it
+		VersionedTextDocumentIdentifier versionedTextDocument = new VersionedTextDocumentIdentifier(uri, 2);
+		TextDocumentContentChangeEvent changeEvent = new TextDocumentContentChangeEvent(
+				new Range(new Position(0, 6), new Position(0, 17)), 11, "Renamed");
+		services.didChange(
+				new DidChangeTextDocumentParams(versionedTextDocument, Collections.singletonList(changeEvent)));
+		services.documentSymbol(new DocumentSymbolParams(textDocument)).get();
+
+		List<Diagnostic> diagnostics = diagnosticsByURI.get(uri2);
+		Assertions.assertNotNull(diagnostics);
+		Assertions.assertEquals(1, diagnostics.size());
+		Assertions.assertEquals(1, diagnostics.get(0).getRange().getStart().getLine());
+	}
+
+	@Test
+	void testUnresolvedClassIsResolvedAfterChange() throws Exception {
+		Path filePath = srcRoot.resolve("Diagnostics.groovy");
+		String uri = filePath.toUri().toString();
+		StringBuilder contents = new StringBuilder();
+		contents.append("class Diagnostics {\n");
+		contents.append("}\n");
+		TextDocumentItem textDocumentItem = new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, contents.toString());
+		services.didOpen(new DidOpenTextDocumentParams(textDocumentItem));
+
+		Path filePath2 = srcRoot.resolve("Diagnostics2.groovy");
+		String uri2 = filePath2.toUri().toString();
+		StringBuilder contents2 = new StringBuilder();
+		contents2.append("class Diagnostics2 {\n");
+		contents2.append("  Renamed renamed\n");
+		contents2.append("}\n");
+		TextDocumentItem textDocumentItem2 = new TextDocumentItem(uri2, LANGUAGE_GROOVY, 1, contents2.toString());
+		services.didOpen(new DidOpenTextDocumentParams(textDocumentItem2));
+
+		TextDocumentIdentifier textDocument = new TextDocumentIdentifier(uri);
+		services.documentSymbol(new DocumentSymbolParams(textDocument)).get();
+		Assertions.assertEquals(1, diagnosticsByURI.get(uri2).size());
+
+		VersionedTextDocumentIdentifier versionedTextDocument = new VersionedTextDocumentIdentifier(uri, 2);
+		TextDocumentContentChangeEvent changeEvent = new TextDocumentContentChangeEvent(
+				new Range(new Position(0, 6), new Position(0, 17)), 11, "Renamed");
+		services.didChange(
+				new DidChangeTextDocumentParams(versionedTextDocument, Collections.singletonList(changeEvent)));
+		services.documentSymbol(new DocumentSymbolParams(textDocument)).get();
+
+		Assertions.assertTrue(diagnosticsByURI.get(uri2).isEmpty());
+	}
+
+	@Test
+	void testCompletionDoesNotPublishDiagnostics() throws Exception {
+		Path filePath = srcRoot.resolve("Diagnostics.groovy");
+		String uri = filePath.toUri().toString();
+		StringBuilder contents = new StringBuilder();
+		contents.append("class Diagnostics {\n");
+		contents.append("  public Diagnostics() {\n");
+		contents.append("    String localVar\n");
+		contents.append("    localVar.\n");
+		contents.append("  }\n");
+		contents.append("}\n");
+		TextDocumentItem textDocumentItem = new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, contents.toString());
+		services.didOpen(new DidOpenTextDocumentParams(textDocumentItem));
+		TextDocumentIdentifier textDocument = new TextDocumentIdentifier(uri);
+		services.documentSymbol(new DocumentSymbolParams(textDocument)).get();
+		List<Diagnostic> diagnostics = diagnosticsByURI.get(uri);
+		int count = publishCount.get();
+
+		Position position = new Position(3, 13);
+		Either<List<CompletionItem>, CompletionList> result = services
+				.completion(new CompletionParams(textDocument, position)).get();
+		Assertions.assertTrue(result.getLeft().size() > 0);
+		services.documentSymbol(new DocumentSymbolParams(textDocument)).get();
+
+		Assertions.assertEquals(count, publishCount.get());
+		Assertions.assertSame(diagnostics, diagnosticsByURI.get(uri));
+	}
+
+	@Test
+	void testErrorsInFilesParsedTogether() throws Exception {
+		List<String> uris = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			Path filePath = srcRoot.resolve("Diagnostics" + i + ".groovy");
+			String uri = filePath.toUri().toString();
+			uris.add(uri);
+			StringBuilder contents = new StringBuilder();
+			contents.append("class Diagnostics" + i + " {\n");
+			contents.append("  Missing" + i + " missing\n");
+			contents.append("}\n");
+			TextDocumentItem textDocumentItem = new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, contents.toString());
+			services.didOpen(new DidOpenTextDocumentParams(textDocumentItem));
+		}
+
+		for (String uri : uris) {
+			// the quiet period may elapse before every file is opened, so
+			// the files may be compiled separately
+			services.documentSymbol(new DocumentSymbolParams(new TextDocumentIdentifier(uri))).get();
+			List<Diagnostic> diagnostics = diagnosticsByURI.get(uri);
+			Assertions.assertNotNull(diagnostics);
+			Assertions.assertEquals(1, diagnostics.size());
+			Assertions.assertEquals(1, diagnostics.get(0).getRange().getStart().getLine());
+		}
+	}
+}
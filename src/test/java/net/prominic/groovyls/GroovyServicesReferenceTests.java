@@ -0,0 +1,222 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.eclipse.lsp4j.DidOpenTextDocumentParams;
+import org.eclipse.lsp4j.Location;
+import org.eclipse.lsp4j.MessageActionItem;
+import org.eclipse.lsp4j.MessageParams;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.ProgressParams;
+import org.eclipse.lsp4j.PublishDiagnosticsParams;
+import org.eclipse.lsp4j.ReferenceContext;
+import org.eclipse.lsp4j.ReferenceParams;
+import org.eclipse.lsp4j.ShowMessageRequestParams;
+import org.eclipse.lsp4j.TextDocumentIdentifier;
+import org.eclipse.lsp4j.TextDocumentItem;
+import org.eclipse.lsp4j.WorkDoneProgressEnd;
+import org.eclipse.lsp4j.jsonrpc.messages.Either;
+import org.eclipse.lsp4j.services.LanguageClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+
+class GroovyServicesReferenceTests {
+	private static final String LANGUAGE_GROOVY = "groovy";
+	private static final String PATH_WORKSPACE = "./build/test_workspace/";
+	private static final String PATH_SRC = "./src/main/groovy";
+
+	@RegisterExtension
+	static TestCacheDirectory cacheDirectory = new TestCacheDirectory();
+
+	private GroovyServices services;
+	private Path workspaceRoot;
+	private Path srcRoot;
+	private List<ProgressParams> progressNotifications;
+
+	@BeforeEach
+	void setup() {
+		workspaceRoot = Paths.get(System.getProperty("user.dir")).resolve(PATH_WORKSPACE);
+		srcRoot = workspaceRoot.resolve(PATH_SRC);
+		if (!Files.exists(srcRoot)) {
+			srcRoot.toFile().mkdirs();
+		}
+
+		progressNotifications = new ArrayList<>();
+		services = cacheDirectory.createServices();
+		services.setWorkspaceRoot(workspaceRoot);
+		services.connect(new LanguageClient() {
+
+			@Override
+			public void telemetryEvent(Object object) {
+
+			}
+
+			@Override
+			public CompletableFuture<MessageActionItem> showMessageRequest(ShowMessageRequestParams requestParams) {
+				return null;
+			}
+
+			@Override
+			public void showMessage(MessageParams messageParams) {
+
+			}
+
+			@Override
+			public void publishDiagnostics(PublishDiagnosticsParams diagnostics) {
+
+			}
+
+			@Override
+			public void logMessage(MessageParams message) {
+
+			}
+
+			@Override
+			public void notifyProgress(ProgressParams params) {
+				progressNotifications.add(params);
+			}
+		});
+	}
+
+	@AfterEach
+	void tearDown() {
+		services = null;
+		workspaceRoot = null;
+		srcRoot = null;
+		progressNotifications = null;
+	}
+
+	@Test
+	void testMemberMethodReferences() throws Exception {
+		Path filePath = srcRoot.resolve("References.groovy");
+		String uri = filePath.toUri().toString();
+		StringBuilder contents = new StringBuilder();
+		contents.append("class References {\n");
+		contents.append("  public void memberMethod() {}\n");
+		contents.append("  public References() {\n");
+		contents.append("    memberMethod()\n");
+		contents.append("  }\n");
+		contents.append("}\n");
+		TextDocumentItem textDocumentItem = new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, contents.toString());
+		services.didOpen(new DidOpenTextDocumentParams(textDocumentItem));
+		TextDocumentIdentifier textDocument = new TextDocumentIdentifier(uri);
+		Position position = new Position(1, 16);
+		List<? extends Location> locations = services
+				.references(new ReferenceParams(textDocument, position, new ReferenceContext(true))).get();
+		Assertions.assertEquals(2, locations.size());
+		Location location = locations.stream().filter(loc -> loc.getRange().getStart().getLine() == 3).findFirst()
+				.get();
+		Assertions.assertEquals(uri, location.getUri());
+		Assertions.assertEquals(4, location.getRange().getStart().getCharacter());
+		Assertions.assertEquals(3, location.getRange().getEnd().getLine());
+		Assertions.assertEquals(16, location.getRange().getEnd().getCharacter());
+	}
+
+	@Test
+	void testClassReferencesInOtherFile() throws Exception {
+		Path filePath = srcRoot.resolve("References.groovy");
+		String uri = filePath.toUri().toString();
+		StringBuilder contents = new StringBuilder();
+		contents.append("class References {\n");
+		contents.append("}\n");
+		TextDocumentItem textDocumentItem = new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, contents.toString());
+		services.didOpen(new DidOpenTextDocumentParams(textDocumentItem));
+
+		Path filePath2 = srcRoot.resolve("References2.groovy");
+		String uri2 = filePath2.toUri().toString();
+		StringBuilder contents2 = new StringBuilder();
+		contents2.append("class References2 {\n");
+		contents2.append("  public References2() {\n");
+		contents2.append("    References.class\n");
+		contents2.append("  }\n");
+		contents2.append("}\n");
+		TextDocumentItem textDocumentItem2 = new TextDocumentItem(uri2, LANGUAGE_GROOVY, 1, contents2.toString());
+		services.didOpen(new DidOpenTextDocumentParams(textDocumentItem2));
+
+		TextDocumentIdentifier textDocument = new TextDocumentIdentifier(uri);
+		Position position = new Position(0, 8);
+		List<? extends Location> locations = services
+				.references(new ReferenceParams(textDocument, position, new ReferenceContext(true))).get();
+		Location location = locations.stream().filter(loc -> loc.getUri().equals(uri2)).findFirst().get();
+		Assertions.assertEquals(2, location.getRange().getStart().getLine());
+		Assertions.assertEquals(4, location.getRange().getStart().getCharacter());
+	}
+
+	@Test
+	void testReferencesStreamedPerFileWithPartialResultToken() throws Exception {
+		Path filePath = srcRoot.resolve("References.groovy");
+		String uri = filePath.toUri().toString();
+		StringBuilder contents = new StringBuilder();
+		contents.append("class References {\n");
+		contents.append("}\n");
+		TextDocumentItem textDocumentItem = new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, contents.toString());
+		services.didOpen(new DidOpenTextDocumentParams(textDocumentItem));
+
+		Path filePath2 = srcRoot.resolve("References2.groovy");
+		String uri2 = filePath2.toUri().toString();
+		StringBuilder contents2 = new StringBuilder();
+		contents2.append("class References2 {\n");
+		contents2.append("  public References2() {\n");
+		contents2.append("    References.class\n");
+		contents2.append("  }\n");
+		contents2.append("}\n");
+		TextDocumentItem textDocumentItem2 = new TextDocumentItem(uri2, LANGUAGE_GROOVY, 1, contents2.toString());
+		services.didOpen(new DidOpenTextDocumentParams(textDocumentItem2));
+
+		TextDocumentIdentifier textDocument = new TextDocumentIdentifier(uri);
+		Position position = new Position(0, 8);
+		ReferenceParams params = new ReferenceParams(textDocument, position, new ReferenceContext(true));
+		params.setWorkDoneToken(Either.forLeft("work"));
+		params.setPartialResultToken(Either.forLeft("partial"));
+		List<? extends Location> locations = services.references(params).get();
+		Assertions.assertEquals(0, locations.size());
+
+		List<String> batchURIs = new ArrayList<>();
+		for (ProgressParams progress : progressNotifications) {
+			if (!progress.getToken().getLeft().equals("partial")) {
+				continue;
+			}
+			List<?> batch = (List<?>) progress.getValue().getRight();
+			Assertions.assertFalse(batch.isEmpty());
+			String batchURI = ((Location) batch.get(0)).getUri();
+			for (Object location : batch) {
+				Assertions.assertEquals(batchURI, ((Location) location).getUri());
+			}
+			batchURIs.add(batchURI);
+		}
+		Assertions.assertTrue(batchURIs.contains(uri2));
+		Assertions.assertEquals(batchURIs.size(), batchURIs.stream().distinct().count());
+
+		ProgressParams last = progressNotifications.get(progressNotifications.size() - 1);
+		Assertions.assertEquals("work", last.getToken().getLeft());
+		Assertions.assertTrue(last.getValue().getLeft() instanceof WorkDoneProgressEnd);
+	}
+}
@@ -42,14 +42,17 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
 
-import net.prominic.groovyls.config.CompilationUnitFactory;
 
 class GroovyServicesSignatureHelpTests {
 	private static final String LANGUAGE_GROOVY = "groovy";
 	private static final String PATH_WORKSPACE = "./build/test_workspace/";
 	private static final String PATH_SRC = "./src/main/groovy";
 
+	@RegisterExtension
+	static TestCacheDirectory cacheDirectory = new TestCacheDirectory();
+
 	private GroovyServices services;
 	private Path workspaceRoot;
 	private Path srcRoot;
@@ -62,7 +65,7 @@ class GroovyServicesSignatureHelpTests {
 			srcRoot.toFile().mkdirs();
 		}
 
-		services = new GroovyServices(new CompilationUnitFactory());
+		services = cacheDirectory.createServices();
 		services.setWorkspaceRoot(workspaceRoot);
 		services.connect(new LanguageClient() {
 
@@ -187,4 +190,17 @@ class GroovyServicesSignatureHelpTests {
 		Assertions.assertEquals((int) 0, (int) signatureHelp.getActiveSignature());
 		Assertions.assertEquals((int) 1, (int) signatureHelp.getActiveParameter());
 	}
-}
\ No newline at end of file
+
+	@Test
+	void testSignatureHelpOnMissingFile() throws Exception {
+		String openURI = srcRoot.resolve("Completion.groovy").toUri().toString();
+		TextDocumentItem textDocumentItem = new TextDocumentItem(openURI, LANGUAGE_GROOVY, 1, "class SignatureHelp {}");
+		services.didOpen(new DidOpenTextDocumentParams(textDocumentItem));
+		// a file that is neither open nor on disk has no contents to compile
+		String uri = srcRoot.resolve("Missing.groovy").toUri().toString();
+		TextDocumentIdentifier textDocument = new TextDocumentIdentifier(uri);
+		Position position = new Position(2, 11);
+		SignatureHelp signatureHelp = services.signatureHelp(new SignatureHelpParams(textDocument, position)).get();
+		Assertions.assertTrue(signatureHelp.getSignatures().isEmpty());
+	}
+}
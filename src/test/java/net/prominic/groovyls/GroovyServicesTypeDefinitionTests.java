@@ -40,14 +40,17 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
 
-import net.prominic.groovyls.config.CompilationUnitFactory;
 
 class GroovyServicesTypeDefinitionTests {
 	private static final String LANGUAGE_GROOVY = "groovy";
 	private static final String PATH_WORKSPACE = "./build/test_workspace/";
 	private static final String PATH_SRC = "./src/main/groovy";
 
+	@RegisterExtension
+	static TestCacheDirectory cacheDirectory = new TestCacheDirectory();
+
 	private GroovyServices services;
 	private Path workspaceRoot;
 	private Path srcRoot;
@@ -60,7 +63,7 @@ class GroovyServicesTypeDefinitionTests {
 			srcRoot.toFile().mkdirs();
 		}
 
-		services = new GroovyServices(new CompilationUnitFactory());
+		services = cacheDirectory.createServices();
 		services.setWorkspaceRoot(workspaceRoot);
 		services.connect(new LanguageClient() {
 
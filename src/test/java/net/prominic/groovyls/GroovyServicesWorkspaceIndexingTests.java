@@ -0,0 +1,399 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls;
+
+import java.io.File;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.lsp4j.CompletionItem;
+import org.eclipse.lsp4j.CompletionList;
+import org.eclipse.lsp4j.CompletionParams;
+import org.eclipse.lsp4j.Diagnostic;
+import org.eclipse.lsp4j.DiagnosticSeverity;
+import org.eclipse.lsp4j.DidChangeWatchedFilesRegistrationOptions;
+import org.eclipse.lsp4j.DidOpenTextDocumentParams;
+import org.eclipse.lsp4j.DocumentSymbolParams;
+import org.eclipse.lsp4j.MessageActionItem;
+import org.eclipse.lsp4j.MessageParams;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.ProgressParams;
+import org.eclipse.lsp4j.PublishDiagnosticsParams;
+import org.eclipse.lsp4j.Registration;
+import org.eclipse.lsp4j.RegistrationParams;
+import org.eclipse.lsp4j.RenameParams;
+import org.eclipse.lsp4j.ShowMessageRequestParams;
+import org.eclipse.lsp4j.SymbolInformation;
+import org.eclipse.lsp4j.TextDocumentIdentifier;
+import org.eclipse.lsp4j.TextDocumentItem;
+import org.eclipse.lsp4j.WorkDoneProgressBegin;
+import org.eclipse.lsp4j.WorkDoneProgressCreateParams;
+import org.eclipse.lsp4j.WorkDoneProgressEnd;
+import org.eclipse.lsp4j.WorkspaceEdit;
+import org.eclipse.lsp4j.WorkspaceSymbolParams;
+import org.eclipse.lsp4j.jsonrpc.messages.Either;
+import org.eclipse.lsp4j.services.LanguageClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
+
+
+class GroovyServicesWorkspaceIndexingTests {
+	private static final String LANGUAGE_GROOVY = "groovy";
+	private static final String PATH_WORKSPACE = "./build/test_workspace_indexing/";
+
+	@RegisterExtension
+	static TestCacheDirectory cacheDirectory = new TestCacheDirectory();
+
+	private GroovyServices services;
+	private Path workspaceRoot;
+	private List<PublishDiagnosticsParams> publishedDiagnostics;
+	private List<ProgressParams> progressNotifications;
+	private List<RegistrationParams> registrations;
+	private CompletableFuture<Void> progressCreated;
+	private CompletableFuture<Void> progressEnded;
+
+	@BeforeEach
+	void setup() throws Exception {
+		workspaceRoot = Paths.get(System.getProperty("user.dir")).resolve(PATH_WORKSPACE);
+		deleteRecursively(workspaceRoot);
+		Files.createDirectories(workspaceRoot);
+		writeFile("Opened.groovy", "class Opened {\n  Helper helper\n  void open() {}\n}\n");
+		writeFile("Helper.groovy", "class Helper {\n  Nested nested\n}\n");
+		writeFile("Nested.groovy", "class Nested {}\n");
+		writeFile("Unrelated.groovy", "class Unrelated {}\n");
+		writeFile("User.groovy", "class User {\n  void use(Opened opened) {\n    opened.open()\n  }\n}\n");
+
+		publishedDiagnostics = new ArrayList<>();
+		progressNotifications = new ArrayList<>();
+		registrations = new ArrayList<>();
+		progressCreated = CompletableFuture.completedFuture(null);
+		progressEnded = new CompletableFuture<>();
+		services = cacheDirectory.createServices();
+		services.setWorkDoneProgressSupported(true);
+		services.setWorkspaceRoot(workspaceRoot);
+		services.connect(createLanguageClient());
+	}
+
+	@AfterEach
+	void tearDown() throws Exception {
+		services = null;
+		deleteRecursively(workspaceRoot);
+		workspaceRoot = null;
+		publishedDiagnostics = null;
+		progressNotifications = null;
+		registrations = null;
+		progressCreated = null;
+		progressEnded = null;
+	}
+
+	@Test
+	void testOpenFileIsCompiledWithItsDependencies() throws Exception {
+		Path filePath = workspaceRoot.resolve("Opened.groovy");
+		String uri = filePath.toUri().toString();
+		String contents = new String(Files.readAllBytes(filePath), StandardCharsets.UTF_8);
+		TextDocumentItem textDocumentItem = new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, contents);
+		services.didOpen(new DidOpenTextDocumentParams(textDocumentItem));
+		services.documentSymbol(new DocumentSymbolParams(new TextDocumentIdentifier(uri))).get();
+
+		// Helper and Nested would fail to resolve if they weren't compiled
+		// together with the open file
+		synchronized (publishedDiagnostics) {
+			for (PublishDiagnosticsParams params : publishedDiagnostics) {
+				for (Diagnostic diagnostic : params.getDiagnostics()) {
+					Assertions.assertNotEquals(DiagnosticSeverity.Error, diagnostic.getSeverity(),
+							params.getUri() + ": " + diagnostic.getMessage());
+				}
+			}
+		}
+	}
+
+	@Test
+	void testRestOfWorkspaceIsIndexedInBackground() throws Exception {
+		Path filePath = workspaceRoot.resolve("Opened.groovy");
+		String uri = filePath.toUri().toString();
+		String contents = new String(Files.readAllBytes(filePath), StandardCharsets.UTF_8);
+		TextDocumentItem textDocumentItem = new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, contents);
+		services.didOpen(new DidOpenTextDocumentParams(textDocumentItem));
+		services.whenWorkspaceIndexed().get();
+
+		List<? extends SymbolInformation> symbols = services.symbol(new WorkspaceSymbolParams("Unrelated")).get();
+		Assertions.assertEquals(1, symbols.size());
+		Assertions.assertEquals(workspaceRoot.resolve("Unrelated.groovy").toUri(),
+				URI.create(symbols.get(0).getLocation().getUri()));
+
+		synchronized (progressNotifications) {
+			Assertions.assertFalse(progressNotifications.isEmpty());
+			Object first = progressNotifications.get(0).getValue().getLeft();
+			Assertions.assertTrue(first instanceof WorkDoneProgressBegin);
+			Assertions.assertEquals("Indexing workspace", ((WorkDoneProgressBegin) first).getTitle());
+			Object last = progressNotifications.get(progressNotifications.size() - 1).getValue().getLeft();
+			Assertions.assertTrue(last instanceof WorkDoneProgressEnd);
+		}
+	}
+
+	@Test
+	void testIndexingDoesNotWaitForProgressToken() throws Exception {
+		progressCreated = new CompletableFuture<>();
+		Path filePath = workspaceRoot.resolve("Opened.groovy");
+		String uri = filePath.toUri().toString();
+		String contents = new String(Files.readAllBytes(filePath), StandardCharsets.UTF_8);
+		TextDocumentItem textDocumentItem = new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, contents);
+		services.didOpen(new DidOpenTextDocumentParams(textDocumentItem));
+		// the client hasn't accepted the token yet
+		services.whenWorkspaceIndexed().get(4, TimeUnit.SECONDS);
+
+		// progress isn't started after indexing has finished
+		progressCreated.complete(null);
+		synchronized (progressNotifications) {
+			Assertions.assertTrue(progressNotifications.isEmpty());
+		}
+	}
+
+	@Test
+	void testRenameIncludesFilesNotIndexedYet() throws Exception {
+		// enough files that indexing needs several batches
+		for (int i = 0; i < 500; i++) {
+			writeFile("Filler" + i + ".groovy",
+					"class Filler" + i + " {\n  void fill() {\n    println 'fill'\n  }\n}\n");
+		}
+		services.setWorkspaceRoot(workspaceRoot);
+		Path filePath = workspaceRoot.resolve("Opened.groovy");
+		String uri = filePath.toUri().toString();
+		String contents = new String(Files.readAllBytes(filePath), StandardCharsets.UTF_8);
+		TextDocumentItem textDocumentItem = new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, contents);
+		services.didOpen(new DidOpenTextDocumentParams(textDocumentItem));
+
+		// User isn't compiled with the open file, because the open file
+		// doesn't reference it
+		WorkspaceEdit edit = services
+				.rename(new RenameParams(new TextDocumentIdentifier(uri), new Position(2, 8), "reopen")).get();
+		URI userURI = workspaceRoot.resolve("User.groovy").toUri();
+		boolean hasUserEdit = edit.getDocumentChanges().stream()
+				.anyMatch(change -> change.isLeft()
+						&& userURI.equals(URI.create(change.getLeft().getTextDocument().getUri())));
+		Assertions.assertTrue(hasUserEdit);
+	}
+
+	@Test
+	void testFileWatchersAreRegistered() throws Exception {
+		services.registerFileWatchers().get();
+		Assertions.assertEquals(1, registrations.size());
+		Registration registration = registrations.get(0).getRegistrations().get(0);
+		Assertions.assertEquals("workspace/didChangeWatchedFiles", registration.getMethod());
+		DidChangeWatchedFilesRegistrationOptions options = (DidChangeWatchedFilesRegistrationOptions) registration
+				.getRegisterOptions();
+		Assertions.assertEquals("**/*.groovy", options.getWatchers().get(0).getGlobPattern());
+	}
+
+	@Test
+	void testFileCreatedOutsideEditorIsFoundWithoutWatchers() throws Exception {
+		writeFile("Creator.groovy", "class Creator {\n  Created created\n}\n");
+		services.setWorkspaceRoot(workspaceRoot);
+		Path filePath = workspaceRoot.resolve("Creator.groovy");
+		String uri = filePath.toUri().toString();
+		String contents = new String(Files.readAllBytes(filePath), StandardCharsets.UTF_8);
+		services.didOpen(new DidOpenTextDocumentParams(new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, contents)));
+		services.documentSymbol(new DocumentSymbolParams(new TextDocumentIdentifier(uri))).get();
+		Assertions.assertTrue(hasDiagnostics(URI.create(uri)));
+
+		// the client doesn't report this file, so it's found by the next
+		// rescan of the workspace
+		writeFile("Created.groovy", "class Created {}\n");
+		services.rescanSourceFiles().get();
+		Assertions.assertFalse(hasDiagnostics(URI.create(uri)));
+	}
+
+	@Test
+	void testOpenFileKeepsDiagnosticsDuringIndexing() throws Exception {
+		// semantic errors are reported only by the compile that finds them
+		writeFile("Broken.groovy", "class Broken {\n  Missing missing\n}\n");
+		services.setWorkspaceRoot(workspaceRoot);
+		Path filePath = workspaceRoot.resolve("Broken.groovy");
+		String uri = filePath.toUri().toString();
+		String contents = new String(Files.readAllBytes(filePath), StandardCharsets.UTF_8);
+		services.didOpen(new DidOpenTextDocumentParams(new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, contents)));
+		services.documentSymbol(new DocumentSymbolParams(new TextDocumentIdentifier(uri))).get();
+		Assertions.assertTrue(hasDiagnostics(URI.create(uri)));
+
+		// the other files are compiled in background batches without the
+		// open file
+		services.whenWorkspaceIndexed().get();
+		Assertions.assertTrue(hasDiagnostics(URI.create(uri)));
+	}
+
+	@Test
+	void testUnchangedFilesAreDeferredOnWarmRestart(@TempDir Path warmCacheDirectory) throws Exception {
+		writeFile("Deferred.groovy", "/** Deferred until needed. */\nclass Deferred {\n  Missing missing\n}\n");
+		writeFile("Completer.groovy", "class Completer {\n  Completer() {\n    Defer\n  }\n}\n");
+		GroovyServices warmServices = startWarmServices(warmCacheDirectory);
+		Path filePath = workspaceRoot.resolve("Completer.groovy");
+		String uri = filePath.toUri().toString();
+		String contents = new String(Files.readAllBytes(filePath), StandardCharsets.UTF_8);
+		warmServices.didOpen(new DidOpenTextDocumentParams(new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, contents)));
+		progressEnded.get(10, TimeUnit.SECONDS);
+
+		// Deferred hasn't changed since its summary was saved
+		URI deferredURI = workspaceRoot.resolve("Deferred.groovy").toUri();
+		Assertions.assertFalse(hasDiagnostics(deferredURI));
+
+		// but its class can still be completed
+		Either<List<CompletionItem>, CompletionList> result = warmServices
+				.completion(new CompletionParams(new TextDocumentIdentifier(uri), new Position(2, 9))).get();
+		List<CompletionItem> items = result.isLeft() ? result.getLeft() : result.getRight().getItems();
+		CompletionItem item = items.stream().filter(it -> "Deferred".equals(it.getLabel())).findFirst().orElse(null);
+		Assertions.assertNotNull(item);
+		Assertions.assertTrue(item.getDocumentation().getRight().getValue().contains("Deferred until needed."));
+
+		// it's compiled when the whole workspace is needed
+		warmServices.whenWorkspaceIndexed().get();
+		Assertions.assertTrue(hasDiagnostics(deferredURI));
+	}
+
+	@Test
+	void testDeferredFilesAreCompiledWhenIdle(@TempDir Path warmCacheDirectory) throws Exception {
+		writeFile("Deferred.groovy", "class Deferred {\n  Missing missing\n}\n");
+		writeFile("Opened.groovy", "class Opened {}\n");
+		GroovyServices warmServices = startWarmServices(warmCacheDirectory);
+		Path filePath = workspaceRoot.resolve("Opened.groovy");
+		String uri = filePath.toUri().toString();
+		String contents = new String(Files.readAllBytes(filePath), StandardCharsets.UTF_8);
+		warmServices.didOpen(new DidOpenTextDocumentParams(new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, contents)));
+		progressEnded.get(10, TimeUnit.SECONDS);
+
+		// no request needs the whole workspace, but the final pass still
+		// reports the diagnostics of the deferred file
+		URI deferredURI = workspaceRoot.resolve("Deferred.groovy").toUri();
+		for (int i = 0; i < 100 && !hasDiagnostics(deferredURI); i++) {
+			Thread.sleep(100);
+		}
+		Assertions.assertTrue(hasDiagnostics(deferredURI));
+	}
+
+	/**
+	 * Indexes the workspace once to save its summaries, and then starts the
+	 * services again with the same cache directory.
+	 */
+	private GroovyServices startWarmServices(Path warmCacheDirectory) throws Exception {
+		GroovyServices coldServices = cacheDirectory.createServices(warmCacheDirectory);
+		coldServices.setWorkspaceRoot(workspaceRoot);
+		coldServices.connect(createLanguageClient());
+		coldServices.whenWorkspaceIndexed().get();
+		coldServices.whenFileSummariesWritten().get();
+		coldServices.whenClasspathIndexed().join();
+
+		GroovyServices warmServices = cacheDirectory.createServices(warmCacheDirectory);
+		warmServices.setWorkDoneProgressSupported(true);
+		warmServices.setWorkspaceRoot(workspaceRoot);
+		warmServices.connect(createLanguageClient());
+		warmServices.whenFileSummariesLoaded().get();
+		synchronized (publishedDiagnostics) {
+			publishedDiagnostics.clear();
+		}
+		return warmServices;
+	}
+
+	private LanguageClient createLanguageClient() {
+		return new LanguageClient() {
+
+			@Override
+			public void telemetryEvent(Object object) {
+
+			}
+
+			@Override
+			public CompletableFuture<MessageActionItem> showMessageRequest(ShowMessageRequestParams requestParams) {
+				return null;
+			}
+
+			@Override
+			public void showMessage(MessageParams messageParams) {
+
+			}
+
+			@Override
+			public void publishDiagnostics(PublishDiagnosticsParams diagnostics) {
+				synchronized (publishedDiagnostics) {
+					publishedDiagnostics.add(diagnostics);
+				}
+			}
+
+			@Override
+			public void logMessage(MessageParams message) {
+
+			}
+
+			@Override
+			public CompletableFuture<Void> registerCapability(RegistrationParams params) {
+				registrations.add(params);
+				return CompletableFuture.completedFuture(null);
+			}
+
+			@Override
+			public CompletableFuture<Void> createProgress(WorkDoneProgressCreateParams params) {
+				return progressCreated;
+			}
+
+			@Override
+			public void notifyProgress(ProgressParams params) {
+				synchronized (progressNotifications) {
+					progressNotifications.add(params);
+				}
+				if (params.getValue().getLeft() instanceof WorkDoneProgressEnd) {
+					progressEnded.complete(null);
+				}
+			}
+		};
+	}
+
+	private boolean hasDiagnostics(URI uri) {
+		synchronized (publishedDiagnostics) {
+			for (int i = publishedDiagnostics.size() - 1; i >= 0; i--) {
+				PublishDiagnosticsParams params = publishedDiagnostics.get(i);
+				if (uri.equals(URI.create(params.getUri()))) {
+					return !params.getDiagnostics().isEmpty();
+				}
+			}
+		}
+		return false;
+	}
+
+	private void writeFile(String fileName, String contents) throws Exception {
+		Files.write(workspaceRoot.resolve(fileName), contents.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private void deleteRecursively(Path path) throws Exception {
+		if (!Files.exists(path)) {
+			return;
+		}
+		Files.walk(path).sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+	}
+}
@@ -0,0 +1,204 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+
+import org.eclipse.lsp4j.DidOpenTextDocumentParams;
+import org.eclipse.lsp4j.MessageActionItem;
+import org.eclipse.lsp4j.MessageParams;
+import org.eclipse.lsp4j.PublishDiagnosticsParams;
+import org.eclipse.lsp4j.ShowMessageRequestParams;
+import org.eclipse.lsp4j.SymbolInformation;
+import org.eclipse.lsp4j.TextDocumentItem;
+import org.eclipse.lsp4j.WorkspaceSymbolParams;
+import org.eclipse.lsp4j.services.LanguageClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+
+class GroovyServicesWorkspaceSymbolTests {
+	private static final String LANGUAGE_GROOVY = "groovy";
+	private static final String PATH_WORKSPACE = "./build/test_workspace/";
+	private static final String PATH_SRC = "./src/main/groovy";
+	private static final String PATH_WARM_RESTART = "./build/test_warm_restart/";
+
+	@RegisterExtension
+	static TestCacheDirectory cacheDirectory = new TestCacheDirectory();
+
+	private GroovyServices services;
+	private Path workspaceRoot;
+	private Path srcRoot;
+
+	@BeforeEach
+	void setup() {
+		workspaceRoot = Paths.get(System.getProperty("user.dir")).resolve(PATH_WORKSPACE);
+		srcRoot = workspaceRoot.resolve(PATH_SRC);
+		if (!Files.exists(srcRoot)) {
+			srcRoot.toFile().mkdirs();
+		}
+
+		services = cacheDirectory.createServices();
+		services.setWorkspaceRoot(workspaceRoot);
+		services.connect(createLanguageClient());
+	}
+
+	@AfterEach
+	void tearDown() {
+		services = null;
+		workspaceRoot = null;
+		srcRoot = null;
+	}
+
+	@Test
+	void testSymbolsAreRankedByMatch() throws Exception {
+		Path filePath = srcRoot.resolve("WorkspaceSymbols.groovy");
+		String uri = filePath.toUri().toString();
+		StringBuilder contents = new StringBuilder();
+		contents.append("class WorkspaceSymbols {\n");
+		contents.append("  public String symbolName\n");
+		contents.append("  public void findSymbol() {}\n");
+		contents.append("  public void symbol() {}\n");
+		contents.append("}\n");
+		TextDocumentItem textDocumentItem = new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, contents.toString());
+		services.didOpen(new DidOpenTextDocumentParams(textDocumentItem));
+		List<? extends SymbolInformation> symbols = services.symbol(new WorkspaceSymbolParams("symbol")).get();
+		List<String> names = symbols.stream().map(SymbolInformation::getName).collect(Collectors.toList());
+		Assertions.assertEquals("symbol", names.get(0));
+		Assertions.assertTrue(names.indexOf("symbolName") < names.indexOf("findSymbol"));
+		Assertions.assertTrue(names.indexOf("findSymbol") < names.indexOf("WorkspaceSymbols"));
+	}
+
+	@Test
+	void testCamelCaseHumps() throws Exception {
+		Path filePath = srcRoot.resolve("WorkspaceSymbols.groovy");
+		String uri = filePath.toUri().toString();
+		StringBuilder contents = new StringBuilder();
+		contents.append("class WorkspaceSymbols {\n");
+		contents.append("  public void findSymbol() {}\n");
+		contents.append("}\n");
+		TextDocumentItem textDocumentItem = new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, contents.toString());
+		services.didOpen(new DidOpenTextDocumentParams(textDocumentItem));
+		List<? extends SymbolInformation> symbols = services.symbol(new WorkspaceSymbolParams("ws")).get();
+		Assertions.assertEquals(1, symbols.size());
+		Assertions.assertEquals("WorkspaceSymbols", symbols.get(0).getName());
+		symbols = services.symbol(new WorkspaceSymbolParams("fs")).get();
+		Assertions.assertEquals(1, symbols.size());
+		Assertions.assertEquals("findSymbol", symbols.get(0).getName());
+	}
+
+	@Test
+	void testSavedSymbolsAreUsedBeforeFirstCompile() throws Exception {
+		Path testRoot = Paths.get(System.getProperty("user.dir")).resolve(PATH_WARM_RESTART);
+		deleteRecursively(testRoot);
+		Path warmWorkspaceRoot = testRoot.resolve("workspace");
+		Path filePath = warmWorkspaceRoot.resolve("WarmRestart.groovy");
+		Files.createDirectories(warmWorkspaceRoot);
+		String contents = "class WarmRestart {\n  public void warmMethod() {}\n}\n";
+		Files.write(filePath, contents.getBytes(StandardCharsets.UTF_8));
+		try {
+			GroovyServices firstServices = cacheDirectory.createServices();
+			firstServices.setWorkspaceRoot(warmWorkspaceRoot);
+			firstServices.connect(createLanguageClient());
+			String uri = filePath.toUri().toString();
+			TextDocumentItem textDocumentItem = new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, contents);
+			firstServices.didOpen(new DidOpenTextDocumentParams(textDocumentItem));
+			Assertions.assertEquals(1, firstServices.symbol(new WorkspaceSymbolParams("warmMethod")).get().size());
+			firstServices.whenFileSummariesWritten().get();
+
+			// nothing is opened, so nothing is compiled, and the symbols can
+			// only come from the saved summaries
+			GroovyServices secondServices = cacheDirectory.createServices();
+			secondServices.setWorkspaceRoot(warmWorkspaceRoot);
+			secondServices.connect(createLanguageClient());
+			secondServices.whenFileSummariesLoaded().get();
+			List<? extends SymbolInformation> symbols = secondServices.symbol(new WorkspaceSymbolParams("warm"))
+					.get();
+			List<String> names = symbols.stream().map(SymbolInformation::getName).collect(Collectors.toList());
+			Assertions.assertTrue(names.contains("WarmRestart"));
+			Assertions.assertTrue(names.contains("warmMethod"));
+			Assertions.assertEquals(uri, symbols.get(0).getLocation().getUri());
+
+			// a file that changed since it was compiled has no valid summary,
+			// so its old symbols must not be found
+			Files.write(filePath, "class Renamed {}\n".getBytes(StandardCharsets.UTF_8));
+			GroovyServices thirdServices = cacheDirectory.createServices();
+			thirdServices.setWorkspaceRoot(warmWorkspaceRoot);
+			thirdServices.connect(createLanguageClient());
+			thirdServices.whenFileSummariesLoaded().get();
+			Assertions.assertEquals(0, thirdServices.symbol(new WorkspaceSymbolParams("warm")).get().size());
+			for (GroovyServices warmServices : Arrays.asList(firstServices, secondServices, thirdServices)) {
+				warmServices.whenClasspathIndexed().join();
+				warmServices.whenFileSummariesWritten().join();
+			}
+		} finally {
+			deleteRecursively(testRoot);
+		}
+	}
+
+	private LanguageClient createLanguageClient() {
+		return new LanguageClient() {
+
+			@Override
+			public void telemetryEvent(Object object) {
+
+			}
+
+			@Override
+			public CompletableFuture<MessageActionItem> showMessageRequest(ShowMessageRequestParams requestParams) {
+				return null;
+			}
+
+			@Override
+			public void showMessage(MessageParams messageParams) {
+
+			}
+
+			@Override
+			public void publishDiagnostics(PublishDiagnosticsParams diagnostics) {
+
+			}
+
+			@Override
+			public void logMessage(MessageParams message) {
+
+			}
+		};
+	}
+
+	private void deleteRecursively(Path path) throws Exception {
+		if (!Files.exists(path)) {
+			return;
+		}
+		Files.walk(path).sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+	}
+}
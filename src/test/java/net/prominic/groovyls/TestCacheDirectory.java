@@ -0,0 +1,86 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.jupiter.api.extension.AfterAllCallback;
+import org.junit.jupiter.api.extension.AfterTestExecutionCallback;
+import org.junit.jupiter.api.extension.BeforeAllCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+
+import net.prominic.groovyls.classpath.ClasspathIndexer;
+import net.prominic.groovyls.config.CompilationUnitFactory;
+
+/**
+ * A cache directory that is shared by the tests of a class and deleted after
+ * them. The services created here are awaited after each test, before its
+ * workspace is deleted, because their caches are written in the background.
+ */
+class TestCacheDirectory implements BeforeAllCallback, AfterTestExecutionCallback, AfterAllCallback {
+	private Path path;
+	private List<GroovyServices> createdServices = new ArrayList<>();
+
+	Path getPath() {
+		return path;
+	}
+
+	GroovyServices createServices() {
+		return createServices(path);
+	}
+
+	GroovyServices createServices(Path cacheDirectory) {
+		return track(new GroovyServices(new CompilationUnitFactory(), cacheDirectory));
+	}
+
+	GroovyServices createServices(ClasspathIndexer classpathIndexer) {
+		return track(new GroovyServices(new CompilationUnitFactory(), path, classpathIndexer));
+	}
+
+	private synchronized GroovyServices track(GroovyServices services) {
+		createdServices.add(services);
+		return services;
+	}
+
+	@Override
+	public void beforeAll(ExtensionContext context) throws Exception {
+		path = Files.createTempDirectory("groovyls-cache");
+	}
+
+	@Override
+	public synchronized void afterTestExecution(ExtensionContext context) {
+		for (GroovyServices services : createdServices) {
+			services.whenClasspathIndexed().join();
+			services.whenFileSummariesWritten().join();
+		}
+		createdServices.clear();
+	}
+
+	@Override
+	public void afterAll(ExtensionContext context) throws Exception {
+		Files.walk(path).sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		path = null;
+	}
+}
@@ -0,0 +1,87 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.classpath;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ClasspathIndexTests {
+	@Test
+	void testClassesWithNamePrefix() {
+		ClasspathIndex index = createIndex();
+		Assertions.assertEquals(Arrays.asList("com.example.Map", "com.example.MapEntry", "com.example.other.Map"),
+				getNames(index.getClassesWithNamePrefix("com.example.")));
+		Assertions.assertEquals(Arrays.asList("com.example.Map", "com.example.MapEntry"),
+				getNames(index.getClassesWithNamePrefix("com.example.M")));
+		Assertions.assertTrue(index.getClassesWithNamePrefix("org.").isEmpty());
+	}
+
+	@Test
+	void testClassesWithSimpleNamePrefix() {
+		ClasspathIndex index = createIndex();
+		Assertions.assertEquals(
+				Arrays.asList("java.util.Map$Entry", "com.example.Map", "com.example.other.Map", "com.example.MapEntry"),
+				getNames(index.getClassesWithSimpleNamePrefix("")));
+		Assertions.assertEquals(Arrays.asList("com.example.Map", "com.example.other.Map", "com.example.MapEntry"),
+				getNames(index.getClassesWithSimpleNamePrefix("Map")));
+		Assertions.assertEquals(Arrays.asList("java.util.Map$Entry"),
+				getNames(index.getClassesWithSimpleNamePrefix("Ent")));
+		Assertions.assertTrue(index.getClassesWithSimpleNamePrefix("Zzz").isEmpty());
+	}
+
+	@Test
+	void testPackageNamesWithPrefix() {
+		ClasspathIndex index = createIndex();
+		Assertions.assertEquals(Arrays.asList("com", "com.example", "com.example.other"),
+				index.getPackageNamesWithPrefix("com"));
+		Assertions.assertEquals(Arrays.asList("java", "java.util"), index.getPackageNamesWithPrefix("java"));
+	}
+
+	@Test
+	void testFirstElementWinsForDuplicateClass() {
+		ClasspathElementIndex element1 = new ClasspathElementIndex(URI.create("file:///one.jar"), 0, 0,
+				Arrays.asList(new ClasspathClass("com.example", "Duplicate", 0)));
+		ClasspathElementIndex element2 = new ClasspathElementIndex(URI.create("file:///two.jar"), 0, 0,
+				Arrays.asList(new ClasspathClass("com.example", "Duplicate", ClasspathClass.FLAG_INTERFACE)));
+		ClasspathIndex index = new ClasspathIndex(Arrays.asList(element1, element2));
+		List<ClasspathClass> classes = index.getClassesWithSimpleNamePrefix("Duplicate");
+		Assertions.assertEquals(1, classes.size());
+		Assertions.assertFalse(classes.get(0).isInterface());
+	}
+
+	private ClasspathIndex createIndex() {
+		ClasspathElementIndex element1 = new ClasspathElementIndex(URI.create("file:///example.jar"), 0, 0,
+				Arrays.asList(new ClasspathClass("com.example", "MapEntry", 0),
+						new ClasspathClass("com.example.other", "Map", ClasspathClass.FLAG_INTERFACE),
+						new ClasspathClass("com.example", "Map", 0)));
+		ClasspathElementIndex element2 = new ClasspathElementIndex(URI.create("jrt:/java.base"), 0, 0,
+				Arrays.asList(new ClasspathClass("java.util", "Map$Entry", ClasspathClass.FLAG_INTERFACE)));
+		return new ClasspathIndex(Arrays.asList(element1, element2));
+	}
+
+	private List<String> getNames(List<ClasspathClass> classes) {
+		return classes.stream().map(ClasspathClass::getName).collect(Collectors.toList());
+	}
+}
@@ -0,0 +1,152 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.classpath;
+
+import java.io.File;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.Comparator;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.Gson;
+
+class ClasspathIndexerTests {
+	private static final String PATH_TEST_CLASSPATH = "./build/test_classpath/";
+
+	private Path testRoot;
+	private Path jarPath;
+	private Path cacheDirectory;
+	private URLClassLoader classLoader;
+
+	@BeforeEach
+	void setup() throws Exception {
+		testRoot = Paths.get(System.getProperty("user.dir")).resolve(PATH_TEST_CLASSPATH);
+		deleteRecursively(testRoot);
+		Files.createDirectories(testRoot);
+		// copy a .jar file so that its modification time may be changed
+		Path originalJarPath = Paths.get(Gson.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+		jarPath = testRoot.resolve("gson.jar");
+		Files.copy(originalJarPath, jarPath, StandardCopyOption.REPLACE_EXISTING);
+		cacheDirectory = testRoot.resolve("cache");
+		classLoader = new URLClassLoader(new URL[] { jarPath.toUri().toURL() }, null);
+	}
+
+	@AfterEach
+	void tearDown() throws Exception {
+		classLoader.close();
+		classLoader = null;
+		deleteRecursively(testRoot);
+		testRoot = null;
+	}
+
+	@Test
+	void testClassesAndPackagesAreIndexed() {
+		ClasspathIndex index = new ClasspathIndexer(cacheDirectory).index(classLoader);
+		Assertions.assertTrue(index.getClasses().stream().anyMatch(c -> c.getName().equals("com.google.gson.Gson")));
+		Assertions.assertTrue(index.getClasses().stream().anyMatch(c -> c.getName().equals("java.util.List")
+				&& c.getSimpleName().equals("List") && c.isInterface()));
+		Assertions.assertTrue(index.getPackageNames().contains("com.google.gson"));
+		Assertions.assertTrue(index.getPackageNames().contains("com.google"));
+	}
+
+	@Test
+	void testCachedIndexIsUsedForUnchangedJar() throws Exception {
+		ClasspathIndexer indexer = new ClasspathIndexer(cacheDirectory);
+		URI jarURI = findJarURI(indexer.index(classLoader));
+		Path cacheFile = indexer.getCacheFile(jarURI);
+		Assertions.assertTrue(Files.exists(cacheFile));
+
+		// replace the cached classes to detect whether the .jar file was
+		// scanned again
+		ClasspathClass cachedClass = new ClasspathClass("com.example", "Cached", 0);
+		new ClasspathElementIndex(jarURI, Files.size(jarPath), Files.getLastModifiedTime(jarPath).toMillis(),
+				Collections.singletonList(cachedClass)).write(cacheFile);
+
+		ClasspathIndex index = new ClasspathIndexer(cacheDirectory).index(classLoader);
+		Assertions.assertTrue(index.getClasses().stream().anyMatch(c -> c.getName().equals("com.example.Cached")));
+		Assertions.assertFalse(index.getClasses().stream().anyMatch(c -> c.getName().equals("com.google.gson.Gson")));
+	}
+
+	@Test
+	void testModifiedJarIsScannedAgain() throws Exception {
+		ClasspathIndexer indexer = new ClasspathIndexer(cacheDirectory);
+		URI jarURI = findJarURI(indexer.index(classLoader));
+		Path cacheFile = indexer.getCacheFile(jarURI);
+		ClasspathClass cachedClass = new ClasspathClass("com.example", "Cached", 0);
+		new ClasspathElementIndex(jarURI, Files.size(jarPath), Files.getLastModifiedTime(jarPath).toMillis(),
+				Collections.singletonList(cachedClass)).write(cacheFile);
+
+		FileTime lastModified = Files.getLastModifiedTime(jarPath);
+		Files.setLastModifiedTime(jarPath, FileTime.fromMillis(lastModified.toMillis() + 10000));
+
+		ClasspathIndex index = new ClasspathIndexer(cacheDirectory).index(classLoader);
+		Assertions.assertFalse(index.getClasses().stream().anyMatch(c -> c.getName().equals("com.example.Cached")));
+		Assertions.assertTrue(index.getClasses().stream().anyMatch(c -> c.getName().equals("com.google.gson.Gson")));
+	}
+
+	@Test
+	void testUnchangedElementsOfPreviousIndexAreReused() throws Exception {
+		ClasspathIndexer indexer = new ClasspathIndexer(cacheDirectory);
+		ClasspathIndex previousIndex = indexer.index(classLoader);
+		URI jarURI = findJarURI(previousIndex);
+		// without the cache, the elements could only come from the previous
+		// index or from scanning again
+		deleteRecursively(cacheDirectory);
+
+		ClasspathIndex index = indexer.index(classLoader, previousIndex);
+		Assertions.assertSame(findElement(previousIndex, jarURI), findElement(index, jarURI));
+		Assertions.assertFalse(Files.exists(indexer.getCacheFile(jarURI)));
+
+		FileTime lastModified = Files.getLastModifiedTime(jarPath);
+		Files.setLastModifiedTime(jarPath, FileTime.fromMillis(lastModified.toMillis() + 10000));
+		ClasspathIndex modifiedIndex = indexer.index(classLoader, index);
+		Assertions.assertNotSame(findElement(index, jarURI), findElement(modifiedIndex, jarURI));
+		Assertions.assertTrue(Files.exists(indexer.getCacheFile(jarURI)));
+		Assertions.assertTrue(
+				modifiedIndex.getClasses().stream().anyMatch(c -> c.getName().equals("com.google.gson.Gson")));
+	}
+
+	private ClasspathElementIndex findElement(ClasspathIndex index, URI uri) {
+		return index.getElements().stream().filter(element -> element.getURI().equals(uri)).findFirst().get();
+	}
+
+	private URI findJarURI(ClasspathIndex index) {
+		return index.getElements().stream().map(ClasspathElementIndex::getURI)
+				.filter(uri -> uri.getPath() != null && uri.getPath().endsWith("gson.jar")).findFirst().get();
+	}
+
+	private void deleteRecursively(Path path) throws Exception {
+		if (!Files.exists(path)) {
+			return;
+		}
+		Files.walk(path).sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+	}
+}
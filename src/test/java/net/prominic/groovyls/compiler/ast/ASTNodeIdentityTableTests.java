@@ -0,0 +1,133 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.compiler.ast;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.codehaus.groovy.ast.ASTNode;
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.ast.expr.ConstantExpression;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ASTNodeIdentityTableTests {
+	@Test
+	void testNodesAreComparedByIdentity() {
+		ASTNodeIdentityTable table = new ASTNodeIdentityTable();
+		ClassNode node1 = new ClassNode("Example", 0, null);
+		ClassNode node2 = new ClassNode("Example", 0, null);
+		Assertions.assertEquals(node1, node2);
+		table.put(node1, 1);
+		Assertions.assertEquals(1, table.get(node1));
+		Assertions.assertEquals(ASTNodeIdentityTable.NOT_FOUND, table.get(node2));
+	}
+
+	@Test
+	void testPutGetAndRemoveManyNodes() {
+		ASTNodeIdentityTable table = new ASTNodeIdentityTable();
+		List<ASTNode> nodes = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			ASTNode node = new ConstantExpression(i);
+			nodes.add(node);
+			table.put(node, i);
+		}
+		Assertions.assertEquals(1000, table.size());
+		for (int i = 0; i < 1000; i += 2) {
+			table.remove(nodes.get(i), i);
+		}
+		Assertions.assertEquals(500, table.size());
+		for (int i = 0; i < 1000; i++) {
+			long expected = (i % 2 == 0) ? ASTNodeIdentityTable.NOT_FOUND : i;
+			Assertions.assertEquals(expected, table.get(nodes.get(i)));
+		}
+	}
+
+	@Test
+	void testRemoveIgnoresDifferentValue() {
+		ASTNodeIdentityTable table = new ASTNodeIdentityTable();
+		ASTNode node = new ConstantExpression("a");
+		table.put(node, 1);
+		table.put(node, 2);
+		table.remove(node, 1);
+		Assertions.assertEquals(2, table.get(node));
+		Assertions.assertEquals(1, table.size());
+	}
+
+	@Test
+	void testCopyIsIndependent() {
+		ASTNodeIdentityTable table = new ASTNodeIdentityTable();
+		ASTNode node1 = new ConstantExpression("a");
+		ASTNode node2 = new ConstantExpression("b");
+		table.put(node1, 1);
+		ASTNodeIdentityTable copy = new ASTNodeIdentityTable(table);
+		copy.remove(node1, 1);
+		copy.put(node2, 2);
+		Assertions.assertEquals(1, table.get(node1));
+		Assertions.assertEquals(ASTNodeIdentityTable.NOT_FOUND, table.get(node2));
+		Assertions.assertEquals(ASTNodeIdentityTable.NOT_FOUND, copy.get(node1));
+		Assertions.assertEquals(2, copy.get(node2));
+	}
+
+	@Test
+	void testCopiesShareUnchangedNodes() {
+		Random random = new Random(1);
+		List<ASTNode> nodes = new ArrayList<>();
+		for (int i = 0; i < 100000; i++) {
+			nodes.add(new ConstantExpression(i));
+		}
+		ASTNodeIdentityTable table = new ASTNodeIdentityTable();
+		Map<ASTNode, Long> expected = new IdentityHashMap<>();
+		List<ASTNodeIdentityTable> copies = new ArrayList<>();
+		List<Map<ASTNode, Long>> expectedCopies = new ArrayList<>();
+		for (int i = 0; i < 200000; i++) {
+			ASTNode node = nodes.get(random.nextInt(nodes.size()));
+			if (random.nextInt(3) == 0) {
+				Long value = expected.get(node);
+				if (value != null) {
+					table.remove(node, value);
+					expected.remove(node);
+				}
+			} else {
+				table.put(node, i);
+				expected.put(node, (long) i);
+			}
+			if (i % 20000 == 0) {
+				copies.add(table);
+				expectedCopies.add(new IdentityHashMap<>(expected));
+				table = new ASTNodeIdentityTable(table);
+			}
+		}
+		copies.add(table);
+		expectedCopies.add(expected);
+		for (int i = 0; i < copies.size(); i++) {
+			ASTNodeIdentityTable copy = copies.get(i);
+			Map<ASTNode, Long> expectedCopy = expectedCopies.get(i);
+			Assertions.assertEquals(expectedCopy.size(), copy.size());
+			for (ASTNode node : nodes) {
+				Long value = expectedCopy.get(node);
+				Assertions.assertEquals(value != null ? value : ASTNodeIdentityTable.NOT_FOUND, copy.get(node));
+			}
+		}
+	}
+}
@@ -0,0 +1,158 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.compiler.ast;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.codehaus.groovy.ast.ASTNode;
+import org.codehaus.groovy.ast.expr.ConstantExpression;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ASTNodePositionIndexTests {
+	private static final Comparator<ASTNode> NO_PREFERENCE = (n1, n2) -> 0;
+
+	@Test
+	void testNestedRangesFindInnermostNode() {
+		ASTNode outer = createNode(0, 0, 4, 1);
+		ASTNode middle = createNode(1, 2, 3, 3);
+		ASTNode inner = createNode(2, 4, 2, 10);
+		ASTNodePositionIndex index = new ASTNodePositionIndex(Arrays.asList(outer, middle, inner), NO_PREFERENCE);
+		Assertions.assertSame(inner, index.getNodeAt(2, 4));
+		Assertions.assertSame(inner, index.getNodeAt(2, 10));
+		Assertions.assertSame(middle, index.getNodeAt(2, 11));
+		Assertions.assertSame(middle, index.getNodeAt(1, 2));
+		Assertions.assertSame(outer, index.getNodeAt(1, 1));
+		Assertions.assertSame(outer, index.getNodeAt(4, 0));
+		Assertions.assertNull(index.getNodeAt(4, 2));
+		Assertions.assertNull(index.getNodeAt(5, 0));
+	}
+
+	@Test
+	void testOverlappingRangesPreferLaterStart() {
+		ASTNode first = createNode(0, 0, 0, 10);
+		ASTNode second = createNode(0, 5, 0, 15);
+		ASTNodePositionIndex index = new ASTNodePositionIndex(Arrays.asList(second, first), NO_PREFERENCE);
+		Assertions.assertSame(first, index.getNodeAt(0, 4));
+		Assertions.assertSame(second, index.getNodeAt(0, 5));
+		Assertions.assertSame(second, index.getNodeAt(0, 10));
+		Assertions.assertSame(second, index.getNodeAt(0, 15));
+		Assertions.assertNull(index.getNodeAt(0, 16));
+	}
+
+	@Test
+	void testLaterNodeMayEndBeforeEarlierNode() {
+		ASTNode outer = createNode(0, 0, 9, 0);
+		ASTNode sibling1 = createNode(1, 0, 2, 0);
+		ASTNode sibling2 = createNode(3, 0, 4, 0);
+		ASTNodePositionIndex index = new ASTNodePositionIndex(Arrays.asList(outer, sibling1, sibling2),
+				NO_PREFERENCE);
+		// the last node to start doesn't contain the position, so an earlier
+		// one must be found
+		Assertions.assertSame(outer, index.getNodeAt(5, 0));
+		Assertions.assertSame(outer, index.getNodeAt(2, 1));
+		Assertions.assertSame(sibling1, index.getNodeAt(2, 0));
+		Assertions.assertSame(sibling2, index.getNodeAt(3, 0));
+	}
+
+	@Test
+	void testZeroWidthRanges() {
+		ASTNode outer = createNode(0, 0, 0, 20);
+		ASTNode empty = createNode(0, 8, 0, 8);
+		ASTNode noEnd = new ConstantExpression("noEnd");
+		noEnd.setLineNumber(1);
+		noEnd.setColumnNumber(13);
+		ASTNodePositionIndex index = new ASTNodePositionIndex(Arrays.asList(outer, empty, noEnd), NO_PREFERENCE);
+		Assertions.assertSame(empty, index.getNodeAt(0, 8));
+		Assertions.assertSame(outer, index.getNodeAt(0, 7));
+		Assertions.assertSame(outer, index.getNodeAt(0, 9));
+		// a node without an end position is treated as zero width
+		Assertions.assertSame(noEnd, index.getNodeAt(0, 12));
+		Assertions.assertSame(outer, index.getNodeAt(0, 13));
+	}
+
+	@Test
+	void testSameRangeUsesPreferredNode() {
+		ASTNode node1 = createNode(0, 0, 0, 10);
+		ASTNode node2 = createNode(0, 0, 0, 10);
+		Comparator<ASTNode> preferNode2 = (n1, n2) -> {
+			if (n1 == n2) {
+				return 0;
+			}
+			return n1 == node2 ? -1 : 1;
+		};
+		ASTNodePositionIndex index = new ASTNodePositionIndex(Arrays.asList(node1, node2), preferNode2);
+		Assertions.assertSame(node2, index.getNodeAt(0, 5));
+		ASTNodePositionIndex reversedIndex = new ASTNodePositionIndex(Arrays.asList(node2, node1), preferNode2);
+		Assertions.assertSame(node2, reversedIndex.getNodeAt(0, 5));
+	}
+
+	@Test
+	void testNodesWithoutPositionAreSkipped() {
+		ASTNodePositionIndex emptyIndex = new ASTNodePositionIndex(Collections.emptyList(), NO_PREFERENCE);
+		Assertions.assertEquals(0, emptyIndex.size());
+		Assertions.assertNull(emptyIndex.getNodeAt(0, 0));
+
+		ASTNode node = createNode(0, 0, 0, 10);
+		ASTNodePositionIndex index = new ASTNodePositionIndex(Arrays.asList(new ConstantExpression("none"), node),
+				NO_PREFERENCE);
+		Assertions.assertEquals(1, index.size());
+		Assertions.assertSame(node, index.getNodeAt(0, 0));
+	}
+
+	@Test
+	void testManyNodesMatchLinearSearch() {
+		// a line of nested and adjacent ranges, more than fit in one leaf
+		List<ASTNode> nodes = new ArrayList<>();
+		for (int i = 0; i < 300; i++) {
+			nodes.add(createNode(i, 0, i, 50));
+			nodes.add(createNode(i, i % 40, i, i % 40 + 5));
+		}
+		ASTNodePositionIndex index = new ASTNodePositionIndex(nodes, NO_PREFERENCE);
+		for (int i = 0; i < 300; i++) {
+			for (int column = 0; column <= 51; column++) {
+				ASTNode expected = null;
+				if (column >= i % 40 && column <= i % 40 + 5) {
+					expected = nodes.get(i * 2 + 1);
+				} else if (column <= 50) {
+					expected = nodes.get(i * 2);
+				}
+				Assertions.assertSame(expected, index.getNodeAt(i, column));
+			}
+		}
+	}
+
+	/**
+	 * Creates a node with an LSP range, which is converted to Groovy's lines
+	 * and columns.
+	 */
+	private ASTNode createNode(int line, int column, int lastLine, int lastColumn) {
+		ASTNode node = new ConstantExpression(line + ":" + column);
+		node.setLineNumber(line + 1);
+		node.setColumnNumber(column + 1);
+		node.setLastLineNumber(lastLine + 1);
+		node.setLastColumnNumber(lastColumn + 1);
+		return node;
+	}
+}
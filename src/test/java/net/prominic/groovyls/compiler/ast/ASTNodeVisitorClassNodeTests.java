@@ -0,0 +1,139 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.compiler.ast;
+
+import java.net.URI;
+import java.nio.file.Paths;
+import java.util.Collections;
+
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.Phases;
+import org.codehaus.groovy.control.SourceUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import net.prominic.groovyls.compiler.control.GroovyLSCompilationUnit;
+import net.prominic.groovyls.compiler.control.io.StringReaderSourceWithURI;
+
+class ASTNodeVisitorClassNodeTests {
+	private static final String PATH_SRC = "./build/test_class_nodes/";
+
+	private URI lookupURI;
+	private URI firstURI;
+	private URI secondURI;
+
+	@BeforeEach
+	void setup() {
+		lookupURI = Paths.get(System.getProperty("user.dir")).resolve(PATH_SRC).resolve("Lookup.groovy").toUri();
+		firstURI = Paths.get(System.getProperty("user.dir")).resolve(PATH_SRC).resolve("First.groovy").toUri();
+		secondURI = Paths.get(System.getProperty("user.dir")).resolve(PATH_SRC).resolve("Second.groovy").toUri();
+	}
+
+	@AfterEach
+	void tearDown() {
+		lookupURI = null;
+		firstURI = null;
+		secondURI = null;
+	}
+
+	@Test
+	void testClassIsFoundByFullyQualifiedName() {
+		GroovyLSCompilationUnit unit = new GroovyLSCompilationUnit(new CompilerConfiguration());
+		addSource(unit, lookupURI, "package com.example\nclass Lookup {\n  class Inner {}\n}\nclass Other {}\n");
+		unit.compile(Phases.CANONICALIZATION);
+		ASTNodeVisitor ast = new ASTNodeVisitor();
+		ast.visitCompilationUnit(unit);
+
+		ClassNode lookup = ast.getClassNode("com.example.Lookup");
+		Assertions.assertNotNull(lookup);
+		Assertions.assertTrue(ast.getClassNodes(lookupURI).contains(lookup));
+		Assertions.assertNotNull(ast.getClassNode("com.example.Lookup$Inner"));
+		Assertions.assertNotNull(ast.getClassNode("com.example.Other"));
+		Assertions.assertNull(ast.getClassNode("Lookup"));
+		Assertions.assertNull(ast.getClassNode("com.example.Missing"));
+		Assertions.assertEquals(3, ast.getClassNodes().size());
+		// the list isn't built again for each call
+		Assertions.assertSame(ast.getClassNodes(), ast.getClassNodes());
+	}
+
+	@Test
+	void testChangedFileReplacesItsClasses() {
+		GroovyLSCompilationUnit unit = new GroovyLSCompilationUnit(new CompilerConfiguration());
+		addSource(unit, lookupURI, "class Lookup {}\n");
+		unit.compile(Phases.CANONICALIZATION);
+		ASTNodeVisitor ast = new ASTNodeVisitor();
+		ast.visitCompilationUnit(unit);
+		ClassNode oldLookup = ast.getClassNode("Lookup");
+
+		GroovyLSCompilationUnit changedUnit = new GroovyLSCompilationUnit(new CompilerConfiguration());
+		addSource(changedUnit, lookupURI, "class Lookup {}\nclass Added {}\n");
+		changedUnit.compile(Phases.CANONICALIZATION);
+		ASTNodeVisitor newAST = new ASTNodeVisitor(ast);
+		newAST.visitCompilationUnit(changedUnit, Collections.singleton(lookupURI));
+		Assertions.assertNotSame(oldLookup, newAST.getClassNode("Lookup"));
+		Assertions.assertNotNull(newAST.getClassNode("Added"));
+		// the previous visitor is unchanged
+		Assertions.assertSame(oldLookup, ast.getClassNode("Lookup"));
+		Assertions.assertNull(ast.getClassNode("Added"));
+	}
+
+	@Test
+	void testCollisionKeepsFirstFileUntilItIsRemoved() {
+		GroovyLSCompilationUnit firstUnit = new GroovyLSCompilationUnit(new CompilerConfiguration());
+		addSource(firstUnit, firstURI, "class Duplicate {}\n");
+		firstUnit.compile(Phases.CANONICALIZATION);
+		ASTNodeVisitor ast = new ASTNodeVisitor();
+		ast.visitCompilationUnit(firstUnit);
+		ClassNode firstDuplicate = ast.getClassNode("Duplicate");
+
+		// a file with the same class isn't compiled with the first one
+		GroovyLSCompilationUnit secondUnit = new GroovyLSCompilationUnit(new CompilerConfiguration());
+		addSource(secondUnit, secondURI, "class Duplicate {}\n");
+		secondUnit.compile(Phases.CANONICALIZATION);
+		ASTNodeVisitor bothAST = new ASTNodeVisitor(ast);
+		bothAST.visitCompilationUnit(secondUnit, Collections.singleton(secondURI));
+		Assertions.assertEquals(2, bothAST.getClassNodes().size());
+		Assertions.assertSame(firstDuplicate, bothAST.getClassNode("Duplicate"));
+		ClassNode secondDuplicate = bothAST.getClassNodes(secondURI).get(0);
+		Assertions.assertNotSame(firstDuplicate, secondDuplicate);
+
+		// the second file's class takes its place
+		ASTNodeVisitor secondAST = new ASTNodeVisitor(bothAST);
+		secondAST.visitCompilationUnit(secondUnit, Collections.singleton(firstURI));
+		Assertions.assertSame(secondDuplicate, secondAST.getClassNode("Duplicate"));
+		Assertions.assertEquals(Collections.singletonList(secondDuplicate), secondAST.getClassNodes());
+		Assertions.assertSame(firstDuplicate, bothAST.getClassNode("Duplicate"));
+
+		// removing the file that isn't in the table changes nothing
+		ASTNodeVisitor firstAST = new ASTNodeVisitor(bothAST);
+		firstAST.visitCompilationUnit(firstUnit, Collections.singleton(secondURI));
+		Assertions.assertSame(firstDuplicate, firstAST.getClassNode("Duplicate"));
+		Assertions.assertEquals(Collections.singletonList(firstDuplicate), firstAST.getClassNodes());
+	}
+
+	private void addSource(GroovyLSCompilationUnit unit, URI uri, String contents) {
+		CompilerConfiguration config = unit.getConfiguration();
+		unit.addSource(new SourceUnit(Paths.get(uri).toString(), new StringReaderSourceWithURI(contents, uri, config),
+				config, unit.getClassLoader(), unit.getErrorCollector()));
+	}
+}
@@ -0,0 +1,122 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.compiler.ast;
+
+import java.net.URI;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.codehaus.groovy.ast.ASTNode;
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.Phases;
+import org.codehaus.groovy.control.SourceUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import net.prominic.groovyls.compiler.control.GroovyLSCompilationUnit;
+import net.prominic.groovyls.compiler.control.io.StringReaderSourceWithURI;
+
+class ASTNodeVisitorFileIdTests {
+	private static final String PATH_SRC = "./build/test_file_ids/";
+
+	private URI editedURI;
+	private URI otherURI;
+
+	@BeforeEach
+	void setup() {
+		editedURI = Paths.get(System.getProperty("user.dir")).resolve(PATH_SRC).resolve("Edited.groovy").toUri();
+		otherURI = Paths.get(System.getProperty("user.dir")).resolve(PATH_SRC).resolve("Other.groovy").toUri();
+	}
+
+	@AfterEach
+	void tearDown() {
+		editedURI = null;
+		otherURI = null;
+	}
+
+	@Test
+	void testRecompiledFileReusesItsId() {
+		GroovyLSCompilationUnit unit = new GroovyLSCompilationUnit(new CompilerConfiguration());
+		addSource(unit, editedURI, createContents(0));
+		addSource(unit, otherURI, "class Other {}\n");
+		unit.compile(Phases.CANONICALIZATION);
+		ASTNodeVisitor ast = new ASTNodeVisitor();
+		ast.visitCompilationUnit(unit);
+		Assertions.assertEquals(2, ast.getFileSlotCount());
+		ASTNodeVisitor firstAST = ast;
+		ClassNode firstEdited = firstAST.getClassNode("Edited");
+
+		for (int i = 1; i <= 100; i++) {
+			GroovyLSCompilationUnit changedUnit = new GroovyLSCompilationUnit(new CompilerConfiguration());
+			addSource(changedUnit, editedURI, createContents(i));
+			changedUnit.compile(Phases.CANONICALIZATION);
+			ASTNodeVisitor newAST = new ASTNodeVisitor(ast);
+			newAST.visitCompilationUnit(changedUnit, Collections.singleton(editedURI));
+			ast = newAST;
+			Assertions.assertEquals(2, ast.getFileSlotCount());
+			Assertions.assertEquals(2, ast.getFileCount());
+		}
+
+		ClassNode edited = ast.getClassNode("Edited");
+		Assertions.assertNotNull(edited.getField("field100"));
+		Assertions.assertEquals(editedURI, ast.getURI(edited));
+		ASTNode propertyNode = ast.getNodeAtLineAndColumn(editedURI, 1, 8);
+		Assertions.assertSame(edited.getProperty("field100"), propertyNode);
+		Assertions.assertEquals(otherURI, ast.getURI(ast.getClassNode("Other")));
+		// the first visitor still has its own nodes in the reused slot
+		Assertions.assertEquals(editedURI, firstAST.getURI(firstEdited));
+		Assertions.assertNull(firstAST.getURI(edited));
+		Assertions.assertNull(ast.getURI(firstEdited));
+	}
+
+	@Test
+	void testRemovedFileIdIsReusedByAnotherFile() {
+		GroovyLSCompilationUnit unit = new GroovyLSCompilationUnit(new CompilerConfiguration());
+		addSource(unit, editedURI, createContents(0));
+		unit.compile(Phases.CANONICALIZATION);
+		ASTNodeVisitor ast = new ASTNodeVisitor();
+		ast.visitCompilationUnit(unit);
+
+		GroovyLSCompilationUnit otherUnit = new GroovyLSCompilationUnit(new CompilerConfiguration());
+		addSource(otherUnit, otherURI, "class Other {}\n");
+		otherUnit.compile(Phases.CANONICALIZATION);
+		ASTNodeVisitor newAST = new ASTNodeVisitor(ast);
+		// the edited file is removed, and the other file is added
+		newAST.visitCompilationUnit(otherUnit, Arrays.asList(editedURI, otherURI));
+		Assertions.assertEquals(1, newAST.getFileSlotCount());
+		Assertions.assertEquals(1, newAST.getFileCount());
+		Assertions.assertNull(newAST.getClassNode("Edited"));
+		Assertions.assertEquals(otherURI, newAST.getURI(newAST.getClassNode("Other")));
+	}
+
+	private String createContents(int version) {
+		return "class Edited {\n  String field" + version + "\n}\n";
+	}
+
+	private void addSource(GroovyLSCompilationUnit unit, URI uri, String contents) {
+		CompilerConfiguration config = unit.getConfiguration();
+		unit.addSource(new SourceUnit(Paths.get(uri).toString(), new StringReaderSourceWithURI(contents, uri, config),
+				config, unit.getClassLoader(), unit.getErrorCollector()));
+	}
+}
@@ -0,0 +1,161 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.compiler.ast;
+
+import java.lang.ref.WeakReference;
+import java.net.URI;
+import java.nio.file.Paths;
+import java.util.List;
+
+import org.codehaus.groovy.ast.ASTNode;
+import org.codehaus.groovy.ast.MethodNode;
+import org.codehaus.groovy.ast.expr.MethodCallExpression;
+import org.codehaus.groovy.ast.stmt.BlockStatement;
+import org.codehaus.groovy.ast.stmt.Statement;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.Phases;
+import org.codehaus.groovy.control.SourceUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import net.prominic.groovyls.compiler.control.GroovyLSCompilationUnit;
+import net.prominic.groovyls.compiler.control.io.StringReaderSourceWithURI;
+
+class ASTNodeVisitorStubTests {
+	private static final String PATH_SRC = "./build/test_stubs/";
+
+	private GroovyLSCompilationUnit unit;
+	private ASTNodeVisitor ast;
+	private URI helperURI;
+	private URI callerURI;
+	private SourceUnit callerSource;
+
+	@BeforeEach
+	void setup() {
+		helperURI = Paths.get(System.getProperty("user.dir")).resolve(PATH_SRC).resolve("Helper.groovy").toUri();
+		callerURI = Paths.get(System.getProperty("user.dir")).resolve(PATH_SRC).resolve("Caller.groovy").toUri();
+		CompilerConfiguration config = new CompilerConfiguration();
+		unit = new GroovyLSCompilationUnit(config);
+		addSource(helperURI, "class Helper {\n  void help() {\n    println 'help'\n  }\n}\n");
+		callerSource = addSource(callerURI, "class Caller {\n  void call() {\n    def helper = new Helper()\n"
+				+ "    helper.help()\n    new Helper().help()\n  }\n}\n");
+		unit.compile(Phases.CANONICALIZATION);
+		ast = new ASTNodeVisitor();
+		ast.visitCompilationUnit(unit);
+	}
+
+	@AfterEach
+	void tearDown() {
+		unit = null;
+		ast = null;
+		helperURI = null;
+		callerURI = null;
+		callerSource = null;
+	}
+
+	@Test
+	void testStubKeepsDeclarationsAndReferences() {
+		MethodNode helpMethod = ast.getClassNode("Helper").getMethods("help").get(0);
+		MethodNode callMethod = ast.getClassNode("Caller").getMethods("call").get(0);
+		List<ASTNode> references = ast.getReferences(helpMethod);
+		Assertions.assertTrue(references.stream().anyMatch(node -> callerURI.equals(ast.getURI(node))));
+		int nodeCount = ast.getNodeCount(callerURI);
+
+		ast.stubFile(callerURI);
+		Assertions.assertTrue(ast.isStub(callerURI));
+		Assertions.assertFalse(ast.isStub(helperURI));
+		Assertions.assertTrue(ast.getNodeCount(callerURI) < nodeCount);
+		Assertions.assertTrue(ast.getNodes(callerURI).contains(callMethod));
+		Assertions.assertSame(ast.getClassNode("Caller"), ast.getParent(callMethod));
+		Assertions.assertEquals(references, ast.getReferences(helpMethod));
+		for (ASTNode reference : references) {
+			Assertions.assertNotNull(ast.getURI(reference));
+			if (reference instanceof MethodCallExpression) {
+				Assertions.assertEquals(callMethod, ast.getParent(reference));
+			}
+		}
+	}
+
+	@Test
+	void testStubDoesNotModifyPreviousVisitor() {
+		MethodNode callMethod = ast.getClassNode("Caller").getMethods("call").get(0);
+		Statement code = callMethod.getCode();
+		int statementCount = ((BlockStatement) code).getStatements().size();
+		List<ASTNode> nodes = ast.getNodes(callerURI);
+		int nodeCount = ast.getNodeCount(callerURI);
+		ASTNodeVisitor newAST = new ASTNodeVisitor(ast);
+		newAST.stubFile(callerURI);
+		Assertions.assertTrue(newAST.isStub(callerURI));
+		Assertions.assertFalse(ast.isStub(callerURI));
+		Assertions.assertEquals(nodeCount, ast.getNodeCount(callerURI));
+		Assertions.assertEquals(nodes, ast.getNodes(callerURI));
+		Assertions.assertSame(code, callMethod.getCode());
+		Assertions.assertEquals(statementCount, ((BlockStatement) callMethod.getCode()).getStatements().size());
+		for (ASTNode node : nodes) {
+			Assertions.assertEquals(callerURI, ast.getURI(node));
+		}
+	}
+
+	@Test
+	void testReleasedMethodBodiesAreCollected() throws Exception {
+		MethodNode helpMethod = ast.getClassNode("Helper").getMethods("help").get(0);
+		MethodNode callMethod = ast.getClassNode("Caller").getMethods("call").get(0);
+		WeakReference<Statement> code = new WeakReference<>(callMethod.getCode());
+		// helper.help() isn't a declaration, so only the name of the method it calls is in the stub
+		WeakReference<Statement> callStatement = new WeakReference<>(
+				((BlockStatement) callMethod.getCode()).getStatements().get(1));
+
+		ast.stubFile(callerURI);
+		Assertions.assertTrue(unit.releaseMethodBodies(callerSource));
+		Assertions.assertTrue(((BlockStatement) callMethod.getCode()).isEmpty());
+		for (int i = 0; i < 20 && (code.get() != null || callStatement.get() != null); i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		Assertions.assertNull(code.get());
+		Assertions.assertNull(callStatement.get());
+		// the references in the statements are still found
+		Assertions.assertTrue(ast.getReferences(helpMethod).stream()
+				.anyMatch(node -> callerURI.equals(ast.getURI(node))));
+	}
+
+	@Test
+	void testMethodBodiesOfIncompleteSourceAreKept() {
+		GroovyLSCompilationUnit incompleteUnit = new GroovyLSCompilationUnit(new CompilerConfiguration());
+		unit = incompleteUnit;
+		SourceUnit sourceUnit = addSource(callerURI, "class Caller {\n  void call() {\n    println 'call'\n  }\n}\n");
+		incompleteUnit.compile(Phases.CONVERSION);
+		MethodNode callMethod = sourceUnit.getAST().getClasses().get(0).getMethods("call").get(0);
+		Statement code = callMethod.getCode();
+
+		// compiling again continues from the current phase, which needs the bodies
+		Assertions.assertFalse(incompleteUnit.releaseMethodBodies(sourceUnit));
+		Assertions.assertSame(code, callMethod.getCode());
+	}
+
+	private SourceUnit addSource(URI uri, String contents) {
+		CompilerConfiguration config = unit.getConfiguration();
+		return unit.addSource(new SourceUnit(Paths.get(uri).toString(),
+				new StringReaderSourceWithURI(contents, uri, config), config, unit.getClassLoader(),
+				unit.getErrorCollector()));
+	}
+}
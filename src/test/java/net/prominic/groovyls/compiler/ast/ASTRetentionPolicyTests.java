@@ -0,0 +1,124 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.compiler.ast;
+
+import java.net.URI;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.Phases;
+import org.codehaus.groovy.control.SourceUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import net.prominic.groovyls.compiler.control.GroovyLSCompilationUnit;
+import net.prominic.groovyls.compiler.control.io.StringReaderSourceWithURI;
+
+class ASTRetentionPolicyTests {
+	private static final String PATH_SRC = "./build/test_retention/";
+
+	private ASTNodeVisitor ast;
+	private URI firstURI;
+	private URI secondURI;
+	private URI thirdURI;
+
+	@BeforeEach
+	void setup() {
+		firstURI = createURI("First.groovy");
+		secondURI = createURI("Second.groovy");
+		thirdURI = createURI("Third.groovy");
+		CompilerConfiguration config = new CompilerConfiguration();
+		GroovyLSCompilationUnit unit = new GroovyLSCompilationUnit(config);
+		addSource(unit, firstURI, "class First {\n  void first() {\n    println 'first'\n  }\n}\n");
+		addSource(unit, secondURI, "class Second {\n  void second() {\n    println 'second'\n  }\n}\n");
+		addSource(unit, thirdURI, "class Third {\n  void third() {\n    println 'third'\n  }\n}\n");
+		unit.compile(Phases.CANONICALIZATION);
+		ast = new ASTNodeVisitor();
+		ast.visitCompilationUnit(unit);
+	}
+
+	@AfterEach
+	void tearDown() {
+		ast = null;
+		firstURI = null;
+		secondURI = null;
+		thirdURI = null;
+	}
+
+	@Test
+	void testFilesWithinBudgetAreKept() {
+		ASTRetentionPolicy policy = new ASTRetentionPolicy();
+		policy.setNodeBudget(ast.getNodeCount(firstURI) + ast.getNodeCount(secondURI) + ast.getNodeCount(thirdURI));
+		Assertions.assertEquals(Collections.emptyList(), policy.selectStubs(ast, Collections.emptySet()));
+	}
+
+	@Test
+	void testLeastRecentlyUsedFilesAreStubbedFirst() {
+		ASTRetentionPolicy policy = new ASTRetentionPolicy();
+		policy.setNodeBudget(ast.getNodeCount(secondURI));
+		policy.touch(firstURI);
+		policy.touch(secondURI);
+		policy.touch(thirdURI);
+		policy.touch(firstURI);
+		// first was used last, so it's kept outside of the budget
+		Assertions.assertEquals(Arrays.asList(secondURI), policy.selectStubs(ast, Collections.emptySet()));
+	}
+
+	@Test
+	void testUnusedFilesAreStubbedBeforeRecentFiles() {
+		ASTRetentionPolicy policy = new ASTRetentionPolicy();
+		policy.setNodeBudget(0);
+		policy.touch(secondURI);
+		policy.touch(thirdURI);
+		List<URI> stubURIs = policy.selectStubs(ast, Collections.emptySet());
+		Assertions.assertEquals(Arrays.asList(firstURI, secondURI), stubURIs);
+	}
+
+	@Test
+	void testOpenFilesAndStubsAreNotSelected() {
+		ASTRetentionPolicy policy = new ASTRetentionPolicy();
+		policy.setNodeBudget(0);
+		ast.stubFile(secondURI);
+		List<URI> stubURIs = policy.selectStubs(ast, Collections.singleton(firstURI));
+		Assertions.assertEquals(Arrays.asList(thirdURI), stubURIs);
+	}
+
+	@Test
+	void testNegativeBudgetKeepsEveryFile() {
+		ASTRetentionPolicy policy = new ASTRetentionPolicy();
+		policy.setNodeBudget(-1);
+		Assertions.assertEquals(Collections.emptyList(), policy.selectStubs(ast, Collections.emptySet()));
+	}
+
+	private URI createURI(String fileName) {
+		return Paths.get(System.getProperty("user.dir")).resolve(PATH_SRC).resolve(fileName).toUri();
+	}
+
+	private void addSource(GroovyLSCompilationUnit unit, URI uri, String contents) {
+		CompilerConfiguration config = unit.getConfiguration();
+		unit.addSource(new SourceUnit(Paths.get(uri).toString(), new StringReaderSourceWithURI(contents, uri, config),
+				config, unit.getClassLoader(), unit.getErrorCollector()));
+	}
+}
@@ -0,0 +1,150 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.compiler.ast;
+
+import java.io.File;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import org.eclipse.lsp4j.Location;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.SymbolInformation;
+import org.eclipse.lsp4j.SymbolKind;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class FileSummaryCacheTests {
+	private static final String PATH_TEST_CACHE = "./build/test_summary_cache/";
+	private static final String CONTENTS = "class Summary {\n  void summaryMethod() {}\n}\n";
+
+	private Path cacheDirectory;
+	private URI uri;
+
+	@BeforeEach
+	void setup() throws Exception {
+		cacheDirectory = Paths.get(System.getProperty("user.dir")).resolve(PATH_TEST_CACHE);
+		deleteRecursively(cacheDirectory);
+		uri = cacheDirectory.resolve("Summary.groovy").toUri();
+	}
+
+	@AfterEach
+	void tearDown() throws Exception {
+		deleteRecursively(cacheDirectory);
+		cacheDirectory = null;
+		uri = null;
+	}
+
+	@Test
+	void testSummaryIsReadForSameContents() {
+		FileSummaryCache cache = new FileSummaryCache(cacheDirectory);
+		cache.write(createSummary(CONTENTS));
+
+		FileSummary summary = new FileSummaryCache(cacheDirectory).read(uri, CONTENTS);
+		Assertions.assertNotNull(summary);
+		List<SymbolInformation> symbols = summary.getSymbolIndex().getSymbols();
+		Assertions.assertEquals(2, symbols.size());
+		Assertions.assertEquals("Summary", symbols.get(0).getName());
+		Assertions.assertEquals(SymbolKind.Class, symbols.get(0).getKind());
+		Assertions.assertNull(symbols.get(0).getContainerName());
+		Assertions.assertEquals("summaryMethod", symbols.get(1).getName());
+		Assertions.assertEquals("Summary", symbols.get(1).getContainerName());
+		Assertions.assertEquals(uri.toString(), symbols.get(1).getLocation().getUri());
+		Assertions.assertEquals(new Range(new Position(1, 2), new Position(1, 25)),
+				symbols.get(1).getLocation().getRange());
+		Assertions.assertEquals(Collections.singleton("Summary"), summary.getDefinedClasses());
+		Assertions.assertEquals(Collections.singleton("java.lang.Object"), summary.getReferencedClasses());
+
+		List<SymbolIndex.Match> matches = new ArrayList<>();
+		summary.getSymbolIndex().search("sm", matches);
+		Assertions.assertEquals(1, matches.size());
+		Assertions.assertEquals("summaryMethod", matches.get(0).getSymbol().getName());
+	}
+
+	@Test
+	void testSummaryIsIgnoredForChangedContents() {
+		FileSummaryCache cache = new FileSummaryCache(cacheDirectory);
+		cache.write(createSummary(CONTENTS));
+		Assertions.assertNull(cache.read(uri, CONTENTS + "\n"));
+		Assertions.assertNull(cache.read(cacheDirectory.resolve("Other.groovy").toUri(), CONTENTS));
+	}
+
+	@Test
+	void testSummaryIsReadForCompilerURI() {
+		FileSummaryCache cache = new FileSummaryCache(cacheDirectory);
+		cache.write(createSummary(CONTENTS));
+		// the compiler names the same file "file:/path"
+		URI compilerURI = new File(uri).toURI();
+		Assertions.assertNotEquals(uri.toString(), compilerURI.toString());
+		Assertions.assertNotNull(cache.read(compilerURI, CONTENTS));
+	}
+
+	@Test
+	void testGroovydocIsReadFromContents() {
+		String classDoc = "/**\n * A summary.\n */";
+		String methodDoc = "/** Summarizes. */";
+		String contents = classDoc + "\nclass Summary {\n  " + methodDoc + "\n  void summaryMethod() {}\n}\n";
+		FileSummaryCache cache = new FileSummaryCache(cacheDirectory);
+		cache.write(createSummary(contents, new Range(new Position(3, 0), new Position(6, 1)),
+				new Range(new Position(5, 2), new Position(5, 25))));
+
+		FileSummary summary = cache.read(uri, contents);
+		Assertions.assertNotNull(summary);
+		Assertions.assertEquals(classDoc, summary.getGroovydoc(0, contents));
+		Assertions.assertEquals(methodDoc, summary.getGroovydoc(1, contents));
+		// a symbol without groovydoc
+		FileSummary undocumented = createSummary(CONTENTS);
+		Assertions.assertNull(undocumented.getGroovydoc(0, CONTENTS));
+		Assertions.assertNull(undocumented.getGroovydoc(1, CONTENTS));
+	}
+
+	private FileSummary createSummary(String contents) {
+		return createSummary(contents, new Range(new Position(0, 0), new Position(2, 1)),
+				new Range(new Position(1, 2), new Position(1, 25)));
+	}
+
+	private FileSummary createSummary(String contents, Range classRange, Range methodRange) {
+		SymbolInformation classSymbol = new SymbolInformation("Summary", SymbolKind.Class,
+				new Location(uri.toString(), classRange));
+		SymbolInformation methodSymbol = new SymbolInformation("summaryMethod", SymbolKind.Method,
+				new Location(uri.toString(), methodRange), "Summary");
+		SymbolIndex symbolIndex = new SymbolIndex(Arrays.asList(classSymbol, methodSymbol),
+				Arrays.asList("Summary", "summaryMethod"));
+		return FileSummary.create(uri, contents, symbolIndex, new LinkedHashSet<>(Collections.singleton("Summary")),
+				new LinkedHashSet<>(Collections.singleton("java.lang.Object")));
+	}
+
+	private void deleteRecursively(Path path) throws Exception {
+		if (!Files.exists(path)) {
+			return;
+		}
+		Files.walk(path).sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+	}
+}
@@ -0,0 +1,52 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.config;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import net.prominic.groovyls.compiler.control.GroovyLSCompilationUnit;
+import net.prominic.groovyls.util.FileContentsTracker;
+
+class CompilationUnitFactoryTests {
+	private static final String PATH_WORKSPACE = "./build/test_workspace/";
+	private static final String PROPERTY_TARGET_DIRECTORY = "groovy.target.directory";
+
+	@Test
+	void testNoTargetDirectory() {
+		Path workspaceRoot = Paths.get(System.getProperty("user.dir")).resolve(PATH_WORKSPACE);
+		String oldTargetDirectory = System.getProperty(PROPERTY_TARGET_DIRECTORY);
+		System.setProperty(PROPERTY_TARGET_DIRECTORY, workspaceRoot.resolve("classes").toString());
+		try {
+			GroovyLSCompilationUnit compilationUnit = new CompilationUnitFactory().create(workspaceRoot,
+					new FileContentsTracker());
+			Assertions.assertNull(compilationUnit.getConfiguration().getTargetDirectory());
+		} finally {
+			if (oldTargetDirectory != null) {
+				System.setProperty(PROPERTY_TARGET_DIRECTORY, oldTargetDirectory);
+			} else {
+				System.clearProperty(PROPERTY_TARGET_DIRECTORY);
+			}
+		}
+	}
+}
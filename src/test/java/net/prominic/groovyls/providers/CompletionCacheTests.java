@@ -0,0 +1,102 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.providers;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.lsp4j.CompletionItem;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class CompletionCacheTests {
+	private static final URI URI_A = URI.create("file:///A.groovy");
+	private static final URI URI_B = URI.create("file:///B.groovy");
+
+	private CompletionCache cache;
+	private CompletionItem charAtItem;
+	private CompletionItem lengthItem;
+
+	@BeforeEach
+	void setup() {
+		cache = new CompletionCache();
+		charAtItem = new CompletionItem("charAt");
+		lengthItem = new CompletionItem("length");
+		// the member name starts after "localVar." at offset 9
+		cache.put(URI_A, 3, 9, "", Arrays.asList(charAtItem, lengthItem));
+	}
+
+	@AfterEach
+	void tearDown() {
+		cache = null;
+		charAtItem = null;
+		lengthItem = null;
+	}
+
+	@Test
+	void testTypingMemberNameFiltersCandidates() {
+		cache.didReplace(URI_A, 4, 9, 9, "c");
+		cache.didReplace(URI_A, 5, 10, 10, "h");
+		List<CompletionItem> items = cache.get(URI_A, 5, 11);
+		Assertions.assertEquals(Collections.singletonList(charAtItem), items);
+	}
+
+	@Test
+	void testDeletingInsideMemberNameKeepsCandidates() {
+		cache.didReplace(URI_A, 4, 9, 9, "lx");
+		cache.didReplace(URI_A, 5, 10, 11, "");
+		Assertions.assertEquals(Collections.singletonList(lengthItem), cache.get(URI_A, 5, 10));
+	}
+
+	@Test
+	void testChangeBeforeAnchorClearsCandidates() {
+		cache.didReplace(URI_A, 4, 0, 0, "def ");
+		Assertions.assertNull(cache.get(URI_A, 4, 13));
+	}
+
+	@Test
+	void testChangeMadeBeforeCandidatesWereStoredClearsCandidates() {
+		// version 4 was never reported to the cache
+		cache.didReplace(URI_A, 5, 9, 9, "c");
+		Assertions.assertNull(cache.get(URI_A, 5, 10));
+	}
+
+	@Test
+	void testChangeToOtherDocumentClearsCandidates() {
+		cache.didReplace(URI_B, 1, 0, 0, "x");
+		Assertions.assertNull(cache.get(URI_A, 3, 9));
+	}
+
+	@Test
+	void testOtherOffsetClearsCandidates() {
+		Assertions.assertNull(cache.get(URI_A, 3, 8));
+		Assertions.assertNull(cache.get(URI_A, 3, 9));
+	}
+
+	@Test
+	void testNonIdentifierClearsCandidates() {
+		cache.didReplace(URI_A, 4, 9, 9, "(");
+		Assertions.assertNull(cache.get(URI_A, 4, 10));
+	}
+}
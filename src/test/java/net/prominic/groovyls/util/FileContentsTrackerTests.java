@@ -20,7 +20,11 @@
 package net.prominic.groovyls.util;
 
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.Set;
 
 import org.eclipse.lsp4j.DidChangeTextDocumentParams;
 import org.eclipse.lsp4j.DidOpenTextDocumentParams;
@@ -34,6 +38,8 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import net.prominic.lsp.utils.LineIndex;
+
 class FileContentsTrackerTests {
 	private FileContentsTracker tracker;
 
@@ -100,4 +106,105 @@ class FileContentsTrackerTests {
 		tracker.didChange(changeParams);
 		Assertions.assertEquals("hello\nwaffles", tracker.getContents(URI.create("file.txt")));
 	}
-}
\ No newline at end of file
+
+	@Test
+	void testDidChangeWithMultipleChanges() {
+		DidOpenTextDocumentParams openParams = new DidOpenTextDocumentParams();
+		openParams.setTextDocument(new TextDocumentItem("file.txt", "plaintext", 1, "hello\nworld"));
+		tracker.didOpen(openParams);
+		DidChangeTextDocumentParams changeParams = new DidChangeTextDocumentParams();
+		changeParams.setTextDocument(new VersionedTextDocumentIdentifier("file.txt", 2));
+		TextDocumentContentChangeEvent changeEvent1 = new TextDocumentContentChangeEvent();
+		changeEvent1.setText(" there\nwide");
+		changeEvent1.setRange(new Range(new Position(0, 5), new Position(0, 5)));
+		changeEvent1.setRangeLength(0);
+		TextDocumentContentChangeEvent changeEvent2 = new TextDocumentContentChangeEvent();
+		changeEvent2.setText("W");
+		changeEvent2.setRange(new Range(new Position(2, 0), new Position(2, 1)));
+		changeEvent2.setRangeLength(1);
+		changeParams.setContentChanges(Arrays.asList(changeEvent1, changeEvent2));
+		tracker.didChange(changeParams);
+		Assertions.assertEquals("hello there\nwide\nWorld", tracker.getContents(URI.create("file.txt")));
+	}
+
+	@Test
+	void testDidChangeSequentialTyping() {
+		DidOpenTextDocumentParams openParams = new DidOpenTextDocumentParams();
+		openParams.setTextDocument(new TextDocumentItem("file.txt", "plaintext", 1, "ab\ncd"));
+		tracker.didOpen(openParams);
+		String typed = "x\ny";
+		for (int i = 0; i < typed.length(); i++) {
+			Position position = i < 2 ? new Position(0, 1 + i) : new Position(1, i - 2);
+			DidChangeTextDocumentParams changeParams = new DidChangeTextDocumentParams();
+			changeParams.setTextDocument(new VersionedTextDocumentIdentifier("file.txt", 2 + i));
+			TextDocumentContentChangeEvent changeEvent = new TextDocumentContentChangeEvent();
+			changeEvent.setText(typed.substring(i, i + 1));
+			changeEvent.setRange(new Range(position, position));
+			changeEvent.setRangeLength(0);
+			changeParams.setContentChanges(Collections.singletonList(changeEvent));
+			tracker.didChange(changeParams);
+		}
+		Assertions.assertEquals("ax\nyb\ncd", tracker.getContents(URI.create("file.txt")));
+	}
+
+	@Test
+	void testLineIndexAfterDidChange() {
+		DidOpenTextDocumentParams openParams = new DidOpenTextDocumentParams();
+		openParams.setTextDocument(new TextDocumentItem("file.txt", "plaintext", 1, "hello\nworld"));
+		tracker.didOpen(openParams);
+		Assertions.assertEquals(8, tracker.getLineIndex(URI.create("file.txt")).getOffset(new Position(1, 2)));
+		DidChangeTextDocumentParams changeParams = new DidChangeTextDocumentParams();
+		changeParams.setTextDocument(new VersionedTextDocumentIdentifier("file.txt", 2));
+		TextDocumentContentChangeEvent changeEvent = new TextDocumentContentChangeEvent();
+		changeEvent.setText("\n");
+		changeEvent.setRange(new Range(new Position(0, 0), new Position(0, 0)));
+		changeEvent.setRangeLength(0);
+		changeParams.setContentChanges(Collections.singletonList(changeEvent));
+		tracker.didChange(changeParams);
+		LineIndex lineIndex = tracker.getLineIndex(URI.create("file.txt"));
+		Assertions.assertEquals(3, lineIndex.getLineCount());
+		Assertions.assertEquals(9, lineIndex.getOffset(new Position(2, 2)));
+		Position position = lineIndex.getPosition(9);
+		Assertions.assertEquals(2, position.getLine());
+		Assertions.assertEquals(2, position.getCharacter());
+	}
+
+	@Test
+	void testURISetsAreSnapshots() {
+		Set<URI> openURIs = tracker.getOpenURIs();
+		Set<URI> changedURIs = tracker.getChangedURIs();
+		DidOpenTextDocumentParams params = new DidOpenTextDocumentParams();
+		params.setTextDocument(new TextDocumentItem("file.txt", "plaintext", 1, "hello world"));
+		tracker.didOpen(params);
+		Assertions.assertTrue(openURIs.isEmpty());
+		Assertions.assertTrue(changedURIs.isEmpty());
+		Assertions.assertEquals(Collections.singleton(URI.create("file.txt")), tracker.getOpenURIs());
+		Assertions.assertEquals(Collections.singleton(URI.create("file.txt")), tracker.getChangedURIs());
+	}
+
+	@Test
+	void testChangesAreReportedWithVersionAndOffsets() {
+		List<String> replacements = new ArrayList<>();
+		tracker.setChangeListener((uri, version, start, end, newText) -> {
+			replacements.add(version + ":" + start + "-" + end + ":" + newText);
+		});
+		DidOpenTextDocumentParams openParams = new DidOpenTextDocumentParams();
+		openParams.setTextDocument(new TextDocumentItem("file.txt", "plaintext", 1, "hello\nworld"));
+		tracker.didOpen(openParams);
+		Assertions.assertEquals(0, tracker.getVersion(URI.create("file.txt")));
+		DidChangeTextDocumentParams changeParams = new DidChangeTextDocumentParams();
+		changeParams.setTextDocument(new VersionedTextDocumentIdentifier("file.txt", 2));
+		TextDocumentContentChangeEvent changeEvent1 = new TextDocumentContentChangeEvent();
+		changeEvent1.setText("there");
+		changeEvent1.setRange(new Range(new Position(1, 0), new Position(1, 5)));
+		TextDocumentContentChangeEvent changeEvent2 = new TextDocumentContentChangeEvent();
+		changeEvent2.setText("!");
+		changeEvent2.setRange(new Range(new Position(1, 5), new Position(1, 5)));
+		changeParams.setContentChanges(Arrays.asList(changeEvent1, changeEvent2));
+		tracker.didChange(changeParams);
+		Assertions.assertEquals(Arrays.asList("1:6-11:there", "2:11-11:!"), replacements);
+		Assertions.assertEquals(2, tracker.getVersion(URI.create("file.txt")));
+		Assertions.assertEquals(11, tracker.getOffset(URI.create("file.txt"), new Position(1, 5)));
+		Assertions.assertEquals(-1, tracker.getVersion(URI.create("other.txt")));
+	}
+}
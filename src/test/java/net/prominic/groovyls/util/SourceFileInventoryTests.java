@@ -0,0 +1,133 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.util;
+
+import java.io.File;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class SourceFileInventoryTests {
+	private static final String PATH_TEST_INVENTORY = "./build/test_inventory/";
+
+	private Path root;
+
+	@BeforeEach
+	void setup() throws Exception {
+		root = Paths.get(System.getProperty("user.dir")).resolve(PATH_TEST_INVENTORY);
+		deleteRecursively(root);
+		Files.createDirectories(root.resolve("src"));
+	}
+
+	@AfterEach
+	void tearDown() throws Exception {
+		deleteRecursively(root);
+		root = null;
+	}
+
+	@Test
+	void testRescanFindsAddedModifiedAndDeletedFiles() throws Exception {
+		Path unchanged = writeFile("src/Unchanged.groovy");
+		Path modified = writeFile("src/Modified.groovy");
+		Path deleted = writeFile("src/Deleted.groovy");
+		writeFile("src/NotGroovy.java");
+		SourceFileInventory inventory = new SourceFileInventory(root);
+		Assertions.assertEquals(3, inventory.rescan().size());
+		Assertions.assertEquals(3, inventory.getURIs().size());
+		Assertions.assertEquals(Files.getLastModifiedTime(unchanged).toMillis(),
+				inventory.getLastModified(unchanged.toUri()));
+
+		FileTime lastModified = Files.getLastModifiedTime(modified);
+		Files.setLastModifiedTime(modified, FileTime.fromMillis(lastModified.toMillis() + 10000));
+		Files.delete(deleted);
+		Path added = writeFile("src/Added.groovy");
+		Set<URI> changed = inventory.rescan();
+		Assertions.assertEquals(3, changed.size());
+		Assertions.assertTrue(changed.contains(modified.toUri()));
+		Assertions.assertTrue(changed.contains(deleted.toUri()));
+		Assertions.assertTrue(changed.contains(added.toUri()));
+		Assertions.assertTrue(inventory.contains(added.toUri()));
+		Assertions.assertFalse(inventory.contains(deleted.toUri()));
+		Assertions.assertEquals(-1, inventory.getLastModified(deleted.toUri()));
+	}
+
+	@Test
+	void testUpdateWithoutWalkingEverything() throws Exception {
+		SourceFileInventory inventory = new SourceFileInventory(root);
+		inventory.rescan();
+		// the client reports paths without "." segments
+		Path added = writeFile("src/Added.groovy");
+		Path notReported = writeFile("src/NotReported.groovy");
+		Set<URI> changed = inventory.update(Collections.singleton(added.normalize().toUri()));
+		Assertions.assertEquals(Collections.singleton(added.toUri()), changed);
+		Assertions.assertTrue(inventory.contains(added.toUri()));
+		Assertions.assertFalse(inventory.contains(notReported.toUri()));
+	}
+
+	@Test
+	void testUpdateForCreatedAndDeletedDirectory() throws Exception {
+		SourceFileInventory inventory = new SourceFileInventory(root);
+		inventory.rescan();
+		Path directory = root.resolve("src/created");
+		Files.createDirectories(directory);
+		Path nested = writeFile("src/created/Nested.groovy");
+		Assertions.assertEquals(Collections.singleton(nested.toUri()),
+				inventory.update(Collections.singleton(directory.toUri())));
+
+		Files.delete(nested);
+		Files.delete(directory);
+		Assertions.assertEquals(Collections.singleton(nested.toUri()),
+				inventory.update(Collections.singleton(directory.toUri())));
+		Assertions.assertTrue(inventory.getURIs().isEmpty());
+	}
+
+	@Test
+	void testUpdateIgnoresFilesOutsideRoot() throws Exception {
+		SourceFileInventory inventory = new SourceFileInventory(root.resolve("src"));
+		inventory.rescan();
+		Path outside = writeFile("Outside.groovy");
+		Assertions.assertTrue(inventory.update(Collections.singleton(outside.toUri())).isEmpty());
+		Assertions.assertTrue(inventory.getURIs().isEmpty());
+	}
+
+	private Path writeFile(String relativePath) throws Exception {
+		Path filePath = root.resolve(relativePath);
+		Files.write(filePath, "class Example {}\n".getBytes(StandardCharsets.UTF_8));
+		return filePath;
+	}
+
+	private void deleteRecursively(Path path) throws Exception {
+		if (!Files.exists(path)) {
+			return;
+		}
+		Files.walk(path).sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+	}
+}